@@ -0,0 +1,81 @@
+package org.uvhnael.mpbe.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for long-running AI work so that request threads are not pinned
+ * while waiting on Gemini, for writing shopping list sync events to subscribers,
+ * and for building the recipe search index in the background
+ */
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    @Value("${ai.executor.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    @Value("${ai.executor.core-size:4}")
+    private int corePoolSize;
+
+    @Value("${ai.executor.max-size:16}")
+    private int maxPoolSize;
+
+    @Value("${ai.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${shopping-list.sync.executor.size:4}")
+    private int syncPoolSize;
+
+    @Bean(name = "aiTaskExecutor")
+    public AsyncTaskExecutor aiTaskExecutor() {
+        // Virtual threads are only available on Java 21+; MealPlanJobService bounds the jobs and
+        // streams submitted here with meal-plan.jobs.max-active
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ai-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Drains subscriber buffers; each subscriber has at most one drain task queued
+     */
+    @Bean(name = "syncTaskExecutor")
+    public AsyncTaskExecutor syncTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(syncPoolSize);
+        executor.setMaxPoolSize(syncPoolSize);
+        executor.setThreadNamePrefix("sync-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Builds the recipe search index after startup; one thread, since only one build runs at a time
+     */
+    @Bean(name = "searchIndexExecutor")
+    public AsyncTaskExecutor searchIndexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("recipe-search-");
+        executor.initialize();
+        return executor;
+    }
+}
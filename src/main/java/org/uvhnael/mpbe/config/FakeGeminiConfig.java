@@ -0,0 +1,31 @@
+package org.uvhnael.mpbe.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.uvhnael.mpbe.service.ai.FakeGeminiServer;
+
+/**
+ * Runs the embedded fake Gemini server under the fake-gemini profile. The profile's
+ * properties point gemini.api.url at it, so the whole generation pipeline can be
+ * load-tested offline.
+ */
+@Configuration
+@Profile("fake-gemini")
+public class FakeGeminiConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FakeGeminiServer fakeGeminiServer(
+            @Value("${fake-gemini.port:8089}") int port,
+            @Value("${fake-gemini.latency.median-ms:800}") long latencyMedianMs,
+            @Value("${fake-gemini.latency.p99-ms:5000}") long latencyP99Ms,
+            @Value("${fake-gemini.error-rate:0.0}") double errorRate,
+            @Value("${fake-gemini.throttle.every:0}") int throttleEvery,
+            @Value("${fake-gemini.throttle.length:0}") int throttleLength,
+            @Value("${fake-gemini.stream-chunks:8}") int streamChunks,
+            @Value("${fake-gemini.seed:42}") long seed) {
+        return new FakeGeminiServer(new FakeGeminiServer.Settings(port, latencyMedianMs, latencyP99Ms,
+            errorRate, throttleEvery, throttleLength, streamChunks, seed));
+    }
+}
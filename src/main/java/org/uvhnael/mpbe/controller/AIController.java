@@ -6,11 +6,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
 import org.uvhnael.mpbe.dto.response.ApiResponse;
+import org.uvhnael.mpbe.exception.ResourceNotFoundException;
 import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.security.RateLimited;
 import org.uvhnael.mpbe.service.GeminiAIService;
+import org.uvhnael.mpbe.service.IngredientSubstitutionService;
 import org.uvhnael.mpbe.service.UserProfileService;
 
+import java.util.List;
+
 @Tag(name = "AI Suggestions", description = "AI-powered recipe and nutrition suggestions")
 @SecurityRequirement(name = "Bearer Authentication")
 @RestController
@@ -20,53 +26,35 @@ public class AIController {
     
     private final GeminiAIService geminiAIService;
     private final UserProfileService userProfileService;
+    private final IngredientSubstitutionService substitutionService;
     
     @PostMapping("/suggest-recipes")
+    @RateLimited(cost = 2)
     public ResponseEntity<?> suggestRecipes(@RequestParam Long userId) {
-        try {
-            UserProfile profile = userProfileService.getProfileByUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Profile not found"));
-            
-            String suggestions = geminiAIService.suggestRecipes(profile);
-            
-            return ResponseEntity.ok(new ApiResponse(true, "Recipes suggested", suggestions));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse(false, e.getMessage()));
-        }
+        UserProfile profile = userProfileService.getProfileByUserId(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Profile not found"));
+        
+        String suggestions = geminiAIService.suggestRecipes(profile);
+        
+        return ResponseEntity.ok(new ApiResponse(true, "Recipes suggested", suggestions));
     }
     
     @PostMapping("/analyze-nutrition")
+    @RateLimited
     public ResponseEntity<?> analyzeNutrition(@RequestParam String recipeName) {
-        try {
-            String analysis = geminiAIService.analyzeNutrition(recipeName);
-            
-            return ResponseEntity.ok(new ApiResponse(true, "Nutrition analyzed", analysis));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse(false, e.getMessage()));
-        }
+        String analysis = geminiAIService.analyzeNutrition(recipeName);
+        
+        return ResponseEntity.ok(new ApiResponse(true, "Nutrition analyzed", analysis));
     }
     
     @PostMapping("/substitute-ingredient")
+    @RateLimited
     public ResponseEntity<?> substituteIngredient(
             @RequestParam String ingredient,
             @RequestParam(required = false) String reason) {
-        try {
-            String prompt = String.format("""
-                Suggest substitutes for ingredient: %s
-                Reason: %s
-                
-                Return as JSON array with substitutes and their properties.
-                """, ingredient, reason != null ? reason : "general substitute");
-            
-            // Use the existing callGeminiAPI method through a service
-            String substitutes = geminiAIService.analyzeNutrition(prompt);
-            
-            return ResponseEntity.ok(new ApiResponse(true, "Substitutes suggested", substitutes));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse(false, e.getMessage()));
-        }
+        // Served from the substitution graph; Gemini is only asked on a miss
+        List<AISubstitute> substitutes = substitutionService.getSubstitutes(ingredient, reason);
+        
+        return ResponseEntity.ok(new ApiResponse(true, "Substitutes suggested", substitutes));
     }
 }
@@ -4,16 +4,22 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.uvhnael.mpbe.dto.request.MealPlanRequest;
 import org.uvhnael.mpbe.dto.response.ApiResponse;
+import org.uvhnael.mpbe.dto.response.MealPlanJob;
 import org.uvhnael.mpbe.model.MealPlan;
-import org.uvhnael.mpbe.model.UserProfile;
-import org.uvhnael.mpbe.service.GeminiAIService;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.security.RateLimited;
+import org.uvhnael.mpbe.service.MealPlanGenerationService;
+import org.uvhnael.mpbe.service.MealPlanJobService;
 import org.uvhnael.mpbe.service.MealPlanService;
-import org.uvhnael.mpbe.service.UserProfileService;
 
+import java.security.Principal;
 import java.util.List;
 
 @Tag(name = "Meal Plans", description = "AI-powered meal planning APIs")
@@ -24,49 +30,69 @@ import java.util.List;
 public class MealPlanController {
     
     private final MealPlanService mealPlanService;
-    private final UserProfileService userProfileService;
-    private final GeminiAIService geminiAIService;
-    private final org.uvhnael.mpbe.service.AIMealPlanParserService aiParserService;
-    private final org.uvhnael.mpbe.repository.UserRepository userRepository;
+    private final MealPlanGenerationService generationService;
+    private final MealPlanJobService jobService;
     
     @PostMapping("/generate")
+    @RateLimited(cost = 5)
+    @Operation(summary = "Generate meal plan", 
+               description = "Start a background generation job and return its id; pass async=false to wait for the plan")
     public ResponseEntity<?> generateMealPlan(
             @RequestParam Long userId,
-            @jakarta.validation.Valid @RequestBody MealPlanRequest request) {
+            @RequestParam(defaultValue = "true") boolean async,
+            @jakarta.validation.Valid @RequestBody MealPlanRequest request,
+            Principal principal) {
+        // A full job queue, Gemini errors and missing profiles are mapped by GlobalExceptionHandler
+        if (async) {
+            MealPlanJob job = jobService.submit(userId, request.getDays(), request.getMode(), principal.getName());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new ApiResponse(true, "Meal plan generation started", job));
+        }
+        
+        MealPlan mealPlan = generationService.generateMealPlan(userId, request.getDays(), request.getMode());
+        
+        return ResponseEntity.ok(new ApiResponse(true, "Meal plan generated and saved", mealPlan));
+    }
+    
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Get meal plan generation job", description = "Poll the status of a generation job and get the plan once completed")
+    public ResponseEntity<?> getGenerationJob(@PathVariable String jobId, Principal principal) {
         try {
-            UserProfile profile = userProfileService.getProfileByUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Profile not found"));
-            
-            org.uvhnael.mpbe.model.User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            // Generate AI meal plan
-            String aiResponse = geminiAIService.generateMealPlan(profile, request.getDays());
-            
-            // Create meal plan entity
-            MealPlan mealPlan = new MealPlan();
-            mealPlan.setUser(user);
-            mealPlan.setStartDate(java.time.LocalDate.now());
-            mealPlan.setEndDate(java.time.LocalDate.now().plusDays(request.getDays()));
-            mealPlan.setStatus("active");
-            
-            // Generate default name based on dates and days
-            String defaultName = String.format("%d-Day Meal Plan (%s)", 
-                request.getDays(), 
-                java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("MMM dd, yyyy")));
-            mealPlan.setName(defaultName);
+            MealPlanJob job = jobService.getJob(jobId, principal.getName())
+                .orElseThrow(() -> new RuntimeException("Job not found"));
             
-            // Parse AI response and save to database
-            mealPlan = aiParserService.parseAndSaveMealPlan(aiResponse, mealPlan);
-            mealPlan = mealPlanService.createMealPlan(mealPlan);
+            if (job.getMealPlanId() != null) {
+                mealPlanService.getMealPlanById(job.getMealPlanId()).ifPresent(job::setMealPlan);
+            }
             
-            return ResponseEntity.ok(new ApiResponse(true, "Meal plan generated and saved", mealPlan));
+            return ResponseEntity.ok(new ApiResponse(true, "Success", job));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(new ApiResponse(false, e.getMessage()));
         }
     }
     
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RateLimited(cost = 5)
+    @Operation(summary = "Generate meal plan as a stream", 
+               description = "Stream each generated day over Server-Sent Events as soon as it is saved")
+    public SseEmitter streamMealPlan(
+            @RequestParam Long userId,
+            @jakarta.validation.Valid @RequestBody MealPlanRequest request) {
+        try {
+            return jobService.stream(userId, request.getDays());
+        } catch (Exception e) {
+            SseEmitter emitter = new SseEmitter();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(new ApiResponse(false, e.getMessage())));
+            } catch (java.io.IOException ignored) {
+                // Client already gone
+            }
+            emitter.complete();
+            return emitter;
+        }
+    }
+    
     @GetMapping
     @Operation(summary = "Get user meal plans with pagination", description = "Retrieve meal plans for a user with pagination support")
     public ResponseEntity<?> getUserMealPlans(
@@ -172,31 +198,12 @@ public class MealPlanController {
     }
     
     @PostMapping("/{id}/regenerate-day")
+    @RateLimited(cost = 2)
     public ResponseEntity<?> regenerateDay(
             @PathVariable Long id,
             @RequestParam Integer dayOfWeek) {
-        try {
-            MealPlan mealPlan = mealPlanService.getMealPlanById(id)
-                .orElseThrow(() -> new RuntimeException("Meal plan not found"));
-            
-            UserProfile profile = userProfileService.getProfileByUserId(mealPlan.getUser().getId())
-                .orElseThrow(() -> new RuntimeException("Profile not found"));
-            
-            // Generate AI meal plan for one day
-            String aiResponse = geminiAIService.generateMealPlan(profile, 1);
-            
-            // Create temporary meal plan for parsing
-            MealPlan tempPlan = new MealPlan();
-            tempPlan.setUser(mealPlan.getUser());
-            tempPlan = aiParserService.parseAndSaveMealPlan(aiResponse, tempPlan);
-            
-            // Delete old meals for this day and add new ones
-            mealPlanService.replaceDayMeals(id, dayOfWeek, tempPlan.getMealPlanItems());
-            
-            return ResponseEntity.ok(new ApiResponse(true, "Day regenerated successfully"));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse(false, e.getMessage()));
-        }
+        List<MealPlanItem> items = generationService.regenerateDay(id, dayOfWeek);
+        
+        return ResponseEntity.ok(new ApiResponse(true, "Day regenerated successfully", items));
     }
 }
@@ -3,13 +3,19 @@ package org.uvhnael.mpbe.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.request.MergedShoppingListRequest;
+import org.uvhnael.mpbe.dto.request.ShoppingListItemBatchRequest;
 import org.uvhnael.mpbe.dto.response.ApiResponse;
 import org.uvhnael.mpbe.model.MealPlan;
 import org.uvhnael.mpbe.model.ShoppingList;
 import org.uvhnael.mpbe.service.MealPlanService;
+import org.uvhnael.mpbe.service.ShoppingListSyncHub;
 import org.uvhnael.mpbe.repository.ShoppingListRepository;
 
 import java.util.List;
@@ -25,6 +31,7 @@ public class ShoppingListController {
     private final MealPlanService mealPlanService;
     private final org.uvhnael.mpbe.service.ShoppingListItemService itemService;
     private final org.uvhnael.mpbe.service.ShoppingListGeneratorService generatorService;
+    private final ShoppingListSyncHub syncHub;
     
     @PostMapping
     public ResponseEntity<?> createShoppingList(@RequestParam Long mealPlanId, @RequestParam Long userId) {
@@ -45,6 +52,21 @@ public class ShoppingListController {
         }
     }
     
+    @PostMapping("/merged")
+    @Operation(summary = "Create a merged shopping list",
+               description = "Aggregate the ingredients of several meal plans, or of the user's plans within a date range, into one list")
+    public ResponseEntity<?> createMergedShoppingList(@RequestParam Long userId,
+                                                      @RequestBody MergedShoppingListRequest request) {
+        try {
+            ShoppingList shoppingList = generatorService.generateMerged(userId, request);
+            return ResponseEntity.ok(new ApiResponse(true,
+                "Shopping list created with " + shoppingList.getItems().size() + " items", shoppingList));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<?> getShoppingListById(@PathVariable Long id) {
         try {
@@ -69,6 +91,24 @@ public class ShoppingListController {
         }
     }
     
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Subscribe to shopping list changes",
+               description = "Server-Sent Events with item deltas (upsert, check, uncheck, delete); "
+                   + "on a resync event the client should reload the items")
+    public SseEmitter subscribe(@PathVariable Long id) {
+        if (!shoppingListRepository.existsById(id)) {
+            SseEmitter emitter = new SseEmitter();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(new ApiResponse(false, "Shopping list not found")));
+            } catch (java.io.IOException ignored) {
+                // Client already gone
+            }
+            emitter.complete();
+            return emitter;
+        }
+        return syncHub.subscribe(id);
+    }
+    
     @PostMapping("/{id}/items")
     public ResponseEntity<?> addItem(
             @PathVariable Long id,
@@ -115,24 +155,8 @@ public class ShoppingListController {
             ShoppingList shoppingList = shoppingListRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Shopping list not found"));
             
-            if (shoppingList.getMealPlan() == null) {
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponse(false, "Shopping list is not linked to a meal plan"));
-            }
-            
-            // Get all recipes from meal plan
-            java.util.List<org.uvhnael.mpbe.model.Recipe> recipes = new java.util.ArrayList<>();
-            if (shoppingList.getMealPlan().getMealPlanItems() != null) {
-                for (org.uvhnael.mpbe.model.MealPlanItem item : shoppingList.getMealPlan().getMealPlanItems()) {
-                    if (item.getRecipe() != null) {
-                        recipes.add(item.getRecipe());
-                    }
-                }
-            }
-            
-            // Generate shopping list items
             java.util.List<org.uvhnael.mpbe.model.ShoppingListItem> items = 
-                generatorService.generateFromRecipes(shoppingList, recipes);
+                generatorService.generateFromMealPlan(shoppingList);
             
             return ResponseEntity.ok(new ApiResponse(true, 
                 "Shopping list generated with " + items.size() + " items", items));
@@ -165,4 +189,17 @@ public class ShoppingListController {
                 .body(new ApiResponse(false, e.getMessage()));
         }
     }
+    
+    @PostMapping("/{id}/items/batch")
+    @Operation(summary = "Batch update shopping list items",
+               description = "Check, uncheck, update and delete many items in one request; returns the list's items")
+    public ResponseEntity<?> batchItems(@PathVariable Long id, @Valid @RequestBody ShoppingListItemBatchRequest request) {
+        try {
+            java.util.List<org.uvhnael.mpbe.model.ShoppingListItem> items = itemService.applyBatch(id, request);
+            return ResponseEntity.ok(new ApiResponse(true, "Items updated", items));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package org.uvhnael.mpbe.dto.ai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AIShoppingListItem {
+    private String name;
+    private BigDecimal quantity;
+    private String unit;
+    private String category;
+    private String note; // optional shopping tip
+}
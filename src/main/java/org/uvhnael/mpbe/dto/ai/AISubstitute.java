@@ -0,0 +1,19 @@
+package org.uvhnael.mpbe.dto.ai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AISubstitute {
+    private String name;
+    private String ratio;  // e.g. "3/4 cup per 1 cup butter"
+    private String reason; // why it works and how it changes the dish
+    private List<String> tags; // vegan, dairy-free, egg-free, gluten-free, low-fat, ...
+}
@@ -0,0 +1,48 @@
+package org.uvhnael.mpbe.dto.ai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Subset of the Gemini generateContent / streamGenerateContent response that we read
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GeminiResponse {
+    private List<Candidate> candidates;
+    
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Candidate {
+        private Content content;
+        private String finishReason;
+    }
+    
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Content {
+        private List<Part> parts;
+    }
+    
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Part {
+        private String text;
+    }
+    
+    /**
+     * Text of the first part of the first candidate, or null when Gemini returned none
+     */
+    public String firstText() {
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+        Content content = candidates.get(0).getContent();
+        if (content == null || content.getParts() == null || content.getParts().isEmpty()) {
+            return null;
+        }
+        return content.getParts().get(0).getText();
+    }
+}
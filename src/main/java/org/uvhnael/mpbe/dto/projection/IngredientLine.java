@@ -0,0 +1,9 @@
+package org.uvhnael.mpbe.dto.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * One ingredient of one planned meal, as needed for shopping list aggregation
+ */
+public record IngredientLine(String name, BigDecimal quantity, String unit) {
+}
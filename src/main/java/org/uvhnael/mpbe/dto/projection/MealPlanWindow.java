@@ -0,0 +1,9 @@
+package org.uvhnael.mpbe.dto.projection;
+
+import java.time.LocalDate;
+
+/**
+ * The dates a meal plan covers; day 1 of the plan is its start date
+ */
+public record MealPlanWindow(Long id, LocalDate startDate, LocalDate endDate) {
+}
@@ -0,0 +1,9 @@
+package org.uvhnael.mpbe.dto.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * One ingredient of one meal plan item, with the recipe it belongs to
+ */
+public record PlannedIngredient(Long itemId, String recipeName, String name, BigDecimal quantity, String unit) {
+}
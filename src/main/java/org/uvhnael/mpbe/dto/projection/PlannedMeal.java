@@ -0,0 +1,7 @@
+package org.uvhnael.mpbe.dto.projection;
+
+/**
+ * Lightweight view of a meal plan item: which recipe is planned for which day and meal
+ */
+public record PlannedMeal(Integer dayOfWeek, String mealType, String recipeName) {
+}
@@ -0,0 +1,12 @@
+package org.uvhnael.mpbe.dto.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * One ingredient of a recipe together with the recipe fields the local planner filters on;
+ * ownerId is null for recipes nobody owns
+ */
+public record RecipeIngredientRow(Long recipeId, Long ownerId, String recipeName, String mealType, String cuisineType,
+                                  Integer servings, String ingredientName, BigDecimal calories,
+                                  BigDecimal carbs) {
+}
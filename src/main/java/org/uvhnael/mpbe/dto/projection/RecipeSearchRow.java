@@ -0,0 +1,8 @@
+package org.uvhnael.mpbe.dto.projection;
+
+/**
+ * The searchable text columns of a recipe with the name of one of its ingredients
+ * (null for a recipe without ingredients)
+ */
+public record RecipeSearchRow(Long id, String name, String description, String cuisineType, String ingredientName) {
+}
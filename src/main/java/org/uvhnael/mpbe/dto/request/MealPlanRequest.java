@@ -14,4 +14,6 @@ public class MealPlanRequest {
     private Integer days;
     
     private String startDate;
+    
+    private String mode; // single (default), parallel, local
 }
@@ -0,0 +1,21 @@
+package org.uvhnael.mpbe.dto.request;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Meal plans to merge into one shopping list: the given plans, the days of the user's
+ * plans that fall between from and to, or, when both are given, those days of the given plans
+ */
+@Data
+public class MergedShoppingListRequest {
+    
+    private List<Long> mealPlanIds = new ArrayList<>();
+    
+    private LocalDate from;
+    
+    private LocalDate to;
+}
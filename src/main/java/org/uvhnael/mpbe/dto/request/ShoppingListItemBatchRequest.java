@@ -0,0 +1,51 @@
+package org.uvhnael.mpbe.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several item operations on one shopping list, applied together: updates first, then
+ * checks, unchecks and deletes
+ */
+@Data
+public class ShoppingListItemBatchRequest {
+    
+    @Size(max = 500, message = "Cannot check more than 500 items at once")
+    private List<Long> check = new ArrayList<>();
+    
+    @Size(max = 500, message = "Cannot uncheck more than 500 items at once")
+    private List<Long> uncheck = new ArrayList<>();
+    
+    @Size(max = 500, message = "Cannot delete more than 500 items at once")
+    private List<Long> delete = new ArrayList<>();
+    
+    @Valid
+    @Size(max = 500, message = "Cannot update more than 500 items at once")
+    private List<ItemUpdate> update = new ArrayList<>();
+    
+    /**
+     * New values for one item; fields left null are not changed
+     */
+    @Data
+    public static class ItemUpdate {
+        
+        @NotNull(message = "Item id is required")
+        private Long id;
+        
+        private String ingredientName;
+        
+        @PositiveOrZero(message = "Quantity cannot be negative")
+        private BigDecimal quantity;
+        
+        private String unit;
+        
+        private String category;
+    }
+}
@@ -0,0 +1,24 @@
+package org.uvhnael.mpbe.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MealPlanJob {
+    private String id;
+    @JsonIgnore
+    private String owner; // authenticated principal that submitted the job
+    private Long userId;
+    private Integer days;
+    private String mode;
+    private String status; // pending, running, completed, failed
+    private Long mealPlanId;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private Object mealPlan;
+}
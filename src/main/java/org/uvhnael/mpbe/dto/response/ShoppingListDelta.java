@@ -0,0 +1,51 @@
+package org.uvhnael.mpbe.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A change to the items of one shopping list, published once the transaction commits and
+ * pushed to the list's subscribers as an SSE event named after the type: "upsert" carries
+ * the full state of added or edited items, "check", "uncheck" and "delete" only their ids,
+ * and "resync" (for wholesale changes such as regenerating the list) tells the client to
+ * reload it
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record ShoppingListDelta(@JsonIgnore String type, Long shoppingListId, List<Long> ids, List<Item> items) {
+    
+    public static final String UPSERT = "upsert";
+    public static final String CHECK = "check";
+    public static final String UNCHECK = "uncheck";
+    public static final String DELETE = "delete";
+    public static final String RESYNC = "resync";
+    
+    public record Item(Long id, String ingredientName, BigDecimal quantity, String unit, Boolean isChecked,
+                       String category) {
+        
+        public static Item of(ShoppingListItem item) {
+            return new Item(item.getId(), item.getIngredientName(), item.getQuantity(), item.getUnit(),
+                item.getIsChecked(), item.getCategory());
+        }
+    }
+    
+    public static ShoppingListDelta upsert(Long shoppingListId, Collection<ShoppingListItem> items) {
+        return new ShoppingListDelta(UPSERT, shoppingListId, List.of(), items.stream().map(Item::of).toList());
+    }
+    
+    public static ShoppingListDelta checked(Long shoppingListId, Collection<Long> ids, boolean checked) {
+        return new ShoppingListDelta(checked ? CHECK : UNCHECK, shoppingListId, List.copyOf(ids), List.of());
+    }
+    
+    public static ShoppingListDelta deleted(Long shoppingListId, Collection<Long> ids) {
+        return new ShoppingListDelta(DELETE, shoppingListId, List.copyOf(ids), List.of());
+    }
+    
+    public static ShoppingListDelta resync(Long shoppingListId) {
+        return new ShoppingListDelta(RESYNC, shoppingListId, List.of(), List.of());
+    }
+}
@@ -0,0 +1,25 @@
+package org.uvhnael.mpbe.exception;
+
+public class AIServiceException extends RuntimeException {
+    
+    // HTTP status returned by the AI provider, 0 when the call never got a response
+    private final int statusCode;
+    
+    public AIServiceException(String message) {
+        this(message, 0);
+    }
+    
+    public AIServiceException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+    
+    public AIServiceException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,11 @@
+package org.uvhnael.mpbe.exception;
+
+/**
+ * Thrown without calling the AI provider when the circuit breaker is open or the
+ * concurrency limit is reached, so callers fail fast instead of waiting for a timeout
+ */
+public class AIServiceUnavailableException extends AIServiceException {
+    public AIServiceUnavailableException(String message) {
+        super(message);
+    }
+}
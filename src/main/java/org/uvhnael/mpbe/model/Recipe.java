@@ -14,7 +14,8 @@ import java.util.List;
        indexes = {
            @Index(name = "idx_meal_type", columnList = "meal_type"),
            @Index(name = "idx_cuisine_type", columnList = "cuisine_type"),
-           @Index(name = "idx_created_by", columnList = "created_by")
+           @Index(name = "idx_created_by", columnList = "created_by"),
+           @Index(name = "idx_created_by_content_hash", columnList = "created_by, content_hash")
        })
 @lombok.Getter
 @lombok.Setter
@@ -63,6 +64,11 @@ public class Recipe {
     @com.fasterxml.jackson.annotation.JsonManagedReference
     private List<Ingredient> ingredients;
     
+    // Set for AI imported recipes so the owner's identical generations reuse one row; cleared on manual edits
+    @Column(name = "content_hash", length = 64)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String contentHash;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -1,13 +1,25 @@
 package org.uvhnael.mpbe.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.dto.projection.RecipeIngredientRow;
 import org.uvhnael.mpbe.model.Ingredient;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
     List<Ingredient> findByRecipeId(Long recipeId);
     void deleteByRecipeId(Long recipeId);
+    
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.RecipeIngredientRow(" +
+           "r.id, u.id, r.name, r.mealType, r.cuisineType, r.servings, i.name, i.calories, i.carbs) " +
+           "FROM Ingredient i JOIN i.recipe r LEFT JOIN r.createdBy u WHERE r.mealType IN :mealTypes ORDER BY r.id")
+    List<RecipeIngredientRow> findRecipeIngredientRows(@Param("mealTypes") Collection<String> mealTypes);
+    
+    @Query("SELECT i FROM Ingredient i JOIN FETCH i.recipe r WHERE r.id IN :recipeIds")
+    List<Ingredient> findWithRecipeByRecipeIdIn(@Param("recipeIds") Collection<Long> recipeIds);
 }
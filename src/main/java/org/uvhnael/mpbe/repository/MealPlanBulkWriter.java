@@ -0,0 +1,144 @@
+package org.uvhnael.mpbe.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Batched inserts for the rows of AI generated meal plans. The entities use IDENTITY ids,
+ * which makes Hibernate insert them one statement per row; here each table is written
+ * with a single JDBC batch (a multi-row INSERT with MySQL's rewriteBatchedStatements)
+ * and the generated keys are copied back onto the entities.
+ * <p>
+ * Rows written here are not attached to the persistence context. Callers must run inside
+ * the surrounding transaction and must not cascade-persist the returned entities.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MealPlanBulkWriter {
+
+    private static final String INSERT_RECIPE = """
+        INSERT INTO recipes (name, description, cuisine_type, meal_type, prep_time, cook_time, servings,
+                             difficulty, image_url, instructions, created_by, content_hash, created_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String INSERT_INGREDIENT = """
+        INSERT INTO ingredients (recipe_id, name, quantity, unit, calories, protein, carbs, fat)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String INSERT_MEAL_PLAN_ITEM = """
+        INSERT INTO meal_plan_items (meal_plan_id, recipe_id, day_of_week, meal_type)
+        VALUES (?, ?, ?, ?)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    /**
+     * Insert new recipes and all of their ingredients: one batch per table
+     */
+    public void insertRecipes(List<Recipe> recipes) {
+        if (recipes.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        insert(INSERT_RECIPE, recipes, (ps, recipe) -> {
+            recipe.setCreatedAt(now);
+            ps.setString(1, recipe.getName());
+            ps.setString(2, recipe.getDescription());
+            ps.setString(3, recipe.getCuisineType());
+            ps.setString(4, recipe.getMealType());
+            ps.setObject(5, recipe.getPrepTime(), Types.INTEGER);
+            ps.setObject(6, recipe.getCookTime(), Types.INTEGER);
+            ps.setObject(7, recipe.getServings(), Types.INTEGER);
+            ps.setString(8, recipe.getDifficulty());
+            ps.setString(9, recipe.getImageUrl());
+            ps.setString(10, recipe.getInstructions());
+            ps.setObject(11, recipe.getCreatedBy() != null ? recipe.getCreatedBy().getId() : null, Types.BIGINT);
+            ps.setString(12, recipe.getContentHash());
+            ps.setTimestamp(13, Timestamp.valueOf(now));
+        }, Recipe::setId);
+
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (recipe.getIngredients() != null) {
+                ingredients.addAll(recipe.getIngredients());
+            }
+        }
+        if (ingredients.isEmpty()) {
+            return;
+        }
+
+        insert(INSERT_INGREDIENT, ingredients, (ps, ingredient) -> {
+            ps.setLong(1, ingredient.getRecipe().getId());
+            ps.setString(2, ingredient.getName());
+            ps.setBigDecimal(3, ingredient.getQuantity());
+            ps.setString(4, ingredient.getUnit());
+            ps.setBigDecimal(5, ingredient.getCalories());
+            ps.setBigDecimal(6, ingredient.getProtein());
+            ps.setBigDecimal(7, ingredient.getCarbs());
+            ps.setBigDecimal(8, ingredient.getFat());
+        }, Ingredient::setId);
+    }
+
+    /**
+     * Insert meal plan items whose meal plan and recipes already have ids
+     */
+    public void insertMealPlanItems(List<MealPlanItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        insert(INSERT_MEAL_PLAN_ITEM, items, (ps, item) -> {
+            ps.setLong(1, item.getMealPlan().getId());
+            ps.setLong(2, item.getRecipe().getId());
+            ps.setObject(3, item.getDayOfWeek(), Types.INTEGER);
+            ps.setString(4, item.getMealType());
+        }, MealPlanItem::setId);
+    }
+
+    private <T> void insert(String sql, List<T> rows, RowBinder<T> binder, BiConsumer<T, Long> idSetter) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (T row : rows) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next() && index < rows.size()) {
+                        idSetter.accept(rows.get(index++), keys.getLong(1));
+                    }
+                    if (index != rows.size()) {
+                        throw new SQLException("Expected " + rows.size() + " generated keys but got " + index);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -1,9 +1,16 @@
 package org.uvhnael.mpbe.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.projection.PlannedIngredient;
+import org.uvhnael.mpbe.dto.projection.PlannedMeal;
 import org.uvhnael.mpbe.model.MealPlanItem;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,5 +18,33 @@ public interface MealPlanItemRepository extends JpaRepository<MealPlanItem, Long
     List<MealPlanItem> findByMealPlanId(Long mealPlanId);
     List<MealPlanItem> findByMealPlanIdAndDayOfWeek(Long mealPlanId, Integer dayOfWeek);
     void deleteByMealPlanId(Long mealPlanId);
-    void deleteByMealPlanIdAndDayOfWeek(Long mealPlanId, Integer dayOfWeek);
+    
+    // Single DELETE statement instead of loading and removing the items one by one
+    @Modifying
+    @Query("DELETE FROM MealPlanItem i WHERE i.mealPlan.id = :mealPlanId AND i.dayOfWeek = :dayOfWeek")
+    int deleteByMealPlanIdAndDayOfWeek(@Param("mealPlanId") Long mealPlanId, @Param("dayOfWeek") Integer dayOfWeek);
+    
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.PlannedMeal(i.dayOfWeek, i.mealType, r.name) " +
+           "FROM MealPlanItem i JOIN i.recipe r " +
+           "WHERE i.mealPlan.id = :mealPlanId AND i.dayOfWeek <> :dayOfWeek ORDER BY i.dayOfWeek, i.id")
+    List<PlannedMeal> findPlannedMealsExcludingDay(@Param("mealPlanId") Long mealPlanId,
+                                                   @Param("dayOfWeek") Integer dayOfWeek);
+    
+    // Every ingredient row of the plan in one query, grouped by item
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.PlannedIngredient(i.id, r.name, ing.name, ing.quantity, ing.unit) " +
+           "FROM MealPlanItem i JOIN i.recipe r JOIN r.ingredients ing " +
+           "WHERE i.mealPlan.id = :mealPlanId ORDER BY i.dayOfWeek, i.id, ing.id")
+    List<PlannedIngredient> findPlannedIngredients(@Param("mealPlanId") Long mealPlanId);
+    
+    // Ingredient rows of the plan with one of the given (lowercased) names
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.IngredientLine(ing.name, ing.quantity, ing.unit) " +
+           "FROM MealPlanItem i JOIN i.recipe r JOIN r.ingredients ing " +
+           "WHERE i.mealPlan.id = :mealPlanId AND LOWER(ing.name) IN :names")
+    List<IngredientLine> findIngredientLinesByNames(@Param("mealPlanId") Long mealPlanId,
+                                                    @Param("names") Collection<String> names);
+    
+    // One id per item, so a recipe planned twice on the day is listed twice
+    @Query("SELECT i.recipe.id FROM MealPlanItem i WHERE i.mealPlan.id = :mealPlanId AND i.dayOfWeek = :dayOfWeek")
+    List<Long> findRecipeIdsByMealPlanIdAndDayOfWeek(@Param("mealPlanId") Long mealPlanId,
+                                                     @Param("dayOfWeek") Integer dayOfWeek);
 }
@@ -3,9 +3,14 @@ package org.uvhnael.mpbe.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.dto.projection.MealPlanWindow;
 import org.uvhnael.mpbe.model.MealPlan;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +18,15 @@ public interface MealPlanRepository extends JpaRepository<MealPlan, Long> {
     List<MealPlan> findByUserId(Long userId);
     Page<MealPlan> findByUserId(Long userId, Pageable pageable);
     List<MealPlan> findByUserIdAndStatus(Long userId, String status);
+    
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.MealPlanWindow(p.id, p.startDate, p.endDate) " +
+           "FROM MealPlan p WHERE p.user.id = :userId AND p.id IN :ids")
+    List<MealPlanWindow> findWindowsByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT new org.uvhnael.mpbe.dto.projection.MealPlanWindow(p.id, p.startDate, p.endDate) " +
+           "FROM MealPlan p WHERE p.user.id = :userId AND p.startDate <= :to " +
+           "AND (p.endDate IS NULL OR p.endDate >= :from)")
+    List<MealPlanWindow> findWindowsByUserIdOverlapping(@Param("userId") Long userId,
+                                                        @Param("from") LocalDate from,
+                                                        @Param("to") LocalDate to);
 }
@@ -3,9 +3,12 @@ package org.uvhnael.mpbe.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.uvhnael.mpbe.model.Recipe;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +17,15 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
     Page<Recipe> findByCuisineType(String cuisineType, Pageable pageable);
     List<Recipe> findByCreatedById(Long userId);
     Page<Recipe> findByNameContainingIgnoreCase(String name, Pageable pageable);
+    
+    // Ingredients and creator are fetched eagerly: reused recipes are serialized after the transaction.
+    // Scoped to one owner, who is the only one allowed to edit or delete the reused rows.
+    @Query("SELECT DISTINCT r FROM Recipe r LEFT JOIN FETCH r.ingredients LEFT JOIN FETCH r.createdBy " +
+           "WHERE r.createdBy.id = :userId AND r.contentHash IN :contentHashes")
+    List<Recipe> findWithIngredientsByCreatedByIdAndContentHashIn(@Param("userId") Long userId,
+                                                                  @Param("contentHashes") Collection<String> contentHashes);
+    
+    @Query("SELECT DISTINCT r FROM Recipe r LEFT JOIN FETCH r.ingredients LEFT JOIN FETCH r.createdBy " +
+           "WHERE r.id IN :ids")
+    List<Recipe> findWithIngredientsByIdIn(@Param("ids") Collection<Long> ids);
 }
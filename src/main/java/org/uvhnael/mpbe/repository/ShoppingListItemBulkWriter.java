@@ -0,0 +1,48 @@
+package org.uvhnael.mpbe.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.dto.request.ShoppingListItemBatchRequest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batched field updates for shopping list items. Every item may get different values, so
+ * a single set-based UPDATE does not fit; instead all rows go in one JDBC batch of the
+ * same statement, scoped to the shopping list so foreign item ids are left untouched.
+ * Like {@link MealPlanBulkWriter} this bypasses the persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ShoppingListItemBulkWriter {
+
+    private static final String UPDATE_ITEM = """
+        UPDATE shopping_list_items
+        SET ingredient_name = COALESCE(?, ingredient_name), quantity = COALESCE(?, quantity),
+            unit = COALESCE(?, unit), category = COALESCE(?, category)
+        WHERE id = ? AND shopping_list_id = ?
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Apply the updates in one batch; returns how many items of the list were updated
+     */
+    public int updateItems(Long shoppingListId, List<ShoppingListItemBatchRequest.ItemUpdate> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_ITEM, updates, updates.size(), (ps, update) -> {
+            ps.setString(1, update.getIngredientName());
+            ps.setBigDecimal(2, update.getQuantity());
+            ps.setString(3, update.getUnit());
+            ps.setString(4, update.getCategory());
+            ps.setLong(5, update.getId());
+            ps.setLong(6, shoppingListId);
+        });
+        // Drivers that rewrite the batch report SUCCESS_NO_INFO (-2) instead of row counts
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).map(count -> Math.max(count, 0)).sum();
+    }
+}
@@ -1,9 +1,13 @@
 package org.uvhnael.mpbe.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.uvhnael.mpbe.model.ShoppingListItem;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +15,28 @@ public interface ShoppingListItemRepository extends JpaRepository<ShoppingListIt
     List<ShoppingListItem> findByShoppingListId(Long shoppingListId);
     List<ShoppingListItem> findByShoppingListIdAndIsChecked(Long shoppingListId, Boolean isChecked);
     void deleteByShoppingListId(Long shoppingListId);
+    
+    // Items of every list generated from the meal plan, restricted to the given lowercase names
+    @Query("SELECT i FROM ShoppingListItem i JOIN i.shoppingList l " +
+           "WHERE l.mealPlan.id = :mealPlanId AND LOWER(i.ingredientName) IN :names")
+    List<ShoppingListItem> findByMealPlanIdAndIngredientNames(@Param("mealPlanId") Long mealPlanId,
+                                                               @Param("names") Collection<String> names);
+    
+    // The given ids that belong to the list
+    @Query("SELECT i.id FROM ShoppingListItem i WHERE i.shoppingList.id = :shoppingListId AND i.id IN :ids")
+    List<Long> findIdsByShoppingListIdAndIdIn(@Param("shoppingListId") Long shoppingListId,
+                                              @Param("ids") Collection<Long> ids);
+    
+    // Set-based statements for batch item operations, scoped to one list
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ShoppingListItem i SET i.isChecked = :checked " +
+           "WHERE i.shoppingList.id = :shoppingListId AND i.id IN :ids")
+    int updateCheckedByShoppingListIdAndIdIn(@Param("shoppingListId") Long shoppingListId,
+                                             @Param("ids") Collection<Long> ids,
+                                             @Param("checked") Boolean checked);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM ShoppingListItem i WHERE i.shoppingList.id = :shoppingListId AND i.id IN :ids")
+    int deleteByShoppingListIdAndIdIn(@Param("shoppingListId") Long shoppingListId,
+                                      @Param("ids") Collection<Long> ids);
 }
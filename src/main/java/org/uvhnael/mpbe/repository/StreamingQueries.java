@@ -0,0 +1,63 @@
+package org.uvhnael.mpbe.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.projection.RecipeSearchRow;
+
+import java.util.stream.Stream;
+
+/**
+ * Scans that are read row by row instead of into a list, and the only queries that set a
+ * fetch size. With the default of Integer.MIN_VALUE, MySQL Connector/J streams the result
+ * set rather than buffering all of it; other queries on the connection are read as usual.
+ * A streamed result set must be closed before its connection runs another statement, so
+ * each scan is a single query and callers close the stream before touching the database
+ * again. H2 rejects negative fetch sizes, so the test profile sets a positive
+ * streaming-queries.fetch-size.
+ */
+@Repository
+public class StreamingQueries {
+
+    private final EntityManager entityManager;
+    private final int fetchSize;
+
+    public StreamingQueries(EntityManager entityManager,
+                            @Value("${streaming-queries.fetch-size:-2147483648}") int fetchSize) {
+        this.entityManager = entityManager;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Ingredient rows of the meals planned on the given days (1-based, inclusive);
+     * no entity is loaded into the persistence context
+     */
+    public Stream<IngredientLine> streamIngredientLines(Long mealPlanId, Integer firstDay, Integer lastDay) {
+        return entityManager.createQuery(
+                "SELECT new org.uvhnael.mpbe.dto.projection.IngredientLine(ing.name, ing.quantity, ing.unit) " +
+                "FROM MealPlanItem i JOIN i.recipe r JOIN r.ingredients ing " +
+                "WHERE i.mealPlan.id = :mealPlanId AND i.dayOfWeek BETWEEN :firstDay AND :lastDay",
+                IngredientLine.class)
+            .setParameter("mealPlanId", mealPlanId)
+            .setParameter("firstDay", firstDay)
+            .setParameter("lastDay", lastDay)
+            .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+            .getResultStream();
+    }
+
+    /**
+     * Every recipe for the search index, once per ingredient, ordered by recipe id so the
+     * rows of one recipe are adjacent
+     */
+    public Stream<RecipeSearchRow> streamSearchRows() {
+        return entityManager.createQuery(
+                "SELECT new org.uvhnael.mpbe.dto.projection.RecipeSearchRow(" +
+                "r.id, r.name, r.description, r.cuisineType, ing.name) " +
+                "FROM Recipe r LEFT JOIN r.ingredients ing ORDER BY r.id",
+                RecipeSearchRow.class)
+            .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+            .getResultStream();
+    }
+}
@@ -0,0 +1,75 @@
+package org.uvhnael.mpbe.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.uvhnael.mpbe.dto.response.ApiResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for {@link RateLimited} endpoints. Authenticated callers are metered
+ * by user, anonymous ones by remote address. Rejected calls get 429 with Retry-After in
+ * whole seconds and never reach the controller. Async redispatches of an admitted request
+ * (SSE streams, Callable results) are not charged again.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+    
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        
+        String endpoint = handlerMethod.getMethod().getName();
+        TokenBucketRateLimiter.Decision decision = rateLimiter.tryAcquire(callerKey(request), rateLimited.cost());
+        meterRegistry.counter("rate-limit.requests",
+            "endpoint", endpoint, "result", decision.allowed() ? "allowed" : "rejected").increment();
+        if (decision.allowed()) {
+            return true;
+        }
+        
+        long retryAfterSeconds = decision.retryAfterNanos() == Long.MAX_VALUE ? 60
+            : Math.max(1, (decision.retryAfterNanos() + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+            new ApiResponse(false, "Too many requests, retry after " + retryAfterSeconds + " seconds"));
+        return false;
+    }
+    
+    private String callerKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !"anonymousUser".equals(authentication.getPrincipal())) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
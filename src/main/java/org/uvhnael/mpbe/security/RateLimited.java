@@ -0,0 +1,23 @@
+package org.uvhnael.mpbe.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller method as metered by the per-user token bucket. Every call takes
+ * {@link #cost()} tokens from the caller's bucket; calls that cannot be paid for are
+ * answered with 429 and a Retry-After header by {@link RateLimitInterceptor}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    
+    /**
+     * Tokens taken per call; expensive endpoints cost more
+     */
+    int cost() default 1;
+}
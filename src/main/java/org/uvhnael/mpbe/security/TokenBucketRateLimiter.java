@@ -0,0 +1,85 @@
+package org.uvhnael.mpbe.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token buckets keyed by caller. Each bucket is a single AtomicLong holding the
+ * time at which it will be full again (the GCRA formulation of a token bucket): taking
+ * tokens pushes that time forward by cost * refill interval with a CAS, and a call is
+ * rejected when the push would exceed the bucket capacity. Full buckets carry no state
+ * and are dropped by a periodic sweep.
+ */
+@Slf4j
+@Component
+public class TokenBucketRateLimiter {
+    
+    /**
+     * @param retryAfterNanos 0 when allowed, otherwise how long until the call would be allowed
+     */
+    public record Decision(boolean allowed, long retryAfterNanos) {
+    }
+    
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long nanosPerToken;
+    private final LongSupplier clock;
+    
+    @Autowired
+    public TokenBucketRateLimiter(@Value("${rate-limit.capacity:20}") int capacity,
+                                  @Value("${rate-limit.refill-per-minute:10}") int refillPerMinute) {
+        this(capacity, refillPerMinute, System::nanoTime);
+    }
+    
+    TokenBucketRateLimiter(int capacity, int refillPerMinute, LongSupplier clock) {
+        this.capacity = capacity;
+        this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.clock = clock;
+    }
+    
+    /**
+     * Take cost tokens from the caller's bucket if it holds that many
+     */
+    public Decision tryAcquire(String key, int cost) {
+        if (cost > capacity) {
+            return new Decision(false, Long.MAX_VALUE);
+        }
+        
+        long now = clock.getAsLong();
+        long burst = capacity * nanosPerToken;
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        
+        while (true) {
+            long fullAt = bucket.get();
+            long newFullAt = Math.max(fullAt, now) + cost * nanosPerToken;
+            long overdraft = newFullAt - now - burst;
+            if (overdraft > 0) {
+                return new Decision(false, overdraft);
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                return new Decision(true, 0);
+            }
+        }
+    }
+    
+    /**
+     * Drop buckets that have refilled completely; they are recreated full on the next call
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = clock.getAsLong();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+    }
+    
+    int trackedBuckets() {
+        return buckets.size();
+    }
+}
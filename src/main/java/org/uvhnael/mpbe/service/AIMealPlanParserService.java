@@ -1,19 +1,26 @@
 package org.uvhnael.mpbe.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.exception.AIServiceException;
 import org.uvhnael.mpbe.model.*;
-import org.uvhnael.mpbe.repository.IngredientRepository;
-import org.uvhnael.mpbe.repository.MealPlanItemRepository;
+import org.uvhnael.mpbe.repository.MealPlanBulkWriter;
 import org.uvhnael.mpbe.repository.MealPlanRepository;
 import org.uvhnael.mpbe.repository.RecipeRepository;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -21,157 +28,206 @@ public class AIMealPlanParserService {
     
     private final ObjectMapper objectMapper;
     private final RecipeRepository recipeRepository;
-    private final IngredientRepository ingredientRepository;
-    private final MealPlanItemRepository mealPlanItemRepository;
     private final MealPlanRepository mealPlanRepository;
+    private final MealPlanBulkWriter bulkWriter;
+    private final MealPlanService mealPlanService;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
     
+    /**
+     * Parse the raw AI text in a single streaming pass and save the plan with batched inserts
+     */
     @Transactional
     public MealPlan parseAndSaveMealPlan(String aiResponse, MealPlan mealPlan) {
+        return parseAndSaveMealPlan(parseResponse(aiResponse), mealPlan);
+    }
+    
+    /**
+     * Parse raw AI text into a meal plan response without saving anything
+     */
+    public AIMealPlanResponse parseResponse(String aiResponse) {
+        Map<Integer, AIMealPlanResponse.AIDayPlan> days = new LinkedHashMap<>();
         try {
-            // Extract JSON from AI response (handle markdown code blocks)
-            String jsonContent = extractJSON(aiResponse);
-            
-            // Sanitize JSON - escape unescaped newlines in string values
-            jsonContent = sanitizeJSON(jsonContent);
-            
-            AIMealPlanResponse aiPlan = objectMapper.readValue(jsonContent, AIMealPlanResponse.class);
-            
-            List<MealPlanItem> items = new ArrayList<>();
-            
-            // Save meal plan first to get ID
-            MealPlan savedMealPlan = mealPlanRepository.save(mealPlan);
-            
-            for (AIMealPlanResponse.AIDayPlan day : aiPlan.getDays()) {
-                for (AIMealPlanResponse.AIMeal meal : day.getMeals()) {
-                    // Create or find recipe
-                    Recipe recipe = createRecipeFromAIMeal(meal, savedMealPlan.getUser());
-                    
-                    // Create meal plan item
-                    MealPlanItem item = new MealPlanItem();
-                    item.setMealPlan(savedMealPlan);
-                    item.setRecipe(recipe);
-                    item.setDayOfWeek(day.getDay());
-                    item.setMealType(meal.getType());
-                    
-                    items.add(item);
-                }
-            }
-            
-            // Save all meal plan items
-            mealPlanItemRepository.saveAll(items);
-            savedMealPlan.setMealPlanItems(items);
-            
-            // Calculate total calories from all meals
-            int totalCalories = 0;
-            for (AIMealPlanResponse.AIDayPlan day : aiPlan.getDays()) {
-                for (AIMealPlanResponse.AIMeal meal : day.getMeals()) {
-                    if (meal.getNutrition() != null && meal.getNutrition().getCalories() != null) {
-                        try {
-                            // Extract numeric value from string like "300" or "~300 kcal"
-                            String caloriesStr = meal.getNutrition().getCalories().replaceAll("[^0-9]", "");
-                            if (!caloriesStr.isEmpty()) {
-                                totalCalories += Integer.parseInt(caloriesStr);
-                            }
-                        } catch (Exception e) {
-                            // Skip if cannot parse
-                        }
-                    }
-                }
-            }
-            
-            savedMealPlan.setTotalCalories(totalCalories);
-            mealPlanRepository.save(savedMealPlan);
-            
-            return savedMealPlan;
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse AI response: " + e.getMessage(), e);
+            new AIMealPlanStreamParser(objectMapper).parse(aiResponse, (day, meal) ->
+                days.computeIfAbsent(day, number -> {
+                    AIMealPlanResponse.AIDayPlan dayPlan = new AIMealPlanResponse.AIDayPlan();
+                    dayPlan.setDay(number);
+                    dayPlan.setMeals(new ArrayList<>());
+                    return dayPlan;
+                }).getMeals().add(meal));
+        } catch (IOException e) {
+            throw new AIServiceException("Failed to parse AI response: " + e.getMessage(), e);
         }
+        
+        AIMealPlanResponse response = new AIMealPlanResponse();
+        response.setDays(new ArrayList<>(days.values()));
+        return response;
     }
     
-    private String extractJSON(String aiResponse) {
-        String response = aiResponse.trim();
-        
-        // Find JSON block within markdown code fences
-        int jsonStart = response.indexOf("```json");
-        if (jsonStart != -1) {
-            // Found ```json marker
-            int jsonContentStart = response.indexOf('\n', jsonStart) + 1;
-            int jsonEnd = response.indexOf("```", jsonContentStart);
-            if (jsonEnd != -1) {
-                return response.substring(jsonContentStart, jsonEnd).trim();
-            }
+    @Transactional
+    public MealPlan parseAndSaveMealPlan(AIMealPlanResponse aiPlan, MealPlan mealPlan) {
+        if (aiPlan.getDays() == null || aiPlan.getDays().stream()
+                .allMatch(day -> day.getMeals() == null || day.getMeals().isEmpty())) {
+            throw new AIServiceException("Failed to parse AI response: no meals found");
         }
         
-        // Try finding generic ``` markers
-        jsonStart = response.indexOf("```");
-        if (jsonStart != -1) {
-            int jsonContentStart = response.indexOf('\n', jsonStart) + 1;
-            int jsonEnd = response.indexOf("```", jsonContentStart);
-            if (jsonEnd != -1) {
-                return response.substring(jsonContentStart, jsonEnd).trim();
-            }
+        // Calculate total calories from all meals
+        int totalCalories = 0;
+        for (AIMealPlanResponse.AIDayPlan day : aiPlan.getDays()) {
+            totalCalories += calculateCalories(day);
         }
+        mealPlan.setTotalCalories(totalCalories);
         
-        // No markdown found, try to find JSON by looking for opening brace
-        jsonStart = response.indexOf('{');
-        if (jsonStart != -1) {
-            return response.substring(jsonStart).trim();
-        }
+        // Save meal plan first to get ID
+        MealPlan savedMealPlan = mealPlanRepository.save(mealPlan);
         
-        // Return as-is if nothing worked
-        return response;
+        List<MealPlanItem> items = saveMeals(savedMealPlan, aiPlan.getDays());
+        
+        // The items were inserted over JDBC; detach the plan so they are not cascaded again on commit
+        entityManager.detach(savedMealPlan);
+        savedMealPlan.setMealPlanItems(items);
+        
+        return savedMealPlan;
+    }
+    
+    /**
+     * Start parsing an AI response that arrives in chunks; each meal is handed to the
+     * handler as soon as it has been read, and each day once it is complete
+     */
+    public AIMealPlanStreamParser.Session openStream(AIMealPlanStreamParser.MealHandler handler) throws IOException {
+        return new AIMealPlanStreamParser(objectMapper).open(handler);
+    }
+    
+    /**
+     * Persist the recipes and meal plan items of one day of an already saved meal plan
+     */
+    @Transactional
+    public List<MealPlanItem> saveDay(MealPlan mealPlan, AIMealPlanResponse.AIDayPlan day) {
+        return saveMeals(mealPlan, List.of(day));
+    }
+    
+    /**
+     * Swap the meals of an existing day for the regenerated ones. Only the recipes and the
+     * items of that day are written; the rest of the plan is not loaded.
+     */
+    @Transactional
+    public List<MealPlanItem> replaceDay(MealPlan mealPlan, AIMealPlanResponse.AIDayPlan day) {
+        List<MealPlanItem> items = createItems(mealPlan, List.of(day));
+        mealPlanService.replaceDayMeals(mealPlan.getId(), day.getDay(), items);
+        return items;
     }
     
     /**
-     * Sanitize JSON by escaping unescaped newlines and other control characters in string values
+     * Mark a streamed meal plan as complete once all days have been saved
      */
-    private String sanitizeJSON(String json) {
-        StringBuilder result = new StringBuilder();
-        boolean inString = false;
-        boolean escaped = false;
+    @Transactional
+    public MealPlan completeMealPlan(Long mealPlanId, int totalCalories) {
+        MealPlan mealPlan = mealPlanRepository.findById(mealPlanId)
+            .orElseThrow(() -> new RuntimeException("Meal plan not found"));
         
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-            
-            if (escaped) {
-                result.append(c);
-                escaped = false;
-                continue;
+        mealPlan.setTotalCalories(totalCalories);
+        mealPlan.setStatus("active");
+        return mealPlanRepository.save(mealPlan);
+    }
+    
+    /**
+     * Sum the calories reported by the AI for every meal of a day
+     */
+    public int calculateCalories(AIMealPlanResponse.AIDayPlan day) {
+        int totalCalories = 0;
+        if (day.getMeals() == null) {
+            return totalCalories;
+        }
+        for (AIMealPlanResponse.AIMeal meal : day.getMeals()) {
+            totalCalories += calculateCalories(meal);
+        }
+        return totalCalories;
+    }
+    
+    private int calculateCalories(AIMealPlanResponse.AIMeal meal) {
+        if (meal.getNutrition() != null && meal.getNutrition().getCalories() != null) {
+            try {
+                // Extract numeric value from string like "300" or "~300 kcal"
+                String caloriesStr = meal.getNutrition().getCalories().replaceAll("[^0-9]", "");
+                if (!caloriesStr.isEmpty()) {
+                    return Integer.parseInt(caloriesStr);
+                }
+            } catch (Exception e) {
+                // Skip if cannot parse
             }
-            
-            if (c == '\\') {
-                result.append(c);
-                escaped = true;
-                continue;
+        }
+        return 0;
+    }
+    
+    /**
+     * Write the recipes and meal plan items for the given days, one JDBC batch per table
+     */
+    private List<MealPlanItem> saveMeals(MealPlan mealPlan, List<AIMealPlanResponse.AIDayPlan> days) {
+        List<MealPlanItem> items = createItems(mealPlan, days);
+        bulkWriter.insertMealPlanItems(items);
+        return items;
+    }
+    
+    /**
+     * Build the (unsaved) meal plan items for the given days. Recipes the plan's owner already
+     * imported with the same content hash are looked up in one query; other users' recipes
+     * are never reused, so editing or deleting them cannot change this plan. New recipes and
+     * their ingredients are inserted in one batch per table.
+     */
+    private List<MealPlanItem> createItems(MealPlan mealPlan, List<AIMealPlanResponse.AIDayPlan> days) {
+        List<String> hashes = new ArrayList<>();
+        for (AIMealPlanResponse.AIDayPlan day : days) {
+            if (day.getMeals() != null) {
+                for (AIMealPlanResponse.AIMeal meal : day.getMeals()) {
+                    hashes.add(RecipeContentHasher.hash(meal));
+                }
+            }
+        }
+        
+        Map<String, Recipe> recipesByHash = new HashMap<>();
+        User owner = mealPlan.getUser();
+        if (!hashes.isEmpty() && owner != null && owner.getId() != null) {
+            for (Recipe recipe : recipeRepository.findWithIngredientsByCreatedByIdAndContentHashIn(
+                    owner.getId(), new HashSet<>(hashes))) {
+                recipesByHash.putIfAbsent(recipe.getContentHash(), recipe);
             }
-            
-            if (c == '"') {
-                result.append(c);
-                inString = !inString;
+        }
+        
+        List<Recipe> newRecipes = new ArrayList<>();
+        List<MealPlanItem> items = new ArrayList<>();
+        int index = 0;
+        for (AIMealPlanResponse.AIDayPlan day : days) {
+            if (day.getMeals() == null) {
                 continue;
             }
-            
-            // If we're inside a string and encounter control characters, escape them
-            if (inString) {
-                if (c == '\n') {
-                    result.append("\\n");
-                } else if (c == '\r') {
-                    result.append("\\r");
-                } else if (c == '\t') {
-                    result.append("\\t");
-                } else {
-                    result.append(c);
-                }
-            } else {
-                result.append(c);
+            for (AIMealPlanResponse.AIMeal meal : day.getMeals()) {
+                Recipe recipe = recipesByHash.computeIfAbsent(hashes.get(index++), contentHash -> {
+                    Recipe created = createRecipeFromAIMeal(meal, mealPlan.getUser(), contentHash);
+                    newRecipes.add(created);
+                    return created;
+                });
+                
+                MealPlanItem item = new MealPlanItem();
+                item.setMealPlan(mealPlan);
+                item.setRecipe(recipe);
+                item.setDayOfWeek(day.getDay());
+                item.setMealType(meal.getType());
+                items.add(item);
             }
         }
         
-        return result.toString();
+        bulkWriter.insertRecipes(newRecipes);
+        if (!newRecipes.isEmpty()) {
+            eventPublisher.publishEvent(new RecipeSearchService.RecipesChanged(
+                newRecipes.stream().map(Recipe::getId).toList()));
+        }
+        return items;
     }
     
-    private Recipe createRecipeFromAIMeal(AIMealPlanResponse.AIMeal meal, User user) {
+    /**
+     * Build an unsaved recipe with its ingredients from an AI meal
+     */
+    private Recipe createRecipeFromAIMeal(AIMealPlanResponse.AIMeal meal, User user, String contentHash) {
         Recipe recipe = new Recipe();
         recipe.setName(meal.getName());
         recipe.setDescription(meal.getDescription());
@@ -184,12 +240,11 @@ public class AIMealPlanParserService {
         recipe.setImageUrl(meal.getImageUrl());
         recipe.setInstructions(meal.getInstructions());
         recipe.setCreatedBy(user);
-        
-        recipe = recipeRepository.save(recipe);
+        recipe.setContentHash(contentHash);
         
         // Create ingredients
+        List<Ingredient> ingredients = new ArrayList<>();
         if (meal.getIngredients() != null) {
-            List<Ingredient> ingredients = new ArrayList<>();
             for (AIMealPlanResponse.AIIngredient aiIngredient : meal.getIngredients()) {
                 Ingredient ingredient = new Ingredient();
                 ingredient.setRecipe(recipe);
@@ -203,9 +258,8 @@ public class AIMealPlanParserService {
                 
                 ingredients.add(ingredient);
             }
-            ingredientRepository.saveAll(ingredients);
-            recipe.setIngredients(ingredients);
         }
+        recipe.setIngredients(ingredients);
         
         return recipe;
     }
@@ -0,0 +1,242 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Single-pass parser for AI meal plan responses built on Jackson's non-blocking parser, so
+ * the same code reads a complete response and one that arrives in chunks. Only meals of
+ * the day objects in the root object's "days" array are emitted, each as soon as its
+ * closing brace arrives; other objects, at any depth, are skipped.
+ * <p>
+ * Text before the root object (prose, markdown fences) is skipped: a response starting
+ * with a brace is the root itself, otherwise the root is the first brace after the first
+ * ``` fence, or, when the response has no fence, the first brace in it. Parsing stops at
+ * the root's closing brace (a response that ends before it is rejected), and raw control
+ * characters inside strings are accepted.
+ */
+public class AIMealPlanStreamParser {
+
+    public interface MealHandler {
+        void onMeal(int day, AIMealPlanResponse.AIMeal meal);
+
+        /**
+         * Called after the last meal of a day, with the day's final number
+         */
+        default void onDayComplete(int day) {
+        }
+    }
+
+    private enum Container { ROOT, DAYS, DAY, MEALS, OTHER }
+
+    private final ObjectMapper objectMapper;
+
+    public AIMealPlanStreamParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Parse a complete response and return the number of meals emitted
+     */
+    public int parse(String aiResponse, MealHandler handler) throws IOException {
+        Session session = open(handler);
+        session.feed(aiResponse);
+        return session.finish();
+    }
+
+    /**
+     * Start parsing a response that is fed in chunks
+     */
+    public Session open(MealHandler handler) throws IOException {
+        return new Session(handler);
+    }
+
+    public final class Session {
+
+        private final MealHandler handler;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        private StringBuilder prelude = new StringBuilder();
+        private char pendingHighSurrogate;
+        private final Deque<Container> containers = new ArrayDeque<>();
+        private boolean done;
+        private int meals;
+
+        private int dayPosition;
+        private int day;
+        private TokenBuffer meal;
+        private int mealDepth;
+
+        private Session(MealHandler handler) throws IOException {
+            this.handler = handler;
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+            this.parser.enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature());
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        /**
+         * Read the next chunk of the response; meals completed by it are emitted before it returns
+         */
+        public void feed(String chunk) throws IOException {
+            if (done || chunk.isEmpty()) {
+                return;
+            }
+            if (prelude != null) {
+                prelude.append(chunk);
+                int root = rootStart(prelude, false);
+                if (root < 0) {
+                    return;
+                }
+                chunk = prelude.substring(root);
+                prelude = null;
+            }
+            feedJson(chunk);
+        }
+
+        /**
+         * Signal the end of the response and return the number of meals emitted
+         */
+        public int finish() throws IOException {
+            if (prelude != null) {
+                int root = rootStart(prelude, true);
+                if (root < 0) {
+                    throw new IOException("AI response does not contain a JSON object");
+                }
+                String json = prelude.substring(root);
+                prelude = null;
+                feedJson(json);
+            }
+            if (!done) {
+                feeder.endOfInput();
+                drain();
+            }
+            if (!done) {
+                // Meals read so far are valid on their own, but a cut-off answer must not pass as complete
+                throw new IOException("Expected " + JsonToken.END_OBJECT + " closing the root but the response ended at "
+                    + parser.currentLocation());
+            }
+            parser.close();
+            return meals;
+        }
+
+        private void feedJson(String text) throws IOException {
+            if (pendingHighSurrogate != 0) {
+                text = pendingHighSurrogate + text;
+                pendingHighSurrogate = 0;
+            }
+            // A surrogate pair split across chunks is encoded once both halves are here
+            if (!text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+                pendingHighSurrogate = text.charAt(text.length() - 1);
+                text = text.substring(0, text.length() - 1);
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while (!done && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                onToken(token);
+            }
+        }
+
+        private void onToken(JsonToken token) throws IOException {
+            if (meal != null) {
+                meal.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    mealDepth++;
+                } else if (token.isStructEnd() && --mealDepth == 0) {
+                    AIMealPlanResponse.AIMeal parsed;
+                    try (JsonParser mealParser = meal.asParser(objectMapper)) {
+                        parsed = objectMapper.readValue(mealParser, AIMealPlanResponse.AIMeal.class);
+                    }
+                    meal = null;
+                    handler.onMeal(day, parsed);
+                    meals++;
+                }
+                return;
+            }
+
+            Container parent = containers.peek();
+            if (token.isStructStart()) {
+                Container opened = open(parent, token);
+                if (opened == null) {
+                    return;
+                }
+                containers.push(opened);
+            } else if (token.isStructEnd()) {
+                Container closed = containers.pop();
+                if (closed == Container.DAY) {
+                    handler.onDayComplete(day);
+                } else if (closed == Container.ROOT) {
+                    done = true;
+                }
+            } else if (parent == Container.DAY && token.isNumeric() && "day".equals(parser.currentName())) {
+                day = parser.getIntValue();
+            }
+        }
+
+        /**
+         * The role of a container opened under the given parent; null when a meal starts
+         */
+        private Container open(Container parent, JsonToken token) throws IOException {
+            boolean object = token == JsonToken.START_OBJECT;
+            if (parent == null) {
+                if (!object) {
+                    throw new IOException("Expected " + JsonToken.START_OBJECT + " but found " + token
+                        + " at " + parser.currentLocation());
+                }
+                return Container.ROOT;
+            }
+            String field = parser.currentName();
+            if (parent == Container.ROOT && !object && "days".equals(field)) {
+                return Container.DAYS;
+            }
+            if (parent == Container.DAYS && object) {
+                // "day" normally precedes "meals"; if it does not, fall back to the day's position
+                day = ++dayPosition;
+                return Container.DAY;
+            }
+            if (parent == Container.DAY && !object && "meals".equals(field)) {
+                return Container.MEALS;
+            }
+            if (parent == Container.MEALS && object) {
+                meal = new TokenBuffer(parser);
+                meal.copyCurrentEvent(parser);
+                mealDepth = 1;
+                return null;
+            }
+            return Container.OTHER;
+        }
+    }
+
+    /**
+     * Offset of the root object in the text before it, or -1 while that cannot be decided
+     * yet: the first brace when the text starts with one, else the first brace after the
+     * first ``` fence, else (only once the response has ended) the first brace
+     */
+    private static int rootStart(CharSequence text, boolean ended) {
+        String prelude = text.toString();
+        String stripped = prelude.stripLeading();
+        if (stripped.startsWith("{")) {
+            return prelude.length() - stripped.length();
+        }
+        int fence = prelude.indexOf("```");
+        if (fence >= 0) {
+            return prelude.indexOf('{', fence + 3);
+        }
+        return ended ? prelude.indexOf('{') : -1;
+    }
+}
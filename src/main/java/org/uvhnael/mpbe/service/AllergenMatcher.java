@@ -0,0 +1,150 @@
+package org.uvhnael.mpbe.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Matches ingredient and meal names against a profile's allergies through a category
+ * taxonomy, so "dairy" catches cheese and butter and "shellfish" catches shrimp. Words are
+ * matched whole (ignoring plurals), so eggplant does not count as egg, and plant based
+ * variants such as peanut butter or oat milk are not dairy.
+ * <p>
+ * Allergies outside the taxonomy cannot be checked reliably; {@link #forAllergies} returns
+ * empty for them and callers must not filter on their own.
+ */
+public final class AllergenMatcher {
+
+    private record Category(Set<String> aliases, Set<String> members, Set<String> exemptions) {
+    }
+
+    private static final Set<String> PLANT_QUALIFIERS = Set.of(
+        "peanut", "almond", "coconut", "soy", "oat", "cashew", "rice", "vegan", "plant", "cocoa", "shea", "free");
+
+    private static final List<Category> TAXONOMY = List.of(
+        new Category(Set.of("dairy", "milk", "lactose", "dairy products"),
+            Set.of("milk", "cheese", "butter", "cream", "yogurt", "yoghurt", "whey", "ghee", "paneer", "feta",
+                "parmesan", "mozzarella", "cheddar", "ricotta", "mascarpone", "kefir", "casein", "buttermilk",
+                "custard"),
+            PLANT_QUALIFIERS),
+        new Category(Set.of("egg", "eggs"),
+            Set.of("egg", "mayonnaise", "mayo", "meringue", "aioli"),
+            Set.of("vegan", "free")),
+        new Category(Set.of("peanut", "peanuts"),
+            Set.of("peanut", "groundnut"),
+            Set.of()),
+        new Category(Set.of("tree nut", "tree nuts", "nut", "nuts"),
+            Set.of("nut", "almond", "walnut", "cashew", "pecan", "pistachio", "hazelnut", "macadamia", "praline",
+                "marzipan", "pesto", "nutella"),
+            Set.of()),
+        new Category(Set.of("shellfish", "crustacean", "crustaceans"),
+            Set.of("shellfish", "shrimp", "prawn", "crab", "lobster", "crayfish", "langoustine", "scallop", "clam",
+                "mussel", "oyster", "squid", "octopus"),
+            Set.of()),
+        new Category(Set.of("fish"),
+            Set.of("fish", "salmon", "tuna", "cod", "anchovy", "tilapia", "sardine", "mackerel", "trout",
+                "halibut", "haddock", "herring", "bass"),
+            Set.of()),
+        new Category(Set.of("gluten", "wheat"),
+            Set.of("wheat", "gluten", "flour", "bread", "pasta", "spaghetti", "noodle", "barley", "rye",
+                "couscous", "semolina", "breadcrumb", "tortilla", "seitan"),
+            Set.of("free", "rice", "corn", "almond", "coconut", "buckwheat")),
+        new Category(Set.of("soy", "soya", "soybean", "soybeans"),
+            Set.of("soy", "soya", "soybean", "tofu", "tempeh", "edamame", "miso"),
+            Set.of()),
+        new Category(Set.of("sesame"),
+            Set.of("sesame", "tahini"),
+            Set.of()));
+
+    private static final Map<String, Category> BY_ALIAS = byAlias();
+
+    private final List<Category> categories;
+
+    private AllergenMatcher(List<Category> categories) {
+        this.categories = categories;
+    }
+
+    /**
+     * The profile's allergies, lowercased, split on commas or semicolons, without "none"
+     */
+    public static List<String> parse(String allergies) {
+        if (allergies == null) {
+            return List.of();
+        }
+        return Arrays.stream(allergies.toLowerCase(Locale.ROOT).split("[,;]"))
+            .map(allergy -> allergy.trim().replaceAll("\\s+", " "))
+            .filter(allergy -> !allergy.isEmpty() && !allergy.equals("none"))
+            .toList();
+    }
+
+    /**
+     * A matcher for the given allergies, or empty when one of them is not in the taxonomy
+     */
+    public static Optional<AllergenMatcher> forAllergies(String allergies) {
+        List<Category> categories = new ArrayList<>();
+        for (String allergy : parse(allergies)) {
+            Category category = BY_ALIAS.get(allergy);
+            if (category == null) {
+                return Optional.empty();
+            }
+            categories.add(category);
+        }
+        return Optional.of(new AllergenMatcher(categories));
+    }
+
+    /**
+     * Whether the text names a member of any of the allergy categories. A member preceded by
+     * one of its category's qualifiers (almond milk, gluten-free pasta) or followed by "free"
+     * (dairy-free) does not count.
+     */
+    public boolean matches(String text) {
+        if (text == null || categories.isEmpty()) {
+            return false;
+        }
+        List<String> words = Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^a-z]+"))
+            .filter(word -> !word.isEmpty())
+            .toList();
+        for (Category category : categories) {
+            for (int i = 0; i < words.size(); i++) {
+                if (!isMember(words.get(i), category.members())) {
+                    continue;
+                }
+                boolean qualified = i > 0 && category.exemptions().contains(words.get(i - 1));
+                boolean free = i + 1 < words.size() && words.get(i + 1).equals("free");
+                if (!qualified && !free) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMember(String word, Set<String> members) {
+        return members.contains(word) || members.contains(singular(word));
+    }
+
+    private static String singular(String word) {
+        if (word.endsWith("ies") && word.length() > 4) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("shes") || word.endsWith("ches")) {
+            return word.substring(0, word.length() - 2);
+        }
+        return word.endsWith("s") ? word.substring(0, word.length() - 1) : word;
+    }
+
+    private static Map<String, Category> byAlias() {
+        Map<String, Category> byAlias = new HashMap<>();
+        for (Category category : TAXONOMY) {
+            for (String alias : category.aliases()) {
+                byAlias.put(alias, category);
+            }
+        }
+        return Map.copyOf(byAlias);
+    }
+}
@@ -2,29 +2,93 @@ package org.uvhnael.mpbe.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.dto.ai.AIShoppingListItem;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
+import org.uvhnael.mpbe.exception.AIServiceException;
 import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.service.ai.AIRequestCoalescer;
+import org.uvhnael.mpbe.service.ai.AIResilienceGuard;
+import org.uvhnael.mpbe.service.ai.AIResponseCache;
+import org.uvhnael.mpbe.service.ai.GeminiClient;
+import org.uvhnael.mpbe.service.ai.GeminiSchemas;
 
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
 @RequiredArgsConstructor
 public class GeminiAIService {
     
-    @Value("${gemini.api.key}")
-    private String apiKey;
+    @Value("${gemini.timeout.meal-plan-ms:120000}")
+    private long mealPlanTimeoutMs;
     
-    @Value("${gemini.api.url}")
-    private String apiUrl;
+    @Value("${gemini.timeout.stream-ms:300000}")
+    private long streamTimeoutMs;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${gemini.timeout.default-ms:30000}")
+    private long defaultTimeoutMs;
+    
+    @Value("${gemini.structured-output.enabled:true}")
+    private boolean structuredOutput;
+    
+    private final GeminiClient geminiClient;
+    private final AIResponseCache responseCache;
+    private final AIRequestCoalescer requestCoalescer;
+    private final AIResilienceGuard resilienceGuard;
+    private final AIMealPlanParserService parserService;
     
     public String generateMealPlan(UserProfile profile, int days) {
+        return generateMealPlan(profile, days, true);
+    }
+    
+    /**
+     * Generate a meal plan, optionally bypassing the response cache when a fresh
+     * answer is required (e.g. regenerating a day the user did not like)
+     */
+    public String generateMealPlan(UserProfile profile, int days, boolean useCache) {
+        return await(generateMealPlanAsync(profile, days, useCache));
+    }
+    
+    public CompletableFuture<String> generateMealPlanAsync(UserProfile profile, int days, boolean useCache) {
+        String prompt = buildMealPlanPrompt(profile, days);
+        Duration deadline = Duration.ofMillis(mealPlanTimeoutMs);
+        if (!useCache) {
+            return send(prompt, deadline, mealPlanSchema());
+        }
+        return cachedCall(AIResponseCache.key("meal-plan", profile, days), prompt, deadline, mealPlanSchema(),
+            this::isMealPlan);
+    }
+    
+    /**
+     * Generate a meal plan with streamGenerateContent, handing each text fragment
+     * to the consumer as soon as Gemini produces it. A cached plan is replayed as one fragment;
+     * a streamed plan is cached only once the complete text parses.
+     */
+    public void streamMealPlan(UserProfile profile, int days, Consumer<String> onText) {
+        String cacheKey = AIResponseCache.key("meal-plan", profile, days);
+        Optional<String> cached = cachedValue(cacheKey, this::isMealPlan);
+        if (cached.isPresent()) {
+            onText.accept(cached.get());
+            return;
+        }
+        
+        StringBuilder fullText = new StringBuilder();
         String prompt = buildMealPlanPrompt(profile, days);
-        return callGeminiAPI(prompt);
+        resilienceGuard.executeBlocking(() ->
+            geminiClient.streamGenerateContent(prompt, Duration.ofMillis(streamTimeoutMs), mealPlanSchema(), text -> {
+                fullText.append(text);
+                onText.accept(text);
+            }));
+        if (isMealPlan(fullText.toString())) {
+            responseCache.put(cacheKey, fullText.toString());
+        }
     }
     
     public String suggestRecipes(UserProfile profile) {
@@ -41,7 +105,8 @@ public class GeminiAIService {
             profile.getBudgetPerMeal()
         );
         
-        return callGeminiAPI(prompt);
+        return await(cachedCall(AIResponseCache.key("suggest-recipes", profile, 0), prompt, defaultTimeout(), null,
+            GeminiAIService::isNotBlank));
     }
     
     public String analyzeNutrition(String recipeName) {
@@ -51,10 +116,68 @@ public class GeminiAIService {
             Return as JSON with calories, protein, carbs, fat, vitamins, and minerals.
             """, recipeName);
         
-        return callGeminiAPI(prompt);
+        return await(cachedCall(AIResponseCache.key("analyze-nutrition", recipeName.trim().toLowerCase()), prompt,
+            defaultTimeout(), null, GeminiAIService::isNotBlank));
+    }
+    
+    /**
+     * Ask for substitutes of one ingredient as a JSON array of AISubstitute. Not cached
+     * here: the substitution graph keeps the answers.
+     */
+    public String suggestSubstitutes(String ingredient, String reason) {
+        String prompt = String.format("""
+            Suggest up to 5 substitutes for the cooking ingredient: %s
+            Reason for substituting: %s
+            
+            Return a JSON array. Each element MUST include:
+            - name: substitute ingredient name
+            - ratio: how much to use in place of the original
+            - reason: why it works and how it changes the dish (one sentence)
+            - tags: lowercase labels such as vegan, vegetarian, dairy-free, egg-free, gluten-free, nut-free, keto, low-carb, low-fat, high-protein
+            """, ingredient, reason);
+        
+        Map<String, Object> schema = structuredOutput ? GeminiSchemas.arrayOf(AISubstitute.class) : null;
+        return await(requestCoalescer.execute(AIResponseCache.key("substitutes", prompt),
+            () -> send(prompt, defaultTimeout(), schema)));
+    }
+    
+    /**
+     * Generate days [startDay, startDay + days) of a longer plan. The variety constraint
+     * is shared by all chunks of the plan so that concurrently generated days differ.
+     */
+    public CompletableFuture<String> generateMealPlanChunkAsync(UserProfile profile, int startDay, int days,
+                                                                int totalDays, String varietyConstraint) {
+        String prompt = buildMealPlanPrompt(profile, days, String.format("""
+            
+            This is part of a %d-day plan: produce days %d to %d only, numbering "day" from %d.
+            %s
+            """, totalDays, startDay, startDay + days - 1, startDay, varietyConstraint));
+        String cacheKey = AIResponseCache.key("meal-plan-chunk",
+            AIResponseCache.key("meal-plan", profile, days),
+            String.valueOf(startDay), String.valueOf(totalDays), varietyConstraint);
+        return cachedCall(cacheKey, prompt, Duration.ofMillis(mealPlanTimeoutMs), mealPlanSchema(), this::isMealPlan);
+    }
+    
+    /**
+     * Generate a replacement for one day of an existing plan. The meals already planned on
+     * the other days are passed as context so the new day does not repeat them. Never cached:
+     * the caller wants a different answer than last time.
+     */
+    public String generateDay(UserProfile profile, int dayOfWeek, String otherDays) {
+        String prompt = buildMealPlanPrompt(profile, 1, String.format("""
+            
+            This replaces day %d of an existing plan: produce that single day, with "day": %d.
+            The other days already contain these meals, do not repeat them:
+            %s
+            """, dayOfWeek, dayOfWeek, otherDays.isEmpty() ? "(none)" : otherDays));
+        return await(send(prompt, Duration.ofMillis(mealPlanTimeoutMs), mealPlanSchema()));
     }
     
     private String buildMealPlanPrompt(UserProfile profile, int days) {
+        return buildMealPlanPrompt(profile, days, "");
+    }
+    
+    private String buildMealPlanPrompt(UserProfile profile, int days, String planContext) {
         return String.format("""
             Create a %d-day meal plan for:
             - Goal: %s
@@ -62,7 +185,7 @@ public class GeminiAIService {
             - Allergies: %s
             - Budget per meal: $%.2f
             - Activity level: %s
-            
+            %s
             Return as JSON with structure:
             {
               "days": [
@@ -141,43 +264,119 @@ public class GeminiAIService {
             profile.getDietaryPreference(),
             profile.getAllergies(),
             profile.getBudgetPerMeal(),
-            profile.getActivityLevel()
+            profile.getActivityLevel(),
+            planContext
         );
     }
     
+    /**
+     * Call Gemini and wait for the answer. Throws AIServiceException on failure, or
+     * AIServiceUnavailableException straight away while Gemini is being shed.
+     */
     public String callGeminiAPI(String prompt) {
-        try {
-            String url = apiUrl + "?key=" + apiKey;
-            
-            Map<String, Object> request = Map.of(
-                "contents", List.of(
-                    Map.of("parts", List.of(
-                        Map.of("text", prompt)
-                    ))
-                )
-            );
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
+        return await(callGeminiAPIAsync(prompt));
+    }
+    
+    /**
+     * Call Gemini without blocking. Identical prompts in flight share one call and
+     * failures complete the future with AIServiceException.
+     */
+    public CompletableFuture<String> callGeminiAPIAsync(String prompt) {
+        return requestCoalescer.execute(AIResponseCache.key("prompt", prompt),
+            () -> send(prompt, defaultTimeout(), null));
+    }
+    
+    /**
+     * Ask Gemini to consolidate ingredients into shopping list items. In structured output
+     * mode the answer is a bare JSON array of AIShoppingListItem.
+     */
+    public String generateShoppingList(String prompt) {
+        Map<String, Object> schema = structuredOutput ? GeminiSchemas.arrayOf(AIShoppingListItem.class) : null;
+        return await(requestCoalescer.execute(AIResponseCache.key("shopping-list", prompt),
+            () -> send(prompt, defaultTimeout(), schema)));
+    }
+    
+    /**
+     * Serve the response from the cache. On a miss, concurrent callers with the same key
+     * share a single Gemini call whose answer is cached if it is usable: a truncated or
+     * malformed answer is returned to the caller (whose parser reports it) but never
+     * stored, so the next request asks Gemini again.
+     */
+    private CompletableFuture<String> cachedCall(String cacheKey, String prompt, Duration deadline,
+                                                 Map<String, Object> responseSchema, Predicate<String> usable) {
+        Optional<String> cached = cachedValue(cacheKey, usable);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        
+        return requestCoalescer.execute(cacheKey, () -> {
+            // Another leader may have filled the cache between our miss and acquiring the key
+            Optional<String> filled = cachedValue(cacheKey, usable);
+            if (filled.isPresent()) {
+                return CompletableFuture.completedFuture(filled.get());
+            }
             
-            if (response.getBody() != null) {
-                List<Map<String, Object>> candidates = (List<Map<String, Object>>) response.getBody().get("candidates");
-                if (candidates != null && !candidates.isEmpty()) {
-                    Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
-                    List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-                    if (parts != null && !parts.isEmpty()) {
-                        return (String) parts.get(0).get("text");
+            return send(prompt, deadline, responseSchema)
+                .thenApply(text -> {
+                    if (usable.test(text)) {
+                        responseCache.put(cacheKey, text);
                     }
-                }
+                    return text;
+                });
+        });
+    }
+    
+    /**
+     * Cached response, evicting one that is not usable (e.g. stored before validation existed)
+     */
+    private Optional<String> cachedValue(String cacheKey, Predicate<String> usable) {
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent() && !usable.test(cached.get())) {
+            responseCache.evict(cacheKey);
+            return Optional.empty();
+        }
+        return cached;
+    }
+    
+    /**
+     * Whether the text parses into a meal plan with at least one meal
+     */
+    private boolean isMealPlan(String text) {
+        try {
+            return parserService.parseResponse(text).getDays().stream()
+                .anyMatch(day -> day.getMeals() != null && !day.getMeals().isEmpty());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+    
+    private static boolean isNotBlank(String text) {
+        return text != null && !text.isBlank();
+    }
+    
+    /**
+     * Every non-streaming Gemini call goes through the circuit breaker and concurrency limit
+     */
+    private CompletableFuture<String> send(String prompt, Duration deadline, Map<String, Object> responseSchema) {
+        return resilienceGuard.execute(() -> geminiClient.generateContent(prompt, deadline, responseSchema));
+    }
+    
+    private Map<String, Object> mealPlanSchema() {
+        return structuredOutput ? GeminiSchemas.objectOf(AIMealPlanResponse.class) : null;
+    }
+    
+    private Duration defaultTimeout() {
+        return Duration.ofMillis(defaultTimeoutMs);
+    }
+    
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof AIServiceException cause) {
+                throw cause;
             }
-            
-            return "Error: No response from Gemini API";
-        } catch (Exception e) {
-            return "Error calling Gemini API: " + e.getMessage();
+            throw new AIServiceException("Gemini API request failed: " + e.getCause().getMessage(), e.getCause());
         }
     }
 }
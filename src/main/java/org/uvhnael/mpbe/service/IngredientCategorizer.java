@@ -0,0 +1,121 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shopping list categories for ingredient names, backed by a {@link KeywordAutomaton}
+ * compiled from the taxonomy at ingredient-taxonomy.location (category -> keywords,
+ * singular; plural forms are added when compiling). When the taxonomy is a file it is
+ * checked for changes every ingredient-taxonomy.reload-interval-ms and recompiled; the
+ * new automaton replaces the old one atomically.
+ */
+@Slf4j
+@Component
+public class IngredientCategorizer {
+
+    public static final String DEFAULT_CATEGORY = "Other";
+
+    private static final TypeReference<LinkedHashMap<String, List<String>>> TAXONOMY_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final Resource taxonomy;
+
+    private volatile KeywordAutomaton<String> automaton = KeywordAutomaton.compile(Map.of());
+    private volatile long loadedModified;
+
+    public IngredientCategorizer(ObjectMapper objectMapper,
+                                 ResourceLoader resourceLoader,
+                                 @Value("${ingredient-taxonomy.location:classpath:data/ingredient-taxonomy.json}")
+                                 String location) {
+        this.objectMapper = objectMapper;
+        this.taxonomy = resourceLoader.getResource(location);
+    }
+
+    /**
+     * Category of the ingredient, or "Other" when no keyword of the taxonomy matches
+     */
+    public String categorize(String ingredientName) {
+        if (ingredientName == null) {
+            return DEFAULT_CATEGORY;
+        }
+        String category = automaton.match(ingredientName);
+        return category != null ? category : DEFAULT_CATEGORY;
+    }
+
+    /**
+     * Recompile the taxonomy; on failure the current automaton stays in place
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        try (InputStream in = taxonomy.getInputStream()) {
+            long modified = lastModified();
+            Map<String, List<String>> categories = objectMapper.readValue(in, TAXONOMY_TYPE);
+
+            Map<String, String> keywords = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+                for (String keyword : category.getValue()) {
+                    keywords.putIfAbsent(keyword, category.getKey());
+                }
+            }
+            // Plurals after all singulars, so a plural never shadows another keyword
+            for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+                for (String keyword : category.getValue()) {
+                    keywords.putIfAbsent(plural(keyword), category.getKey());
+                }
+            }
+
+            automaton = KeywordAutomaton.compile(keywords);
+            loadedModified = modified;
+            log.info("Loaded ingredient taxonomy: {} categories, {} keywords", categories.size(), keywords.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot load ingredient taxonomy from {}: {}", taxonomy, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingredient-taxonomy.reload-interval-ms:60000}")
+    public void reloadIfModified() {
+        if (taxonomy.isFile() && lastModified() > loadedModified) {
+            reload();
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return taxonomy.isFile() ? taxonomy.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * English plural of the last word: berry -> berries, tomato -> tomatoes, leaf -> leaves
+     */
+    static String plural(String keyword) {
+        String word = keyword.trim();
+        if (word.endsWith("y") && word.length() > 1 && "aeiou".indexOf(word.charAt(word.length() - 2)) < 0) {
+            return word.substring(0, word.length() - 1) + "ies";
+        }
+        if (word.endsWith("f")) {
+            return word.substring(0, word.length() - 1) + "ves";
+        }
+        if (word.endsWith("o") || word.endsWith("s") || word.endsWith("x")
+                || word.endsWith("ch") || word.endsWith("sh")) {
+            return word + "es";
+        }
+        return word + "s";
+    }
+}
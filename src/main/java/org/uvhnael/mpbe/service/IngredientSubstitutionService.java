@@ -0,0 +1,347 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory graph from ingredient to substitutes. It is seeded from the bundled
+ * data/substitutions.json and grows with the answers Gemini gives on a miss, which are
+ * also written to substitutions.harvest-file (when set) so they survive restarts.
+ * A lookup is a miss when the ingredient is unknown, or when the reason asks for a
+ * tag (vegan, gluten-free, ...) that none of the known substitutes carries.
+ * <p>
+ * Restriction tags (the "-free" ones, vegan, vegetarian) filter the answer: a substitute
+ * without them is never returned for such a reason. They are read from the reason itself
+ * ("sesame-free", "nut allergy", "lactose intolerant"), whether or not any substitute
+ * carries them yet. Other tags (low-fat, ...) are only recognised once known, and only rank.
+ * A lookup that Gemini could not satisfy is remembered, so repeating it returns what is
+ * known without asking again.
+ * Only plain ingredient names are looked up, and at most substitutions.max-harvested
+ * ingredients are learned from Gemini, so callers cannot grow the graph without bound.
+ */
+@Slf4j
+@Service
+public class IngredientSubstitutionService {
+
+    private static final String SEED_RESOURCE = "data/substitutions.json";
+    private static final TypeReference<Map<String, List<AISubstitute>>> GRAPH_TYPE = new TypeReference<>() {};
+    private static final Pattern INGREDIENT_NAME = Pattern.compile("[\\p{L}][\\p{L} '-]{0,63}");
+    private static final Set<String> RESTRICTION_TAGS = Set.of("vegan", "vegetarian");
+    private static final Pattern RESTRICTION = Pattern.compile(
+        "\\b(vegan|vegetarian)\\b"
+            + "|\\b(\\p{L}+) free\\b"
+            + "|\\b(\\p{L}+) (?:allergy|allergies|intolerance|intolerant)\\b"
+            + "|\\ballergic to (\\p{L}+)\\b");
+    private static final int MAX_SUBSTITUTES_PER_ANSWER = 10;
+    private static final int MAX_LEARNED_PER_INGREDIENT = 30;
+
+    private final GeminiAIService geminiAIService;
+    private final ObjectMapper objectMapper;
+    private final Path harvestFile;
+    private final int maxHarvested;
+
+    private final Map<String, List<AISubstitute>> graph = new ConcurrentHashMap<>();
+    private final Map<String, List<AISubstitute>> harvested = new ConcurrentHashMap<>();
+    private final Set<String> knownTags = ConcurrentHashMap.newKeySet();
+    private final Set<String> unsatisfiable = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter unsatisfied;
+
+    public IngredientSubstitutionService(GeminiAIService geminiAIService,
+                                         ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${substitutions.harvest-file:}") String harvestFile,
+                                         @Value("${substitutions.max-harvested:1000}") int maxHarvested) {
+        this.geminiAIService = geminiAIService;
+        this.objectMapper = objectMapper;
+        this.harvestFile = harvestFile == null || harvestFile.isBlank() ? null : Paths.get(harvestFile);
+        this.maxHarvested = maxHarvested;
+
+        this.hits = Counter.builder("ingredient.substitutes.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("ingredient.substitutes.requests").tag("result", "miss").register(meterRegistry);
+        this.unsatisfied = Counter.builder("ingredient.substitutes.requests").tag("result", "unsatisfiable").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        try (InputStream seed = new ClassPathResource(SEED_RESOURCE).getInputStream()) {
+            objectMapper.readValue(seed, GRAPH_TYPE).forEach(this::merge);
+        } catch (IOException e) {
+            log.warn("Cannot load bundled ingredient substitutions: {}", e.getMessage());
+        }
+
+        if (harvestFile != null && Files.exists(harvestFile)) {
+            try {
+                Map<String, List<AISubstitute>> saved = objectMapper.readValue(harvestFile.toFile(), GRAPH_TYPE);
+                saved.forEach(this::merge);
+                harvested.putAll(saved);
+            } catch (IOException e) {
+                log.warn("Cannot load harvested ingredient substitutions from {}: {}", harvestFile, e.getMessage());
+            }
+        }
+        log.info("Loaded substitutes for {} ingredients", graph.size());
+    }
+
+    /**
+     * Substitutes for the ingredient that satisfy the reason's restrictions, those matching
+     * the reason's other tags first. Gemini is only called on a miss that it has not already
+     * failed to satisfy; if it fails while some suitable substitutes are known, those are
+     * returned. The list is empty when no known substitute satisfies the restrictions.
+     */
+    public List<AISubstitute> getSubstitutes(String ingredient, String reason) {
+        String key = normalize(ingredient);
+        if (!INGREDIENT_NAME.matcher(key).matches()) {
+            throw new BadRequestException("Ingredient must be a plain name of at most 64 letters");
+        }
+        key = resolve(key);
+        Set<String> wanted = requestedTags(reason);
+
+        List<AISubstitute> known = rank(graph.getOrDefault(key, List.of()), wanted);
+        if (!known.isEmpty() && (wanted.isEmpty() || matches(known.get(0), wanted))) {
+            hits.increment();
+            return known;
+        }
+
+        String lookup = key + "|" + String.join(",", new TreeSet<>(wanted));
+        if (unsatisfiable.contains(lookup)) {
+            unsatisfied.increment();
+            return known;
+        }
+
+        misses.increment();
+        List<AISubstitute> answer;
+        try {
+            answer = harvest(key, ingredient, reason, wanted);
+        } catch (RuntimeException e) {
+            if (known.isEmpty()) {
+                throw e;
+            }
+            log.warn("Substitute lookup for '{}' fell back to known entries: {}", key, e.getMessage());
+            return known;
+        }
+        List<AISubstitute> ranked = rank(graph.containsKey(key) ? graph.get(key) : answer, wanted);
+        if ((ranked.isEmpty() || !wanted.isEmpty() && !matches(ranked.get(0), wanted))
+                && unsatisfiable.size() < maxHarvested) {
+            unsatisfiable.add(lookup);
+        }
+        return ranked;
+    }
+
+    /**
+     * Ask Gemini and learn the answer, unless the harvest is full (for a new ingredient) or
+     * the ingredient already has MAX_LEARNED_PER_INGREDIENT learned substitutes, in which
+     * case the answer is only returned
+     */
+    private List<AISubstitute> harvest(String key, String ingredient, String reason, Set<String> wanted) {
+        String request = reason != null && !reason.isBlank() ? reason : "general substitute";
+        if (!wanted.isEmpty()) {
+            // Restrictions filter on tags, so ask for them by name
+            request += " (tag each substitute with those of " + String.join(", ", new TreeSet<>(wanted)) + " it meets)";
+        }
+        String aiResponse = geminiAIService.suggestSubstitutes(ingredient, request);
+
+        List<AISubstitute> substitutes;
+        try {
+            String trimmed = aiResponse.strip();
+            int start = trimmed.indexOf('[');
+            int end = trimmed.lastIndexOf(']');
+            if (start < 0 || end < start) {
+                throw new IOException("no JSON array");
+            }
+            substitutes = objectMapper.readValue(trimmed.substring(start, end + 1), new TypeReference<>() {});
+        } catch (IOException e) {
+            throw new AIServiceException("Failed to parse AI substitutes: " + e.getMessage(), e);
+        }
+
+        List<AISubstitute> valid = substitutes.stream()
+            .filter(substitute -> substitute.getName() != null && !substitute.getName().isBlank())
+            .limit(MAX_SUBSTITUTES_PER_ANSWER)
+            .toList();
+        if (valid.isEmpty()) {
+            return valid;
+        }
+        List<AISubstitute> learned = harvested.get(key);
+        if (learned == null ? harvested.size() >= maxHarvested : learned.size() >= MAX_LEARNED_PER_INGREDIENT) {
+            log.debug("Substitution harvest is full, not learning '{}'", key);
+            return valid;
+        }
+
+        merge(key, valid);
+        harvested.merge(key, valid, IngredientSubstitutionService::union);
+        persistHarvest();
+        return valid;
+    }
+
+    private void merge(String ingredient, List<AISubstitute> substitutes) {
+        for (AISubstitute substitute : substitutes) {
+            if (substitute.getTags() != null) {
+                substitute.getTags().forEach(tag -> knownTags.add(tag.toLowerCase(Locale.ROOT)));
+            }
+        }
+        graph.merge(normalize(ingredient), List.copyOf(substitutes), IngredientSubstitutionService::union);
+    }
+
+    /**
+     * Rewrite the harvest file through a temporary file so a crash never leaves it half written
+     */
+    private synchronized void persistHarvest() {
+        if (harvestFile == null) {
+            return;
+        }
+        try {
+            Path parent = harvestFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "substitutions", ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), new TreeMap<>(harvested));
+            Files.move(tmp, harvestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot write harvested ingredient substitutions to {}: {}", harvestFile, e.getMessage());
+        }
+    }
+
+    /**
+     * The graph key for an ingredient: the exact name if known, then simple singular forms
+     * (eggs, tomatoes), otherwise the name itself
+     */
+    private String resolve(String key) {
+        if (graph.containsKey(key)) {
+            return key;
+        }
+        if (key.endsWith("es") && graph.containsKey(key.substring(0, key.length() - 2))) {
+            return key.substring(0, key.length() - 2);
+        }
+        if (key.endsWith("s") && graph.containsKey(key.substring(0, key.length() - 1))) {
+            return key.substring(0, key.length() - 1);
+        }
+        return key;
+    }
+
+    /**
+     * The tags the reason asks for: the restrictions it names ("vegan", "sesame-free", "nut
+     * allergy" for nut-free), and the known tags it mentions ("low fat", or just "dairy" /
+     * "eggs" for a known dairy-free / egg-free)
+     */
+    private Set<String> requestedTags(String reason) {
+        Set<String> wanted = new HashSet<>();
+        if (reason == null || reason.isBlank()) {
+            return wanted;
+        }
+        String text = " " + reason.toLowerCase(Locale.ROOT).replace('-', ' ') + " ";
+        Matcher restriction = RESTRICTION.matcher(text);
+        while (restriction.find()) {
+            if (restriction.group(1) != null) {
+                wanted.add(restriction.group(1));
+            } else {
+                String allergen = restriction.group(2) != null ? restriction.group(2)
+                    : restriction.group(3) != null ? restriction.group(3) : restriction.group(4);
+                wanted.add(singular(allergen) + "-free");
+            }
+        }
+        for (String tag : knownTags) {
+            String phrase = tag.replace('-', ' ');
+            String allergen = tag.endsWith("-free") ? tag.substring(0, tag.length() - 5) : null;
+            if (text.contains(" " + phrase + " ")
+                    || (allergen != null && (text.contains(" " + allergen + " ") || text.contains(" " + allergen + "s ")))) {
+                wanted.add(tag);
+            }
+        }
+        return wanted;
+    }
+
+    /**
+     * "nuts" and "eggs" name the same restriction as "nut" and "egg"
+     */
+    private static String singular(String word) {
+        return word.length() > 3 && word.endsWith("s") && !word.endsWith("ss") ? word.substring(0, word.length() - 1) : word;
+    }
+
+    private static boolean matches(AISubstitute substitute, Set<String> wanted) {
+        return substitute.getTags() != null
+            && substitute.getTags().stream().anyMatch(tag -> wanted.contains(tag.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Drop the substitutes missing a requested restriction tag, then put those matching
+     * any requested tag first
+     */
+    private static List<AISubstitute> rank(List<AISubstitute> substitutes, Set<String> wanted) {
+        if (wanted.isEmpty()) {
+            return substitutes;
+        }
+        Set<String> restrictions = new HashSet<>();
+        for (String tag : wanted) {
+            if (tag.endsWith("-free") || RESTRICTION_TAGS.contains(tag)) {
+                restrictions.add(tag);
+            }
+        }
+        return substitutes.stream()
+            .filter(substitute -> carriesAll(substitute, restrictions))
+            .sorted(Comparator.comparing((AISubstitute substitute) -> !matches(substitute, wanted)))
+            .toList();
+    }
+
+    private static boolean carriesAll(AISubstitute substitute, Set<String> tags) {
+        if (tags.isEmpty()) {
+            return true;
+        }
+        if (substitute.getTags() == null) {
+            return false;
+        }
+        Set<String> carried = new HashSet<>();
+        substitute.getTags().forEach(tag -> carried.add(tag.toLowerCase(Locale.ROOT)));
+        return carried.containsAll(tags);
+    }
+
+    /**
+     * Existing substitutes followed by the new ones, skipping names already present
+     */
+    private static List<AISubstitute> union(List<AISubstitute> existing, List<AISubstitute> added) {
+        Set<String> names = new HashSet<>();
+        List<AISubstitute> merged = new ArrayList<>();
+        for (AISubstitute substitute : existing) {
+            names.add(substitute.getName().toLowerCase(Locale.ROOT));
+            merged.add(substitute);
+        }
+        for (AISubstitute substitute : added) {
+            if (names.add(substitute.getName().toLowerCase(Locale.ROOT))) {
+                merged.add(substitute);
+            }
+        }
+        return List.copyOf(merged);
+    }
+
+    private static String normalize(String ingredient) {
+        return ingredient == null ? "" : ingredient.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,160 @@
+package org.uvhnael.mpbe.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton over whole-word keywords, compiled into a dense transition table
+ * so matching costs one array lookup per character. Letters a-z are the alphabet and every
+ * other character is a word separator. Of all keywords found in a text, the one ending
+ * rightmost wins, and among those the longest: the last word of an ingredient name is
+ * usually its head noun ("tomato sauce" is a sauce, "peanut butter" is not butter).
+ * Immutable once built, so it can be shared between threads and swapped atomically.
+ */
+public class KeywordAutomaton<V> {
+
+    private static final int ALPHABET = 27; // separator + a-z
+    private static final int ROOT = 0;
+
+    private final int[][] transitions;
+    // Value and length of the keyword ending at each node, or -1 when none does
+    private final int[] keywordLength;
+    private final List<V> values;
+    // Next node on the failure chain that ends a keyword, or -1
+    private final int[] outputLink;
+
+    private KeywordAutomaton(int[][] transitions, int[] keywordLength, List<V> values, int[] outputLink) {
+        this.transitions = transitions;
+        this.keywordLength = keywordLength;
+        this.values = values;
+        this.outputLink = outputLink;
+    }
+
+    /**
+     * Compile the keywords; the first value given for a keyword wins
+     */
+    public static <V> KeywordAutomaton<V> compile(Map<String, V> keywords) {
+        List<int[]> transitions = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        List<V> values = new ArrayList<>();
+        transitions.add(newRow());
+        lengths.add(-1);
+        values.add(null);
+
+        for (Map.Entry<String, V> entry : keywords.entrySet()) {
+            String keyword = normalize(entry.getKey());
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int node = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                int symbol = symbol(keyword.charAt(i));
+                if (transitions.get(node)[symbol] <= 0) {
+                    transitions.get(node)[symbol] = transitions.size();
+                    transitions.add(newRow());
+                    lengths.add(-1);
+                    values.add(null);
+                }
+                node = transitions.get(node)[symbol];
+            }
+            if (lengths.get(node) < 0) {
+                lengths.set(node, keyword.length());
+                values.set(node, entry.getValue());
+            }
+        }
+
+        int size = transitions.size();
+        int[][] table = transitions.toArray(new int[0][]);
+        int[] keywordLength = lengths.stream().mapToInt(Integer::intValue).toArray();
+        int[] failure = new int[size];
+        int[] outputLink = new int[size];
+        Arrays.fill(outputLink, -1);
+
+        // Breadth-first: turn the trie into a DFA by filling missing edges from the failure links
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = table[ROOT][symbol];
+            if (child > 0) {
+                failure[child] = ROOT;
+                queue.add(child);
+            } else {
+                table[ROOT][symbol] = ROOT;
+            }
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int fail = failure[node];
+            outputLink[node] = keywordLength[fail] >= 0 ? fail : outputLink[fail];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = table[node][symbol];
+                if (child > 0) {
+                    failure[child] = table[fail][symbol];
+                    queue.add(child);
+                } else {
+                    table[node][symbol] = table[fail][symbol];
+                }
+            }
+        }
+
+        return new KeywordAutomaton<>(table, keywordLength, values, outputLink);
+    }
+
+    /**
+     * Value of the rightmost (then longest) whole-word keyword in the text, or null
+     */
+    public V match(String text) {
+        int length = text.length();
+        int node = ROOT;
+        int bestEnd = -1;
+        int bestLength = -1;
+        V best = null;
+
+        for (int i = 0; i < length; i++) {
+            node = transitions[node][symbol(text.charAt(i))];
+            // A keyword only counts when it ends at a word boundary
+            if (i + 1 < length && symbol(text.charAt(i + 1)) != 0) {
+                continue;
+            }
+            for (int out = keywordLength[node] >= 0 ? node : outputLink[node]; out >= 0; out = outputLink[out]) {
+                int start = i - keywordLength[out] + 1;
+                boolean wordStart = start == 0 || symbol(text.charAt(start - 1)) == 0;
+                if (wordStart && (i > bestEnd || keywordLength[out] > bestLength)) {
+                    bestEnd = i;
+                    bestLength = keywordLength[out];
+                    best = values.get(out);
+                }
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        return transitions.length;
+    }
+
+    private static int[] newRow() {
+        return new int[ALPHABET];
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Lowercase letters with single separators between words, no leading or trailing separator
+     */
+    private static String normalize(String keyword) {
+        return keyword.toLowerCase(Locale.ROOT).replaceAll("[^a-z]+", " ").trim();
+    }
+}
@@ -0,0 +1,197 @@
+package org.uvhnael.mpbe.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Randomized search that assembles an N-day plan from already filtered recipes. Each
+ * restart builds a plan greedily: for every slot it samples a few candidates of the slot's
+ * meal type and keeps the one closest to the calories still missing for the day, with
+ * penalties for repeating a recipe (heavily on consecutive days) and for serving the same
+ * cuisine twice in a day. The restarts are independent and are split across the common
+ * fork-join pool; the best plan whose every day is within the calorie tolerance wins.
+ */
+public class LocalMealPlanSearch {
+
+    public record Candidate(Long recipeId, String cuisineType, int calories) {
+    }
+
+    public record Slot(int day, String mealType, Candidate recipe) {
+    }
+
+    public record Result(List<Slot> slots, int totalCalories, double score) {
+    }
+
+    // Share of the daily calories for the usual meal types; other types split the rest evenly
+    private static final Map<String, Double> CALORIE_SHARES = Map.of(
+        "breakfast", 0.25, "lunch", 0.35, "dinner", 0.40);
+
+    private static final double REPEAT_PENALTY = 0.5;
+    private static final double CONSECUTIVE_REPEAT_PENALTY = 2.0;
+    private static final double SAME_CUISINE_PENALTY = 0.05;
+    private static final int RESTARTS_PER_TASK = 4;
+
+    private final List<String> mealTypes;
+    private final int restarts;
+    private final int samplesPerSlot;
+    private final double calorieTolerance;
+
+    public LocalMealPlanSearch(List<String> mealTypes, int restarts, int samplesPerSlot, double calorieTolerance) {
+        this.mealTypes = mealTypes;
+        this.restarts = restarts;
+        this.samplesPerSlot = samplesPerSlot;
+        this.calorieTolerance = calorieTolerance;
+    }
+
+    /**
+     * Best plan over all restarts, or empty when some meal type has no candidates or no
+     * restart kept every day within the calorie tolerance
+     */
+    public Optional<Result> search(Map<String, List<Candidate>> candidatesByMealType, int days,
+                                   int dailyCalories, long seed) {
+        for (String mealType : mealTypes) {
+            if (candidatesByMealType.getOrDefault(mealType, List.of()).isEmpty()) {
+                return Optional.empty();
+            }
+        }
+
+        Result best = ForkJoinPool.commonPool().invoke(
+            new Restarts(candidatesByMealType, days, dailyCalories, seed, 0, restarts));
+        return Optional.ofNullable(best);
+    }
+
+    private class Restarts extends RecursiveTask<Result> {
+
+        private final Map<String, List<Candidate>> candidates;
+        private final int days;
+        private final int dailyCalories;
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        Restarts(Map<String, List<Candidate>> candidates, int days, int dailyCalories, long seed, int from, int to) {
+            this.candidates = candidates;
+            this.days = days;
+            this.dailyCalories = dailyCalories;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= RESTARTS_PER_TASK) {
+                Result best = null;
+                for (int restart = from; restart < to; restart++) {
+                    best = better(best, build(candidates, days, dailyCalories, new SplittableRandom(seed + restart)));
+                }
+                return best;
+            }
+
+            int middle = (from + to) >>> 1;
+            Restarts left = new Restarts(candidates, days, dailyCalories, seed, from, middle);
+            left.fork();
+            Result right = new Restarts(candidates, days, dailyCalories, seed, middle, to).compute();
+            return better(left.join(), right);
+        }
+    }
+
+    private Result build(Map<String, List<Candidate>> candidates, int days, int dailyCalories,
+                         SplittableRandom random) {
+        Map<Long, Integer> timesUsed = new HashMap<>();
+        Map<Long, Integer> lastDayUsed = new HashMap<>();
+        List<Slot> slots = new ArrayList<>();
+        int totalCalories = 0;
+        double score = 0;
+
+        for (int day = 1; day <= days; day++) {
+            int dayCalories = 0;
+            Set<String> cuisinesToday = new HashSet<>();
+
+            for (int index = 0; index < mealTypes.size(); index++) {
+                String mealType = mealTypes.get(index);
+                double slotTarget = (dailyCalories - dayCalories) * share(index) / remainingShare(index);
+
+                List<Candidate> pool = candidates.get(mealType);
+                Candidate chosen = null;
+                double chosenCost = Double.MAX_VALUE;
+                int samples = Math.min(samplesPerSlot, pool.size());
+                for (int sample = 0; sample < samples; sample++) {
+                    Candidate candidate = samples == pool.size() ? pool.get(sample) : pool.get(random.nextInt(pool.size()));
+                    double cost = Math.abs(candidate.calories() - slotTarget) / dailyCalories
+                        + repeatPenalty(candidate, day, timesUsed, lastDayUsed)
+                        + (candidate.cuisineType() != null && cuisinesToday.contains(candidate.cuisineType())
+                            ? SAME_CUISINE_PENALTY : 0);
+                    if (cost < chosenCost) {
+                        chosen = candidate;
+                        chosenCost = cost;
+                    }
+                }
+
+                score += repeatPenalty(chosen, day, timesUsed, lastDayUsed);
+                timesUsed.merge(chosen.recipeId(), 1, Integer::sum);
+                lastDayUsed.put(chosen.recipeId(), day);
+                if (chosen.cuisineType() != null) {
+                    cuisinesToday.add(chosen.cuisineType());
+                }
+                dayCalories += chosen.calories();
+                slots.add(new Slot(day, mealType, chosen));
+            }
+
+            double deviation = Math.abs(dayCalories - dailyCalories) / (double) dailyCalories;
+            if (deviation > calorieTolerance) {
+                return null;
+            }
+            score += deviation;
+            totalCalories += dayCalories;
+        }
+
+        return new Result(slots, totalCalories, score);
+    }
+
+    private double repeatPenalty(Candidate candidate, int day, Map<Long, Integer> timesUsed,
+                                 Map<Long, Integer> lastDayUsed) {
+        int used = timesUsed.getOrDefault(candidate.recipeId(), 0);
+        if (used == 0) {
+            return 0;
+        }
+        Integer lastDay = lastDayUsed.get(candidate.recipeId());
+        return REPEAT_PENALTY * used + (lastDay >= day - 1 ? CONSECUTIVE_REPEAT_PENALTY : 0);
+    }
+
+    private double share(int index) {
+        Double known = CALORIE_SHARES.get(mealTypes.get(index));
+        if (known != null) {
+            return known;
+        }
+        double unassigned = 1.0 - mealTypes.stream().mapToDouble(type -> CALORIE_SHARES.getOrDefault(type, 0.0)).sum();
+        long unknownTypes = mealTypes.stream().filter(type -> !CALORIE_SHARES.containsKey(type)).count();
+        return Math.max(unassigned, 0.1) / unknownTypes;
+    }
+
+    private double remainingShare(int index) {
+        double remaining = 0;
+        for (int rest = index; rest < mealTypes.size(); rest++) {
+            remaining += share(rest);
+        }
+        return remaining;
+    }
+
+    private static Result better(Result a, Result b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return b.score() < a.score() ? b : a;
+    }
+}
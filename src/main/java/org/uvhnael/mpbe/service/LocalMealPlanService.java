@@ -0,0 +1,307 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.uvhnael.mpbe.dto.projection.RecipeIngredientRow;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.repository.IngredientRepository;
+import org.uvhnael.mpbe.repository.MealPlanBulkWriter;
+import org.uvhnael.mpbe.repository.MealPlanRepository;
+import org.uvhnael.mpbe.repository.RecipeRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds meal plans from recipes already in the database instead of asking Gemini.
+ * Recipes are filtered by meal type, dietary preference and allergies (through
+ * {@link AllergenMatcher}; profiles with an allergy outside its taxonomy are left to
+ * Gemini), and a
+ * {@link LocalMealPlanSearch} picks a varied combination that meets the profile's daily
+ * calorie target. Only the user's own recipes and those nobody owns are used, so a plan
+ * never points at a recipe another user can edit or delete. The recipe corpus is read
+ * through a projection and kept in memory for meal-plan.local.corpus-ttl-seconds.
+ * <p>
+ * Recipes carry no prices, so the profile's budget is not taken into account here.
+ */
+@Slf4j
+@Service
+public class LocalMealPlanService {
+
+    private static final List<String> MEAL_TYPES = List.of("breakfast", "lunch", "dinner");
+
+    private static final Set<String> LAND_MEAT = Set.of(
+        "chicken", "beef", "pork", "lamb", "turkey", "bacon", "ham", "sausage", "duck", "veal",
+        "prosciutto", "pepperoni", "chorizo", "salami", "steak", "mince", "gelatin");
+    private static final Set<String> SEAFOOD = Set.of(
+        "fish", "salmon", "tuna", "shrimp", "prawn", "crab", "lobster", "anchovy", "cod", "tilapia",
+        "squid", "clam", "mussel", "oyster", "scallop", "sardine", "mackerel");
+    private static final Set<String> ANIMAL_PRODUCTS = Set.of(
+        "egg", "milk", "cheese", "butter", "yogurt", "yoghurt", "cream", "honey", "whey", "ghee",
+        "mayonnaise", "paneer", "feta", "parmesan", "mozzarella");
+    // Words that make an otherwise animal-sounding ingredient plant based (peanut butter, oat milk)
+    private static final Set<String> PLANT_QUALIFIERS = Set.of(
+        "peanut", "almond", "coconut", "soy", "oat", "cashew", "rice", "vegan", "plant");
+    private static final int KETO_MAX_CARBS_PER_MEAL = 25;
+
+    private record Corpus(Map<String, List<RecipeProfile>> byMealType, Instant loadedAt) {
+    }
+
+    private record RecipeProfile(LocalMealPlanSearch.Candidate candidate, Long ownerId, String name, int carbs,
+                                 List<String> ingredients) {
+    }
+
+    private final IngredientRepository ingredientRepository;
+    private final RecipeRepository recipeRepository;
+    private final MealPlanRepository mealPlanRepository;
+    private final MealPlanBulkWriter bulkWriter;
+    private final EntityManager entityManager;
+
+    private final LocalMealPlanSearch search;
+    private final Duration corpusTtl;
+    private final int defaultDailyCalories;
+
+    private final Counter planned;
+    private final Counter fallbacks;
+
+    private volatile Corpus corpus;
+
+    public LocalMealPlanService(IngredientRepository ingredientRepository,
+                                RecipeRepository recipeRepository,
+                                MealPlanRepository mealPlanRepository,
+                                MealPlanBulkWriter bulkWriter,
+                                EntityManager entityManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${meal-plan.local.restarts:64}") int restarts,
+                                @Value("${meal-plan.local.samples-per-slot:8}") int samplesPerSlot,
+                                @Value("${meal-plan.local.calorie-tolerance:0.15}") double calorieTolerance,
+                                @Value("${meal-plan.local.corpus-ttl-seconds:300}") long corpusTtlSeconds,
+                                @Value("${meal-plan.local.default-daily-calories:2000}") int defaultDailyCalories) {
+        this.ingredientRepository = ingredientRepository;
+        this.recipeRepository = recipeRepository;
+        this.mealPlanRepository = mealPlanRepository;
+        this.bulkWriter = bulkWriter;
+        this.entityManager = entityManager;
+        this.search = new LocalMealPlanSearch(MEAL_TYPES, restarts, samplesPerSlot, calorieTolerance);
+        this.corpusTtl = Duration.ofSeconds(corpusTtlSeconds);
+        this.defaultDailyCalories = defaultDailyCalories;
+
+        this.planned = Counter.builder("meal-plan.local.requests").tag("result", "planned").register(meterRegistry);
+        this.fallbacks = Counter.builder("meal-plan.local.requests").tag("result", "fallback").register(meterRegistry);
+    }
+
+    /**
+     * Select recipes for every day of the user's plan, or empty when the corpus cannot satisfy
+     * the profile or its allergies cannot be checked, and the caller should fall back to Gemini
+     */
+    public Optional<LocalMealPlanSearch.Result> plan(Long userId, UserProfile profile, int days) {
+        long started = System.nanoTime();
+        Optional<AllergenMatcher> matcher = AllergenMatcher.forAllergies(profile.getAllergies());
+        if (matcher.isEmpty()) {
+            fallbacks.increment();
+            log.debug("Allergies '{}' are not covered by the allergen taxonomy, leaving the plan to Gemini",
+                profile.getAllergies());
+            return Optional.empty();
+        }
+        AllergenMatcher allergens = matcher.get();
+        String preference = profile.getDietaryPreference() != null
+            ? profile.getDietaryPreference().toLowerCase(Locale.ROOT) : "";
+
+        Map<String, List<LocalMealPlanSearch.Candidate>> candidates = new HashMap<>();
+        for (Map.Entry<String, List<RecipeProfile>> entry : corpus().byMealType().entrySet()) {
+            candidates.put(entry.getKey(), entry.getValue().stream()
+                .filter(recipe -> recipe.ownerId() == null || recipe.ownerId().equals(userId))
+                .filter(recipe -> isAllowed(recipe, preference, allergens))
+                .map(RecipeProfile::candidate)
+                .toList());
+        }
+
+        Optional<LocalMealPlanSearch.Result> result = search.search(candidates, days,
+            dailyCalorieTarget(profile), ThreadLocalRandom.current().nextLong());
+
+        (result.isPresent() ? planned : fallbacks).increment();
+        log.debug("Local meal plan search for {} days finished in {} ms ({})", days,
+            (System.nanoTime() - started) / 1_000_000, result.isPresent() ? "planned" : "fallback");
+        return result;
+    }
+
+    /**
+     * Save the meal plan and one item per selected recipe; the items go in one JDBC batch
+     */
+    @Transactional
+    public MealPlan save(LocalMealPlanSearch.Result result, MealPlan mealPlan) {
+        Set<Long> recipeIds = result.slots().stream()
+            .map(slot -> slot.recipe().recipeId())
+            .collect(Collectors.toSet());
+        Map<Long, Recipe> recipes = recipeRepository.findWithIngredientsByIdIn(recipeIds).stream()
+            .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+
+        mealPlan.setTotalCalories(result.totalCalories());
+        MealPlan savedMealPlan = mealPlanRepository.save(mealPlan);
+
+        List<MealPlanItem> items = new ArrayList<>();
+        for (LocalMealPlanSearch.Slot slot : result.slots()) {
+            Recipe recipe = recipes.get(slot.recipe().recipeId());
+            if (recipe == null) {
+                throw new RuntimeException("Recipe not found: " + slot.recipe().recipeId());
+            }
+            MealPlanItem item = new MealPlanItem();
+            item.setMealPlan(savedMealPlan);
+            item.setRecipe(recipe);
+            item.setDayOfWeek(slot.day());
+            item.setMealType(slot.mealType());
+            items.add(item);
+        }
+        bulkWriter.insertMealPlanItems(items);
+
+        // The items were inserted over JDBC; detach the plan so they are not cascaded again on commit
+        entityManager.detach(savedMealPlan);
+        savedMealPlan.setMealPlanItems(items);
+        return savedMealPlan;
+    }
+
+    /**
+     * Mifflin-St Jeor resting energy scaled by activity level and adjusted for the goal.
+     * Profiles without age, height or weight get meal-plan.local.default-daily-calories.
+     */
+    int dailyCalorieTarget(UserProfile profile) {
+        double calories = defaultDailyCalories;
+        if (profile.getAge() != null && profile.getHeight() != null && profile.getWeight() != null) {
+            boolean male = profile.getGender() != null && profile.getGender().toLowerCase(Locale.ROOT).startsWith("m");
+            double restingEnergy = 10 * profile.getWeight().doubleValue()
+                + 6.25 * profile.getHeight().doubleValue()
+                - 5 * profile.getAge()
+                + (male ? 5 : -161);
+            calories = restingEnergy * activityFactor(profile.getActivityLevel());
+        }
+
+        String goal = profile.getGoal() != null ? profile.getGoal().toLowerCase(Locale.ROOT) : "";
+        if (goal.contains("loss") || goal.contains("lose")) {
+            calories -= 500;
+        } else if (goal.contains("gain")) {
+            calories += 300;
+        }
+        return (int) Math.max(1200, Math.round(calories));
+    }
+
+    private double activityFactor(String activityLevel) {
+        String level = activityLevel != null ? activityLevel.toLowerCase(Locale.ROOT) : "";
+        if (level.contains("sedentary")) {
+            return 1.2;
+        }
+        if (level.contains("very") || level.contains("extra")) {
+            return 1.9;
+        }
+        if (level.contains("light")) {
+            return 1.375;
+        }
+        if (level.contains("active")) {
+            return 1.725;
+        }
+        return 1.55;
+    }
+
+    private boolean isAllowed(RecipeProfile recipe, String preference, AllergenMatcher allergens) {
+        if (allergens.matches(recipe.name()) || recipe.ingredients().stream().anyMatch(allergens::matches)) {
+            return false;
+        }
+
+        boolean vegan = preference.contains("vegan");
+        boolean vegetarian = vegan || preference.contains("vegetarian");
+        boolean pescatarian = preference.contains("pescatarian");
+        if (preference.contains("keto") && recipe.carbs() > KETO_MAX_CARBS_PER_MEAL) {
+            return false;
+        }
+        for (String ingredient : recipe.ingredients()) {
+            if ((vegetarian || pescatarian) && mentions(ingredient, LAND_MEAT)) {
+                return false;
+            }
+            if (vegetarian && mentions(ingredient, SEAFOOD)) {
+                return false;
+            }
+            if (vegan && mentions(ingredient, ANIMAL_PRODUCTS) && !mentions(ingredient, PLANT_QUALIFIERS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whole-word match, ignoring a plural "s", so eggplant does not count as egg
+     */
+    private static boolean mentions(String ingredient, Set<String> words) {
+        for (String word : ingredient.split("[^a-z]+")) {
+            if (words.contains(word) || (word.endsWith("s") && words.contains(word.substring(0, word.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Corpus corpus() {
+        Corpus current = corpus;
+        if (current == null || current.loadedAt().plus(corpusTtl).isBefore(Instant.now())) {
+            current = loadCorpus();
+            corpus = current;
+        }
+        return current;
+    }
+
+    /**
+     * Group the ingredient rows by recipe. Per-serving calories and carbs are the sums of
+     * the ingredients divided by the servings; recipes without calorie data are skipped.
+     */
+    private Corpus loadCorpus() {
+        Map<Long, List<RecipeIngredientRow>> rowsByRecipe = new LinkedHashMap<>();
+        for (RecipeIngredientRow row : ingredientRepository.findRecipeIngredientRows(MEAL_TYPES)) {
+            rowsByRecipe.computeIfAbsent(row.recipeId(), id -> new ArrayList<>()).add(row);
+        }
+
+        Map<String, List<RecipeProfile>> byMealType = new HashMap<>();
+        for (List<RecipeIngredientRow> rows : rowsByRecipe.values()) {
+            RecipeIngredientRow first = rows.get(0);
+            int servings = first.servings() != null && first.servings() > 0 ? first.servings() : 1;
+
+            BigDecimal calories = BigDecimal.ZERO;
+            BigDecimal carbs = BigDecimal.ZERO;
+            List<String> ingredients = new ArrayList<>();
+            for (RecipeIngredientRow row : rows) {
+                calories = calories.add(row.calories() != null ? row.calories() : BigDecimal.ZERO);
+                carbs = carbs.add(row.carbs() != null ? row.carbs() : BigDecimal.ZERO);
+                ingredients.add(row.ingredientName().toLowerCase(Locale.ROOT));
+            }
+            int perServing = calories.intValue() / servings;
+            if (perServing <= 0) {
+                continue;
+            }
+
+            LocalMealPlanSearch.Candidate candidate =
+                new LocalMealPlanSearch.Candidate(first.recipeId(), first.cuisineType(), perServing);
+            byMealType.computeIfAbsent(first.mealType().toLowerCase(Locale.ROOT), type -> new ArrayList<>())
+                .add(new RecipeProfile(candidate, first.ownerId(), first.recipeName(), carbs.intValue() / servings, ingredients));
+        }
+
+        log.info("Loaded {} recipes for local meal planning", byMealType.values().stream().mapToInt(List::size).sum());
+        return new Corpus(byMealType, Instant.now());
+    }
+}
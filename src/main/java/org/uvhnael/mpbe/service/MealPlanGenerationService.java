@@ -0,0 +1,342 @@
+package org.uvhnael.mpbe.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.dto.projection.PlannedMeal;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.exception.ResourceNotFoundException;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.User;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.repository.UserRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MealPlanGenerationService {
+
+    public static final String MODE_SINGLE = "single";
+    public static final String MODE_PARALLEL = "parallel";
+    public static final String MODE_LOCAL = "local";
+
+    private static final List<String> CUISINES = List.of(
+        "Mediterranean", "Asian", "Mexican", "Italian", "American", "Indian", "Middle Eastern");
+    private static final List<String> PROTEINS = List.of(
+        "chicken", "salmon", "beef", "eggs", "turkey", "shrimp", "pork", "tofu");
+    private static final List<String> VEGETARIAN_PROTEINS = List.of(
+        "eggs", "lentils", "chickpeas", "paneer", "tofu", "black beans", "greek yogurt");
+    private static final List<String> VEGAN_PROTEINS = List.of(
+        "tofu", "lentils", "chickpeas", "tempeh", "black beans", "seitan", "edamame");
+
+    private final GeminiAIService geminiAIService;
+    private final AIMealPlanParserService aiParserService;
+    private final MealPlanService mealPlanService;
+    private final MealPlanPoolService mealPlanPoolService;
+    private final LocalMealPlanService localMealPlanService;
+    private final UserProfileService userProfileService;
+    private final UserRepository userRepository;
+    private final AsyncTaskExecutor aiTaskExecutor;
+
+    @Value("${meal-plan.stream.timeout-ms:300000}")
+    private long streamTimeoutMs;
+
+    @Value("${meal-plan.fanout.chunk-days:1}")
+    private int chunkDays;
+
+    /**
+     * Generate a meal plan with a single blocking Gemini call and persist it
+     */
+    public MealPlan generateMealPlan(Long userId, int days) {
+        return generateMealPlan(userId, days, MODE_SINGLE);
+    }
+
+    /**
+     * Generate and persist a meal plan. In parallel mode the plan is split into chunks of
+     * meal-plan.fanout.chunk-days that are requested concurrently, so wall-clock time is
+     * bounded by the slowest chunk rather than the sum of all days. Single mode first tries
+     * a pre-generated plan from the archetype pool and only calls Gemini on a miss. Local
+     * mode assembles the plan from stored recipes and uses Gemini only when the recipes
+     * cannot satisfy the profile.
+     */
+    public MealPlan generateMealPlan(Long userId, int days, String mode) {
+        UserProfile profile = userProfileService.getProfileByUserId(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Profile not found"));
+
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        MealPlan mealPlan = newMealPlan(user, days);
+
+        if (MODE_LOCAL.equalsIgnoreCase(mode)) {
+            Optional<LocalMealPlanSearch.Result> local = localMealPlanService.plan(userId, profile, days);
+            if (local.isPresent()) {
+                return localMealPlanService.save(local.get(), mealPlan);
+            }
+            log.info("Local meal plan search found no plan for user {}, falling back to Gemini", userId);
+        }
+
+        if (MODE_PARALLEL.equalsIgnoreCase(mode) && days > chunkDays) {
+            return aiParserService.parseAndSaveMealPlan(generateInParallel(profile, days), mealPlan);
+        }
+
+        Optional<AIMealPlanResponse> pooled = mealPlanPoolService.take(profile, days);
+        if (pooled.isPresent()) {
+            return aiParserService.parseAndSaveMealPlan(pooled.get(), mealPlan);
+        }
+
+        // Generate AI meal plan
+        String aiResponse = geminiAIService.generateMealPlan(profile, days);
+
+        // Parse AI response and save to database
+        return aiParserService.parseAndSaveMealPlan(aiResponse, mealPlan);
+    }
+
+    /**
+     * Generate a meal plan with streamGenerateContent. Every day is persisted and pushed
+     * to the client as a "day" event as soon as Gemini finishes it, followed by a
+     * "complete" event (or an "error" event, in which case the partial plan is removed).
+     * onFinished runs once the stream task ends, whatever the outcome; it does not run
+     * when this method throws.
+     */
+    public SseEmitter streamMealPlan(Long userId, int days, Runnable onFinished) {
+        UserProfile profile = userProfileService.getProfileByUserId(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Profile not found"));
+
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        aiTaskExecutor.execute(() -> {
+            try {
+                runStream(emitter, user, profile, days);
+            } finally {
+                onFinished.run();
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Regenerate a single day of an existing plan. Only that day is generated and parsed,
+     * and only its items are replaced; no temporary plan is created.
+     */
+    public List<MealPlanItem> regenerateDay(Long mealPlanId, int dayOfWeek) {
+        MealPlan mealPlan = mealPlanService.getMealPlanById(mealPlanId)
+            .orElseThrow(() -> new ResourceNotFoundException("Meal plan not found"));
+        
+        UserProfile profile = userProfileService.getProfileByUserId(mealPlan.getUser().getId())
+            .orElseThrow(() -> new ResourceNotFoundException("Profile not found"));
+        
+        StringBuilder otherDays = new StringBuilder();
+        for (PlannedMeal meal : mealPlanService.getPlannedMealsExcludingDay(mealPlanId, dayOfWeek)) {
+            otherDays.append("- Day ").append(meal.dayOfWeek())
+                .append(" ").append(meal.mealType())
+                .append(": ").append(meal.recipeName()).append("\n");
+        }
+        
+        String aiResponse = geminiAIService.generateDay(profile, dayOfWeek, otherDays.toString());
+        
+        List<AIMealPlanResponse.AIDayPlan> days = aiParserService.parseResponse(aiResponse).getDays();
+        if (days.isEmpty()) {
+            throw new AIServiceException("AI response did not contain any meals");
+        }
+        AIMealPlanResponse.AIDayPlan day = days.get(0);
+        day.setDay(dayOfWeek);
+        
+        return aiParserService.replaceDay(mealPlan, day);
+    }
+    
+    /**
+     * Build an unsaved meal plan starting today with the default name
+     */
+    public MealPlan newMealPlan(User user, int days) {
+        MealPlan mealPlan = new MealPlan();
+        mealPlan.setUser(user);
+        mealPlan.setStartDate(LocalDate.now());
+        mealPlan.setEndDate(LocalDate.now().plusDays(days));
+        mealPlan.setStatus("active");
+
+        // Generate default name based on dates and days
+        String defaultName = String.format("%d-Day Meal Plan (%s)",
+            days,
+            LocalDate.now().format(DateTimeFormatter.ofPattern("MMM dd, yyyy")));
+        mealPlan.setName(defaultName);
+
+        return mealPlan;
+    }
+
+    private AIMealPlanResponse generateInParallel(UserProfile profile, int days) {
+        String varietyConstraint = buildVarietyConstraint(profile, days);
+
+        List<CompletableFuture<List<AIMealPlanResponse.AIDayPlan>>> chunks = new ArrayList<>();
+        for (int startDay = 1; startDay <= days; startDay += chunkDays) {
+            int firstDay = startDay;
+            int chunkSize = Math.min(chunkDays, days - startDay + 1);
+            chunks.add(geminiAIService
+                .generateMealPlanChunkAsync(profile, firstDay, chunkSize, days, varietyConstraint)
+                .thenApply(text -> renumberDays(aiParserService.parseResponse(text), firstDay, chunkSize)));
+        }
+
+        try {
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        List<AIMealPlanResponse.AIDayPlan> merged = new ArrayList<>();
+        for (CompletableFuture<List<AIMealPlanResponse.AIDayPlan>> chunk : chunks) {
+            merged.addAll(chunk.join());
+        }
+
+        AIMealPlanResponse response = new AIMealPlanResponse();
+        response.setDays(merged);
+        return response;
+    }
+
+    /**
+     * Force the day numbers of a chunk to its position in the full plan, whatever the AI returned
+     */
+    private List<AIMealPlanResponse.AIDayPlan> renumberDays(AIMealPlanResponse chunk, int firstDay, int chunkSize) {
+        List<AIMealPlanResponse.AIDayPlan> days = new ArrayList<>();
+        if (chunk.getDays() == null) {
+            return days;
+        }
+        for (AIMealPlanResponse.AIDayPlan day : chunk.getDays()) {
+            if (days.size() == chunkSize) {
+                break;
+            }
+            day.setDay(firstDay + days.size());
+            days.add(day);
+        }
+        return days;
+    }
+
+    /**
+     * Assign every day of the plan its own cuisine and main protein. All chunks receive the
+     * whole table, so each one knows what the concurrently generated days will contain.
+     */
+    private String buildVarietyConstraint(UserProfile profile, int days) {
+        String preference = profile.getDietaryPreference() != null
+            ? profile.getDietaryPreference().toLowerCase() : "";
+        String allergies = profile.getAllergies() != null ? profile.getAllergies().toLowerCase() : "";
+
+        List<String> proteins = preference.contains("vegan") ? VEGAN_PROTEINS
+            : preference.contains("vegetarian") ? VEGETARIAN_PROTEINS : PROTEINS;
+        List<String> allowedProteins = proteins.stream()
+            .filter(protein -> !allergies.contains(protein))
+            .toList();
+        if (allowedProteins.isEmpty()) {
+            allowedProteins = proteins;
+        }
+
+        StringBuilder constraint = new StringBuilder("Variety plan shared by all days (keep to your days):\n");
+        for (int day = 1; day <= days; day++) {
+            constraint.append("- Day ").append(day)
+                .append(": ").append(CUISINES.get((day - 1) % CUISINES.size())).append(" cuisine")
+                .append(", main protein ").append(allowedProteins.get((day - 1) % allowedProteins.size()))
+                .append("\n");
+        }
+        constraint.append("Do not repeat dishes across days and skip any protein that conflicts with the allergies.");
+        return constraint.toString();
+    }
+
+    private void runStream(SseEmitter emitter, User user, UserProfile profile, int days) {
+        MealPlan draft = newMealPlan(user, days);
+        draft.setStatus("draft");
+        MealPlan mealPlan = mealPlanService.createMealPlan(draft);
+
+        AtomicInteger totalCalories = new AtomicInteger();
+        AtomicInteger savedDays = new AtomicInteger();
+
+        try {
+            List<AIMealPlanResponse.AIMeal> dayMeals = new ArrayList<>();
+            AIMealPlanStreamParser.Session parser = aiParserService.openStream(
+                new AIMealPlanStreamParser.MealHandler() {
+                    @Override
+                    public void onMeal(int day, AIMealPlanResponse.AIMeal meal) {
+                        dayMeals.add(meal);
+                    }
+
+                    @Override
+                    public void onDayComplete(int dayNumber) {
+                        AIMealPlanResponse.AIDayPlan day = new AIMealPlanResponse.AIDayPlan();
+                        day.setDay(dayNumber);
+                        day.setMeals(new ArrayList<>(dayMeals));
+                        dayMeals.clear();
+
+                        List<MealPlanItem> items = aiParserService.saveDay(mealPlan, day);
+                        totalCalories.addAndGet(aiParserService.calculateCalories(day));
+                        savedDays.incrementAndGet();
+
+                        Map<String, Object> payload = new HashMap<>();
+                        payload.put("mealPlanId", mealPlan.getId());
+                        payload.put("day", day.getDay());
+                        payload.put("items", items);
+                        send(emitter, "day", payload);
+                    }
+                });
+
+            geminiAIService.streamMealPlan(profile, days, text -> {
+                try {
+                    parser.feed(text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to parse AI response: " + e.getMessage(), e);
+                }
+            });
+            parser.finish();
+
+            if (savedDays.get() == 0) {
+                throw new RuntimeException("AI response did not contain any days");
+            }
+
+            MealPlan completed = aiParserService.completeMealPlan(mealPlan.getId(), totalCalories.get());
+
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("mealPlanId", completed.getId());
+            payload.put("name", completed.getName());
+            payload.put("days", savedDays.get());
+            payload.put("totalCalories", completed.getTotalCalories());
+            send(emitter, "complete", payload);
+            emitter.complete();
+        } catch (Exception e) {
+            log.error("Streaming meal plan generation failed for plan {}", mealPlan.getId(), e);
+            mealPlanService.deleteMealPlan(mealPlan.getId());
+            try {
+                send(emitter, "error", Map.of("message", String.valueOf(e.getMessage())));
+                emitter.complete();
+            } catch (Exception ignored) {
+                // Client already gone
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException e) {
+            throw new IllegalStateException("Client disconnected", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.uvhnael.mpbe.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.response.MealPlanJob;
+import org.uvhnael.mpbe.model.MealPlan;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs meal plan generation in the background so that the request thread returns
+ * immediately with a job id that clients poll for the result. Background jobs and
+ * streamed generations share one admission limit (meal-plan.jobs.max-active), which is
+ * what bounds the work on aiTaskExecutor when it runs on unbounded virtual threads.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MealPlanJobService {
+    
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+    
+    private final MealPlanGenerationService generationService;
+    private final AsyncTaskExecutor aiTaskExecutor;
+    
+    private final Map<String, MealPlanJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    
+    @Value("${meal-plan.jobs.max-active:50}")
+    private int maxActiveJobs;
+    
+    @Value("${meal-plan.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+    
+    /**
+     * Queue a generation job owned by the given principal. Throws TaskRejectedException
+     * when too many generations are in flight.
+     */
+    public MealPlanJob submit(Long userId, int days, String mode, String owner) {
+        acquire();
+        
+        MealPlanJob job = new MealPlanJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setOwner(owner);
+        job.setUserId(userId);
+        job.setDays(days);
+        job.setMode(mode);
+        job.setStatus(STATUS_PENDING);
+        job.setCreatedAt(LocalDateTime.now());
+        jobs.put(job.getId(), job);
+        
+        try {
+            aiTaskExecutor.execute(() -> run(job));
+        } catch (TaskRejectedException e) {
+            activeJobs.decrementAndGet();
+            jobs.remove(job.getId());
+            throw e;
+        }
+        
+        log.info("Submitted meal plan job {} for user {} ({} days)", job.getId(), userId, days);
+        return job;
+    }
+    
+    /**
+     * Stream a generation over SSE under the same admission limit as background jobs.
+     * Throws TaskRejectedException when too many generations are in flight.
+     */
+    public SseEmitter stream(Long userId, int days) {
+        acquire();
+        try {
+            return generationService.streamMealPlan(userId, days, activeJobs::decrementAndGet);
+        } catch (RuntimeException e) {
+            // The stream task never started, so it will not release the slot itself
+            activeJobs.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    /**
+     * Return a snapshot of the job so callers never see it change underneath them. Jobs
+     * of other principals are reported as missing.
+     */
+    public Optional<MealPlanJob> getJob(String jobId, String owner) {
+        MealPlanJob job = jobs.get(jobId);
+        if (job == null || !Objects.equals(job.getOwner(), owner)) {
+            return Optional.empty();
+        }
+        
+        synchronized (job) {
+            MealPlanJob snapshot = new MealPlanJob();
+            snapshot.setId(job.getId());
+            snapshot.setOwner(job.getOwner());
+            snapshot.setUserId(job.getUserId());
+            snapshot.setDays(job.getDays());
+            snapshot.setMode(job.getMode());
+            snapshot.setStatus(job.getStatus());
+            snapshot.setMealPlanId(job.getMealPlanId());
+            snapshot.setError(job.getError());
+            snapshot.setCreatedAt(job.getCreatedAt());
+            snapshot.setCompletedAt(job.getCompletedAt());
+            return Optional.of(snapshot);
+        }
+    }
+    
+    private void acquire() {
+        if (activeJobs.incrementAndGet() > maxActiveJobs) {
+            activeJobs.decrementAndGet();
+            throw new TaskRejectedException("Too many meal plans are being generated, please retry later");
+        }
+    }
+    
+    private void run(MealPlanJob job) {
+        synchronized (job) {
+            job.setStatus(STATUS_RUNNING);
+        }
+        try {
+            MealPlan mealPlan = generationService.generateMealPlan(job.getUserId(), job.getDays(), job.getMode());
+            synchronized (job) {
+                job.setMealPlanId(mealPlan.getId());
+                job.setStatus(STATUS_COMPLETED);
+                job.setCompletedAt(LocalDateTime.now());
+            }
+        } catch (Exception e) {
+            log.error("Meal plan job {} failed", job.getId(), e);
+            synchronized (job) {
+                job.setError(e.getMessage());
+                job.setStatus(STATUS_FAILED);
+                job.setCompletedAt(LocalDateTime.now());
+            }
+        } finally {
+            activeJobs.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Forget finished jobs once clients have had time to collect them
+     */
+    @Scheduled(fixedDelayString = "${meal-plan.jobs.cleanup-interval-ms:300000}")
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.getCompletedAt() != null && job.getCompletedAt().isBefore(cutoff);
+            }
+        });
+    }
+}
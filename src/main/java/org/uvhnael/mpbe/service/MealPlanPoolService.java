@@ -0,0 +1,224 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.model.UserProfile;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of ready-made meal plans per profile archetype (goal, dietary preference, activity
+ * level, budget band and plan length). Archetypes are learned from generation requests;
+ * an off-peak job refills the most requested ones one Gemini call at a time, so a user
+ * in a common bucket gets a plan without waiting for Gemini. Pooled plans are generated
+ * without allergies and are only handed to users who have none: matching allergen names
+ * against free-form meal text misses too much (dairy vs cheese, shellfish vs shrimp).
+ */
+@Slf4j
+@Service
+public class MealPlanPoolService {
+
+    record Archetype(String goal, String dietaryPreference, String activityLevel, int budgetBand, int days) {
+    }
+
+    private record PooledPlan(AIMealPlanResponse plan, Instant createdAt) {
+    }
+
+    private final GeminiAIService geminiAIService;
+    private final AIMealPlanParserService aiParserService;
+
+    private final boolean enabled;
+    private final int targetSize;
+    private final int maxArchetypes;
+    private final int maxRefillsPerRun;
+    private final Duration maxAge;
+    private final List<BigDecimal> budgetBands;
+
+    private final Map<Archetype, LongAdder> demand = new ConcurrentHashMap<>();
+    private final Map<Archetype, Deque<PooledPlan>> pool = new ConcurrentHashMap<>();
+    private final AtomicInteger pooledPlans = new AtomicInteger();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public MealPlanPoolService(GeminiAIService geminiAIService,
+                               AIMealPlanParserService aiParserService,
+                               MeterRegistry meterRegistry,
+                               @Value("${meal-plan.pool.enabled:true}") boolean enabled,
+                               @Value("${meal-plan.pool.target-size:3}") int targetSize,
+                               @Value("${meal-plan.pool.max-archetypes:50}") int maxArchetypes,
+                               @Value("${meal-plan.pool.max-refills-per-run:10}") int maxRefillsPerRun,
+                               @Value("${meal-plan.pool.max-age-hours:72}") long maxAgeHours,
+                               @Value("${meal-plan.pool.budget-bands:5,10,20}") List<BigDecimal> budgetBands) {
+        this.geminiAIService = geminiAIService;
+        this.aiParserService = aiParserService;
+        this.enabled = enabled;
+        this.targetSize = targetSize;
+        this.maxArchetypes = maxArchetypes;
+        this.maxRefillsPerRun = maxRefillsPerRun;
+        this.maxAge = Duration.ofHours(maxAgeHours);
+        this.budgetBands = budgetBands.stream().sorted().toList();
+
+        this.hits = Counter.builder("meal-plan.pool.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("meal-plan.pool.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("meal-plan.pool.size", pooledPlans, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Take a pooled plan for the profile's archetype. Profiles with allergies are never
+     * served from the pool and do not count as demand; every other call counts as demand
+     * for the archetype, which drives the refill job.
+     */
+    public Optional<AIMealPlanResponse> take(UserProfile profile, int days) {
+        if (!enabled || !AllergenMatcher.parse(profile.getAllergies()).isEmpty()) {
+            return Optional.empty();
+        }
+
+        Archetype archetype = archetypeOf(profile, days);
+        recordDemand(archetype);
+
+        Deque<PooledPlan> plans = pool.get(archetype);
+        if (plans != null) {
+            Iterator<PooledPlan> iterator = plans.iterator();
+            while (iterator.hasNext()) {
+                PooledPlan candidate = iterator.next();
+                if (isFresh(candidate) && plans.remove(candidate)) {
+                    pooledPlans.decrementAndGet();
+                    hits.increment();
+                    return Optional.of(candidate.plan());
+                }
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Top up the most requested archetypes. Runs off-peak and makes at most
+     * max-refills-per-run sequential Gemini calls, so it never competes with user traffic
+     * for more than one request slot.
+     */
+    @Scheduled(cron = "${meal-plan.pool.refill-cron:0 */15 1-5 * * *}")
+    public void refill() {
+        if (!enabled) {
+            return;
+        }
+        evictStale();
+
+        List<Archetype> byDemand = demand.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<Archetype, LongAdder> entry) -> entry.getValue().sum())
+                .reversed())
+            .map(Map.Entry::getKey)
+            .toList();
+
+        int calls = 0;
+        for (Archetype archetype : byDemand) {
+            Deque<PooledPlan> plans = pool.computeIfAbsent(archetype, key -> new ConcurrentLinkedDeque<>());
+            while (plans.size() < targetSize) {
+                if (calls++ >= maxRefillsPerRun) {
+                    return;
+                }
+                try {
+                    String aiResponse = geminiAIService.generateMealPlan(profileOf(archetype), archetype.days(), false);
+                    plans.add(new PooledPlan(aiParserService.parseResponse(aiResponse), Instant.now()));
+                    pooledPlans.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.warn("Stopping meal plan pool refill after failure for {}: {}", archetype, e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void recordDemand(Archetype archetype) {
+        LongAdder counter = demand.get(archetype);
+        if (counter == null) {
+            if (demand.size() >= maxArchetypes) {
+                return;
+            }
+            counter = demand.computeIfAbsent(archetype, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private void evictStale() {
+        for (Deque<PooledPlan> plans : pool.values()) {
+            plans.removeIf(plan -> {
+                boolean stale = !isFresh(plan);
+                if (stale) {
+                    pooledPlans.decrementAndGet();
+                }
+                return stale;
+            });
+        }
+    }
+
+    private boolean isFresh(PooledPlan plan) {
+        return plan.createdAt().plus(maxAge).isAfter(Instant.now());
+    }
+
+    Archetype archetypeOf(UserProfile profile, int days) {
+        return new Archetype(
+            normalize(profile.getGoal()),
+            normalize(profile.getDietaryPreference()),
+            normalize(profile.getActivityLevel()),
+            budgetBand(profile.getBudgetPerMeal()),
+            days);
+    }
+
+    /**
+     * Index of the first band limit the budget stays under; budgets above every limit
+     * fall into the last band
+     */
+    private int budgetBand(BigDecimal budget) {
+        if (budget == null) {
+            return 0;
+        }
+        for (int band = 0; band < budgetBands.size(); band++) {
+            if (budget.compareTo(budgetBands.get(band)) < 0) {
+                return band;
+            }
+        }
+        return budgetBands.size();
+    }
+
+    /**
+     * A representative profile for generating plans: the upper limit of the budget band
+     * (or the top limit for the open-ended band) and no allergies
+     */
+    private UserProfile profileOf(Archetype archetype) {
+        UserProfile profile = new UserProfile();
+        profile.setGoal(archetype.goal());
+        profile.setDietaryPreference(archetype.dietaryPreference());
+        profile.setActivityLevel(archetype.activityLevel());
+        profile.setAllergies("none");
+        if (!budgetBands.isEmpty()) {
+            profile.setBudgetPerMeal(budgetBands.get(Math.min(archetype.budgetBand(), budgetBands.size() - 1)));
+        }
+        return profile;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
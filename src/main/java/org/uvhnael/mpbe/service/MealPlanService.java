@@ -4,7 +4,13 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.uvhnael.mpbe.dto.projection.PlannedMeal;
+import org.uvhnael.mpbe.model.Ingredient;
 import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.repository.MealPlanBulkWriter;
+import org.uvhnael.mpbe.repository.MealPlanItemRepository;
 import org.uvhnael.mpbe.repository.MealPlanRepository;
 
 import java.util.List;
@@ -15,6 +21,9 @@ import java.util.Optional;
 public class MealPlanService {
     
     private final MealPlanRepository mealPlanRepository;
+    private final MealPlanItemRepository mealPlanItemRepository;
+    private final MealPlanBulkWriter bulkWriter;
+    private final ShoppingListMaintenanceService shoppingListMaintenance;
     
     public List<MealPlan> getUserMealPlans(Long userId) {
         return mealPlanRepository.findByUserId(userId);
@@ -59,20 +68,40 @@ public class MealPlanService {
         mealPlanRepository.deleteById(id);
     }
     
-    public void replaceDayMeals(Long mealPlanId, Integer dayOfWeek, java.util.List<org.uvhnael.mpbe.model.MealPlanItem> newItems) {
-        MealPlan mealPlan = mealPlanRepository.findById(mealPlanId)
-            .orElseThrow(() -> new RuntimeException("Meal plan not found"));
+    /**
+     * Replace the meals of one day: a targeted delete by (meal plan, day) and a batched
+     * insert of the new items, without loading the rest of the plan. Shopping lists
+     * generated from the plan get the ingredient difference of the day applied.
+     */
+    @Transactional
+    public void replaceDayMeals(Long mealPlanId, Integer dayOfWeek, List<MealPlanItem> newItems) {
+        MealPlan mealPlan = mealPlanRepository.getReferenceById(mealPlanId);
+        
+        boolean maintainLists = shoppingListMaintenance.hasShoppingLists(mealPlanId);
+        List<Ingredient> removed = maintainLists
+                ? shoppingListMaintenance.ingredientsOfDay(mealPlanId, dayOfWeek)
+                : List.of();
         
         // Remove old items for this day
-        mealPlan.getMealPlanItems().removeIf(item -> item.getDayOfWeek().equals(dayOfWeek));
+        mealPlanItemRepository.deleteByMealPlanIdAndDayOfWeek(mealPlanId, dayOfWeek);
         
         // Add new items
-        for (org.uvhnael.mpbe.model.MealPlanItem item : newItems) {
+        for (MealPlanItem item : newItems) {
             item.setMealPlan(mealPlan);
             item.setDayOfWeek(dayOfWeek);
-            mealPlan.getMealPlanItems().add(item);
         }
+        bulkWriter.insertMealPlanItems(newItems);
         
-        mealPlanRepository.save(mealPlan);
+        if (maintainLists) {
+            shoppingListMaintenance.applyDelta(mealPlanId, removed,
+                    ShoppingListMaintenanceService.ingredientsOf(newItems));
+        }
+    }
+    
+    /**
+     * The recipes planned on every day except the given one
+     */
+    public List<PlannedMeal> getPlannedMealsExcludingDay(Long mealPlanId, Integer dayOfWeek) {
+        return mealPlanItemRepository.findPlannedMealsExcludingDay(mealPlanId, dayOfWeek);
     }
 }
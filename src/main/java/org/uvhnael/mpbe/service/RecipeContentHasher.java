@@ -0,0 +1,48 @@
+package org.uvhnael.mpbe.service;
+
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.util.Hashing;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Content hash identifying AI generated recipes that are the same dish: name plus every
+ * ingredient's name, quantity and unit, normalized for case, whitespace, trailing zeros and
+ * ingredient order. Descriptions, instructions and image URLs vary between generations
+ * and are deliberately left out. Matches are only reused within one owner's recipes, since
+ * owners can edit or delete their recipes.
+ */
+public final class RecipeContentHasher {
+
+    private RecipeContentHasher() {
+    }
+
+    public static String hash(AIMealPlanResponse.AIMeal meal) {
+        List<String> ingredients = new ArrayList<>();
+        if (meal.getIngredients() != null) {
+            for (AIMealPlanResponse.AIIngredient ingredient : meal.getIngredients()) {
+                ingredients.add(normalize(ingredient.getName()) + "|"
+                    + normalize(ingredient.getQuantity()) + "|"
+                    + normalize(ingredient.getUnit()));
+            }
+        }
+        ingredients.sort(null);
+
+        StringBuilder content = new StringBuilder(normalize(meal.getName()));
+        for (String ingredient : ingredients) {
+            content.append('\n').append(ingredient);
+        }
+        return Hashing.sha256(content.toString());
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalize(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,398 @@
+package org.uvhnael.mpbe.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over recipes, ranked with BM25 on a weighted bag of words
+ * (name counts three times, cuisine twice, ingredient names one and a half times,
+ * description once). Words are folded to ASCII (phở -> pho), lowercased and stemmed
+ * (tomatoes -> tomato, baked -> bak). A query word that is not in the vocabulary also
+ * matches the words one edit away (deletion-neighbourhood lookup, so the cost does not
+ * grow with the vocabulary), and the last query word also matches as a prefix, for
+ * search-as-you-type. Documents must match every query word; if none does, documents
+ * matching some words are returned, ranked by the share of words matched.
+ * Reads share a lock, writes are exclusive.
+ */
+public class RecipeSearchIndex {
+
+    public record Document(Long id, String name, String description, String cuisine, List<String> ingredients) {
+    }
+
+    public record Hits(List<Long> ids, int total) {
+    }
+
+    private record Entry(float length, Set<String> terms) {
+    }
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CUISINE_WEIGHT = 2f;
+    private static final float INGREDIENT_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_FACTOR = 0.8;
+    private static final double TYPO_FACTOR = 0.6;
+    private static final int MIN_TYPO_LENGTH = 4;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_EXPANSIONS = 32;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "the", "of", "with", "in", "on", "for", "to", "or", "at", "by", "from");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+    // term -> recipe id -> weighted term frequency
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    // Every term and every term with one character deleted -> the terms it came from
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+    private final NavigableSet<String> vocabulary = new TreeSet<>();
+    private final Map<Long, Entry> documents = new HashMap<>();
+    private double totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Add the document, replacing an earlier version with the same id
+     */
+    public void index(Document document) {
+        Map<String, Float> frequencies = new HashMap<>();
+        addField(frequencies, document.name(), NAME_WEIGHT);
+        addField(frequencies, document.cuisine(), CUISINE_WEIGHT);
+        if (document.ingredients() != null) {
+            document.ingredients().forEach(ingredient -> addField(frequencies, ingredient, INGREDIENT_WEIGHT));
+        }
+        addField(frequencies, document.description(), DESCRIPTION_WEIGHT);
+        float length = (float) frequencies.values().stream().mapToDouble(Float::doubleValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(document.id());
+            for (Map.Entry<String, Float> frequency : frequencies.entrySet()) {
+                String term = frequency.getKey();
+                Map<Long, Float> docs = postings.get(term);
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    postings.put(term, docs);
+                    addTerm(term);
+                }
+                docs.put(document.id(), frequency.getValue());
+            }
+            documents.put(document.id(), new Entry(length, frequencies.keySet()));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the matching recipes from offset, best first, and how many match in total
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int count = documents.size();
+            if (count == 0) {
+                return new Hits(List.of(), 0);
+            }
+            double averageLength = totalLength / count;
+
+            List<Map<Long, Double>> perWord = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) {
+                perWord.add(score(expand(words.get(i), i == words.size() - 1), count, averageLength));
+            }
+
+            Map<Long, Double> scores = combine(perWord, true);
+            if (scores.isEmpty() && perWord.size() > 1) {
+                scores = combine(perWord, false);
+            }
+            return top(scores, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long id) {
+        Entry entry = documents.remove(id);
+        if (entry == null) {
+            return;
+        }
+        totalLength -= entry.length();
+        for (String term : entry.terms()) {
+            Map<Long, Float> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+                removeTerm(term);
+            }
+        }
+    }
+
+    private void addTerm(String term) {
+        vocabulary.add(term);
+        for (String variant : variants(term)) {
+            deletions.computeIfAbsent(variant, key -> new HashSet<>(2)).add(term);
+        }
+    }
+
+    private void removeTerm(String term) {
+        vocabulary.remove(term);
+        for (String variant : variants(term)) {
+            Set<String> terms = deletions.get(variant);
+            if (terms != null && terms.remove(term) && terms.isEmpty()) {
+                deletions.remove(variant);
+            }
+        }
+    }
+
+    /**
+     * Index terms the word stands for, with how much a match on each counts: the word
+     * itself, words one typo away when it is unknown, and words it starts when it is the
+     * last word of the query
+     */
+    private Map<String, Double> expand(String word, boolean last) {
+        String term = stem(word);
+        Map<String, Double> expansions = new LinkedHashMap<>();
+        if (postings.containsKey(term)) {
+            expansions.put(term, 1.0);
+        }
+
+        if (last && word.length() >= MIN_PREFIX_LENGTH) {
+            for (String candidate : vocabulary.subSet(word, true, word + Character.MAX_VALUE, false)) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                expansions.putIfAbsent(candidate, PREFIX_FACTOR);
+            }
+        }
+
+        if (!postings.containsKey(term) && term.length() >= MIN_TYPO_LENGTH) {
+            for (String variant : variants(term)) {
+                for (String candidate : deletions.getOrDefault(variant, Set.of())) {
+                    if (expansions.size() < MAX_EXPANSIONS && withinOneEdit(term, candidate)) {
+                        expansions.putIfAbsent(candidate, TYPO_FACTOR);
+                    }
+                }
+            }
+        }
+        return expansions;
+    }
+
+    /**
+     * BM25 score per document for one query word, taking its best matching expansion
+     */
+    private Map<Long, Double> score(Map<String, Double> expansions, int count, double averageLength) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Double> expansion : expansions.entrySet()) {
+            Map<Long, Float> docs = postings.get(expansion.getKey());
+            double idf = Math.log(1 + (count - docs.size() + 0.5) / (docs.size() + 0.5));
+            for (Map.Entry<Long, Float> doc : docs.entrySet()) {
+                double tf = doc.getValue();
+                double norm = K1 * (1 - B + B * documents.get(doc.getKey()).length() / averageLength);
+                double score = expansion.getValue() * idf * tf * (K1 + 1) / (tf + norm);
+                scores.merge(doc.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Sum the word scores of documents matching every word, or of documents matching any
+     * word scaled by the share of words matched
+     */
+    private static Map<Long, Double> combine(List<Map<Long, Double>> perWord, boolean all) {
+        Map<Long, Double> scores = new HashMap<>();
+        if (all) {
+            Map<Long, Double> smallest = perWord.stream().min(Comparator.comparingInt(Map::size)).orElseThrow();
+            for (Map.Entry<Long, Double> candidate : smallest.entrySet()) {
+                double total = 0;
+                boolean matchesAll = true;
+                for (Map<Long, Double> word : perWord) {
+                    Double score = word.get(candidate.getKey());
+                    if (score == null) {
+                        matchesAll = false;
+                        break;
+                    }
+                    total += score;
+                }
+                if (matchesAll) {
+                    scores.put(candidate.getKey(), total);
+                }
+            }
+            return scores;
+        }
+
+        Map<Long, Integer> matched = new HashMap<>();
+        for (Map<Long, Double> word : perWord) {
+            word.forEach((id, score) -> {
+                scores.merge(id, score, Double::sum);
+                matched.merge(id, 1, Integer::sum);
+            });
+        }
+        scores.replaceAll((id, score) -> score * matched.get(id) / perWord.size());
+        return scores;
+    }
+
+    private static Hits top(Map<Long, Double> scores, int offset, int limit) {
+        int wanted = offset + limit;
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(Math.max(1, wanted), byScore);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (best.size() < wanted) {
+                best.add(entry);
+            } else if (wanted > 0 && byScore.compare(entry, best.peek()) > 0) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(best);
+        ranked.sort(byScore.reversed());
+        List<Long> ids = ranked.stream().skip(offset).map(Map.Entry::getKey).toList();
+        return new Hits(ids, scores.size());
+    }
+
+    private static void addField(Map<String, Float> frequencies, String text, float weight) {
+        for (String word : tokenize(text)) {
+            frequencies.merge(stem(word), weight, Float::sum);
+        }
+    }
+
+    /**
+     * ASCII-folded, lowercased words without stop words, in order and without duplicates
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+            .toLowerCase(Locale.ROOT)
+            .replace('đ', 'd');
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(folded)) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Light English suffix stripping: plurals, then -ing / -ed with doubled consonants
+     * undone, then a final e, so bake, baked, baking and bakes share a stem
+     */
+    static String stem(String word) {
+        if (word.length() <= 3 || !word.chars().allMatch(Character::isLetter)) {
+            return word;
+        }
+        String stem = word;
+        if (stem.endsWith("ies") && stem.length() > 4) {
+            stem = stem.substring(0, stem.length() - 3) + "y";
+        } else if (stem.endsWith("sses") || stem.endsWith("ches") || stem.endsWith("shes")
+                || stem.endsWith("xes") || stem.endsWith("oes") || stem.endsWith("ses")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("s") && !stem.endsWith("ss") && !stem.endsWith("us") && !stem.endsWith("is")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+
+        if (stem.endsWith("ing") && stem.length() > 5) {
+            stem = undouble(stem.substring(0, stem.length() - 3));
+        } else if (stem.endsWith("ed") && stem.length() > 4) {
+            stem = undouble(stem.substring(0, stem.length() - 2));
+        }
+
+        if (stem.endsWith("e") && stem.length() > 3) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+
+    private static String undouble(String stem) {
+        int length = stem.length();
+        if (length >= 2 && stem.charAt(length - 1) == stem.charAt(length - 2) && "lsfz".indexOf(stem.charAt(length - 1)) < 0) {
+            return stem.substring(0, length - 1);
+        }
+        return stem;
+    }
+
+    /**
+     * The term and every string obtained by deleting one of its characters
+     */
+    private static Set<String> variants(String term) {
+        Set<String> variants = new HashSet<>(term.length() + 1);
+        variants.add(term);
+        if (term.length() >= MIN_TYPO_LENGTH - 1) {
+            for (int i = 0; i < term.length(); i++) {
+                variants.add(term.substring(0, i) + term.substring(i + 1));
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Whether the strings differ by at most one insertion, deletion, substitution or
+     * transposition of adjacent characters
+     */
+    static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        int start = 0;
+        while (start < a.length() && start < b.length() && a.charAt(start) == b.charAt(start)) {
+            start++;
+        }
+        if (a.length() == b.length()) {
+            if (start == a.length()) {
+                return true;
+            }
+            String restA = a.substring(start + 1);
+            String restB = b.substring(start + 1);
+            boolean transposed = start + 1 < a.length() && a.charAt(start) == b.charAt(start + 1)
+                && a.charAt(start + 1) == b.charAt(start) && a.substring(start + 2).equals(b.substring(start + 2));
+            return restA.equals(restB) || transposed;
+        }
+        String longer = a.length() > b.length() ? a : b;
+        String shorter = a.length() > b.length() ? b : a;
+        return longer.substring(start + 1).equals(shorter.substring(start));
+    }
+}
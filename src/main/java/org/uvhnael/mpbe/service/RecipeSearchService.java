@@ -0,0 +1,230 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.uvhnael.mpbe.dto.projection.RecipeSearchRow;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.repository.RecipeRepository;
+import org.uvhnael.mpbe.repository.StreamingQueries;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recipe search backed by a {@link RecipeSearchIndex}. The index is built from two
+ * streamed scans after startup (on searchIndexExecutor) and rebuilt on
+ * recipe-search.rebuild-cron; in between, services publish {@link RecipesChanged} and
+ * the changed recipes are re-indexed once their transaction commits. Until the first
+ * build finishes (or when recipe-search.enabled is false) searches fall back to the name
+ * LIKE query.
+ */
+@Slf4j
+@Service
+public class RecipeSearchService {
+
+    /**
+     * Recipes that were created, edited or deleted
+     */
+    public record RecipesChanged(Collection<Long> recipeIds) {
+    }
+
+    private final RecipeRepository recipeRepository;
+    private final StreamingQueries streamingQueries;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Executor executor;
+    private final boolean enabled;
+
+    private final Counter indexSearches;
+    private final Counter databaseSearches;
+
+    private volatile RecipeSearchIndex index;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Changes committed while a rebuild is reading, re-applied before the new index goes live
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    public RecipeSearchService(RecipeRepository recipeRepository,
+                               StreamingQueries streamingQueries,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Qualifier("searchIndexExecutor") Executor searchIndexExecutor,
+                               @Value("${recipe-search.enabled:true}") boolean enabled) {
+        this.recipeRepository = recipeRepository;
+        this.streamingQueries = streamingQueries;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.executor = searchIndexExecutor;
+        this.enabled = enabled;
+
+        this.indexSearches = Counter.builder("recipe-search.requests").tag("source", "index").register(meterRegistry);
+        this.databaseSearches = Counter.builder("recipe-search.requests").tag("source", "database").register(meterRegistry);
+        Gauge.builder("recipe-search.documents", this, service -> service.index != null ? service.index.size() : 0)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Recipes matching the query, most relevant first
+     */
+    public Page<Recipe> search(String query, Pageable pageable) {
+        RecipeSearchIndex current = index;
+        if (!enabled || current == null) {
+            databaseSearches.increment();
+            return recipeRepository.findByNameContainingIgnoreCase(query, pageable);
+        }
+        indexSearches.increment();
+
+        RecipeSearchIndex.Hits hits = current.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        if (hits.ids().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, hits.total());
+        }
+        Map<Long, Recipe> recipes = recipeRepository.findAllById(hits.ids()).stream()
+            .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+        List<Recipe> ranked = hits.ids().stream()
+            .map(recipes::get)
+            .filter(Objects::nonNull)
+            .toList();
+        return new PageImpl<>(ranked, pageable, hits.total());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(this::rebuild);
+    }
+
+    @Scheduled(cron = "${recipe-search.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Build a fresh index from the database and swap it in; searches keep using the old
+     * one meanwhile. Does nothing when a rebuild is already running.
+     */
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            changedDuringRebuild.clear();
+            RecipeSearchIndex fresh = new RecipeSearchIndex();
+            readOnlyTransaction.executeWithoutResult(status -> load(fresh));
+
+            reindex(fresh, drainChanges());
+            index = fresh;
+            rebuilding.set(false);
+            // Changes that landed between the drain and the swap only reached the old index
+            reindex(fresh, drainChanges());
+            log.info("Built recipe search index: {} recipes in {} ms", fresh.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.warn("Cannot build recipe search index: {}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRecipesChanged(RecipesChanged event) {
+        if (!enabled || event.recipeIds().isEmpty()) {
+            return;
+        }
+        if (rebuilding.get()) {
+            changedDuringRebuild.addAll(event.recipeIds());
+        }
+        RecipeSearchIndex current = index;
+        if (current != null) {
+            try {
+                reindex(current, event.recipeIds());
+            } catch (RuntimeException e) {
+                // The recipe is saved; the index catches up on the next rebuild
+                log.warn("Cannot re-index recipes {}: {}", event.recipeIds(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Index the recipe scan, which lists each recipe once per ingredient on adjacent rows
+     */
+    private void load(RecipeSearchIndex target) {
+        try (Stream<RecipeSearchRow> rows = streamingQueries.streamSearchRows()) {
+            RecipeSearchRow recipe = null;
+            List<String> ingredientNames = new ArrayList<>();
+            Iterator<RecipeSearchRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                RecipeSearchRow row = iterator.next();
+                if (recipe != null && !recipe.id().equals(row.id())) {
+                    target.index(toDocument(recipe, ingredientNames));
+                    ingredientNames = new ArrayList<>();
+                }
+                recipe = row;
+                if (row.ingredientName() != null) {
+                    ingredientNames.add(row.ingredientName());
+                }
+            }
+            if (recipe != null) {
+                target.index(toDocument(recipe, ingredientNames));
+            }
+        }
+    }
+
+    private static RecipeSearchIndex.Document toDocument(RecipeSearchRow row, List<String> ingredientNames) {
+        return new RecipeSearchIndex.Document(row.id(), row.name(), row.description(), row.cuisineType(), ingredientNames);
+    }
+
+    private void reindex(RecipeSearchIndex target, Collection<Long> recipeIds) {
+        if (recipeIds.isEmpty()) {
+            return;
+        }
+        Set<Long> missing = new HashSet<>(recipeIds);
+        for (Recipe recipe : recipeRepository.findWithIngredientsByIdIn(missing)) {
+            missing.remove(recipe.getId());
+            target.index(toDocument(recipe));
+        }
+        missing.forEach(target::remove);
+    }
+
+    private Set<Long> drainChanges() {
+        Set<Long> drained = new HashSet<>(changedDuringRebuild);
+        changedDuringRebuild.removeAll(drained);
+        return drained;
+    }
+
+    static RecipeSearchIndex.Document toDocument(Recipe recipe) {
+        List<String> ingredients = recipe.getIngredients() == null
+            ? List.of()
+            : recipe.getIngredients().stream().map(Ingredient::getName).toList();
+        return new RecipeSearchIndex.Document(
+            recipe.getId(), recipe.getName(), recipe.getDescription(), recipe.getCuisineType(), ingredients);
+    }
+}
@@ -1,6 +1,7 @@
 package org.uvhnael.mpbe.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,6 +16,8 @@ import java.util.Optional;
 public class RecipeService {
     
     private final RecipeRepository recipeRepository;
+    private final RecipeSearchService recipeSearchService;
+    private final ApplicationEventPublisher eventPublisher;
     
     public Page<Recipe> getAllRecipes(Pageable pageable) {
         return recipeRepository.findAll(pageable);
@@ -25,7 +28,9 @@ public class RecipeService {
     }
     
     public Recipe createRecipe(Recipe recipe) {
-        return recipeRepository.save(recipe);
+        Recipe saved = recipeRepository.save(recipe);
+        eventPublisher.publishEvent(new RecipeSearchService.RecipesChanged(List.of(saved.getId())));
+        return saved;
     }
     
     public Recipe updateRecipe(Long id, Recipe recipe) {
@@ -42,16 +47,21 @@ public class RecipeService {
         existingRecipe.setDifficulty(recipe.getDifficulty());
         existingRecipe.setImageUrl(recipe.getImageUrl());
         existingRecipe.setInstructions(recipe.getInstructions());
+        // An edited recipe no longer matches the AI output it was imported from
+        existingRecipe.setContentHash(null);
         
-        return recipeRepository.save(existingRecipe);
+        Recipe saved = recipeRepository.save(existingRecipe);
+        eventPublisher.publishEvent(new RecipeSearchService.RecipesChanged(List.of(id)));
+        return saved;
     }
     
     public void deleteRecipe(Long id) {
         recipeRepository.deleteById(id);
+        eventPublisher.publishEvent(new RecipeSearchService.RecipesChanged(List.of(id)));
     }
     
     public Page<Recipe> searchRecipes(String name, Pageable pageable) {
-        return recipeRepository.findByNameContainingIgnoreCase(name, pageable);
+        return recipeSearchService.search(name, pageable);
     }
     
     public Page<Recipe> getRecipesByMealType(String mealType, Pageable pageable) {
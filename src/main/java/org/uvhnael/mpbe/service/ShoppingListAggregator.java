@@ -0,0 +1,374 @@
+package org.uvhnael.mpbe.service;
+
+import org.uvhnael.mpbe.model.Ingredient;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic shopping list aggregation. Ingredient names are normalized (descriptors,
+ * notes and plurals removed) and quantities are converted to a base unit per dimension:
+ * grams, millilitres or a count unit (piece, clove, slice, ...). When one ingredient is
+ * listed in several dimensions, volumes and counts are folded into the dimension used
+ * most often through density and piece-weight hints; what cannot be converted stays a
+ * separate line. Totals are rounded up to practical package sizes; small amounts (spices,
+ * extracts) only to the next gram or millilitre, so a teaspoon never becomes a 50 ml line.
+ */
+public class ShoppingListAggregator {
+
+    public record Line(String name, BigDecimal quantity, String unit) {
+    }
+
+    /**
+     * An unrounded amount of a normalized ingredient in one base unit (g, ml or a count unit)
+     */
+    public record Amount(String name, String base, double amount) {
+    }
+
+    private record Unit(String base, double factor) {
+    }
+
+    private static final Map<String, Unit> UNITS = new HashMap<>();
+
+    static {
+        mass(1, "g", "gram", "grams", "gr");
+        mass(1000, "kg", "kilogram", "kilograms", "kgs");
+        mass(0.001, "mg", "milligram", "milligrams");
+        mass(28.3495, "oz", "ounce", "ounces");
+        mass(453.592, "lb", "lbs", "pound", "pounds");
+        volume(1, "ml", "milliliter", "milliliters", "millilitre", "millilitres");
+        volume(1000, "l", "liter", "liters", "litre", "litres");
+        volume(10, "cl");
+        volume(4.92892, "tsp", "teaspoon", "teaspoons");
+        volume(14.7868, "tbsp", "tablespoon", "tablespoons", "tbs");
+        volume(236.588, "cup", "cups");
+        volume(29.5735, "fl oz", "fluid ounce", "fluid ounces");
+        volume(473.176, "pint", "pints");
+        volume(946.353, "quart", "quarts");
+        count("piece", "pieces", "pc", "pcs", "unit", "units", "whole", "item", "items", "large", "medium", "small");
+        count("clove", "cloves");
+        count("slice", "slices");
+        count("can", "cans", "tin", "tins");
+        count("bunch", "bunches");
+        count("pinch", "pinches", "dash", "dashes");
+    }
+
+    // Grams per millilitre, for folding volumes into masses
+    private static final Map<String, Double> DENSITY = Map.ofEntries(
+        Map.entry("water", 1.0), Map.entry("milk", 1.03), Map.entry("oil", 0.92), Map.entry("olive oil", 0.92),
+        Map.entry("butter", 0.96), Map.entry("flour", 0.53), Map.entry("all-purpose flour", 0.53),
+        Map.entry("sugar", 0.85), Map.entry("brown sugar", 0.83), Map.entry("salt", 1.2), Map.entry("honey", 1.42),
+        Map.entry("rice", 0.85), Map.entry("oat", 0.41), Map.entry("rolled oat", 0.41), Map.entry("yogurt", 1.03),
+        Map.entry("greek yogurt", 1.05), Map.entry("cream", 1.0), Map.entry("heavy cream", 1.0),
+        Map.entry("soy sauce", 1.2), Map.entry("maple syrup", 1.32), Map.entry("peanut butter", 1.09),
+        Map.entry("quinoa", 0.72), Map.entry("lentil", 0.82), Map.entry("cheese", 0.45));
+
+    // Grams per piece (or per clove / slice), for folding counts into masses
+    private static final Map<String, Double> PIECE_WEIGHT = Map.ofEntries(
+        Map.entry("egg", 50.0), Map.entry("onion", 150.0), Map.entry("red onion", 150.0),
+        Map.entry("garlic", 5.0), Map.entry("banana", 120.0), Map.entry("apple", 180.0),
+        Map.entry("tomato", 120.0), Map.entry("potato", 200.0), Map.entry("sweet potato", 250.0),
+        Map.entry("carrot", 60.0), Map.entry("lemon", 100.0), Map.entry("lime", 65.0),
+        Map.entry("avocado", 170.0), Map.entry("bell pepper", 150.0), Map.entry("zucchini", 200.0),
+        Map.entry("cucumber", 300.0), Map.entry("bread", 30.0), Map.entry("chicken breast", 200.0));
+
+    // Count items sold in fixed packs
+    private static final Map<String, Integer> PACK_SIZE = Map.of("egg", 6);
+
+    private static final Set<String> DESCRIPTORS = Set.of(
+        "fresh", "chopped", "diced", "minced", "sliced", "grated", "shredded", "crushed", "peeled",
+        "large", "medium", "small", "boneless", "skinless", "organic", "raw", "cooked", "frozen",
+        "finely", "roughly", "thinly", "ripe", "lean", "extra", "virgin", "to", "taste", "optional");
+
+    private static final Pattern NOTES = Pattern.compile("\\(.*?\\)|,.*$");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z\\- ]");
+
+    private static void mass(double grams, String... aliases) {
+        for (String alias : aliases) {
+            UNITS.put(alias, new Unit("g", grams));
+        }
+    }
+
+    private static void volume(double millilitres, String... aliases) {
+        for (String alias : aliases) {
+            UNITS.put(alias, new Unit("ml", millilitres));
+        }
+    }
+
+    private static void count(String base, String... aliases) {
+        UNITS.put(base, new Unit(base, 1));
+        for (String alias : aliases) {
+            UNITS.put(alias, new Unit(base, 1));
+        }
+    }
+
+    /**
+     * Totals for the given ingredients, one line per ingredient and unconvertible unit,
+     * in the order the ingredients first appear
+     */
+    public List<Line> aggregate(List<Ingredient> ingredients) {
+        Totals totals = totals();
+        ingredients.forEach(ingredient -> totals.add(ingredient.getName(), ingredient.getQuantity(), ingredient.getUnit()));
+        return totals.lines();
+    }
+
+    /**
+     * An empty running total, for folding ingredients in one at a time (e.g. from a
+     * stream) while keeping only one entry per ingredient and unit in memory
+     */
+    public Totals totals() {
+        return new Totals();
+    }
+
+    public final class Totals {
+
+        // name -> base unit -> total in that base unit
+        private final Map<String, Map<String, Double>> totals = new LinkedHashMap<>();
+        private final Map<String, Map<String, Integer>> uses = new HashMap<>();
+
+        private Totals() {
+        }
+
+        public Totals add(String ingredientName, BigDecimal quantity, String unitName) {
+            add(ingredientName, quantity, unitName, 1);
+            return this;
+        }
+
+        private void add(String ingredientName, BigDecimal quantity, String unitName, int sign) {
+            if (ingredientName == null || ingredientName.isBlank()) {
+                return;
+            }
+            String name = normalizeName(ingredientName);
+            Unit unit = unitOf(unitName);
+            double amount = quantity != null ? quantity.doubleValue() : 0;
+
+            totals.computeIfAbsent(name, key -> new LinkedHashMap<>())
+                .merge(unit.base(), sign * amount * unit.factor(), Double::sum);
+            uses.computeIfAbsent(name, key -> new HashMap<>()).merge(unit.base(), 1, Integer::sum);
+        }
+
+        /**
+         * The running total per ingredient and base unit, neither folded nor rounded
+         */
+        public List<Amount> amounts() {
+            List<Amount> amounts = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Double>> entry : totals.entrySet()) {
+                for (Map.Entry<String, Double> total : entry.getValue().entrySet()) {
+                    amounts.add(new Amount(entry.getKey(), total.getKey(), total.getValue()));
+                }
+            }
+            return amounts;
+        }
+
+        /**
+         * One line per ingredient and unconvertible unit, in the order the ingredients first appeared
+         */
+        public List<Line> lines() {
+            List<Line> lines = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Double>> entry : totals.entrySet()) {
+                String name = entry.getKey();
+                Map<String, Double> byUnit = fold(name, entry.getValue(), uses.get(name));
+                for (Map.Entry<String, Double> total : byUnit.entrySet()) {
+                    lines.add(toLine(name, total.getKey(), total.getValue()));
+                }
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Net change from the removed to the added ingredients, per ingredient and base unit,
+     * neither folded nor rounded; amounts that cancel out are left out
+     */
+    public List<Amount> difference(List<Ingredient> removed, List<Ingredient> added) {
+        Totals net = totals();
+        added.forEach(ingredient -> net.add(ingredient.getName(), ingredient.getQuantity(), ingredient.getUnit(), 1));
+        removed.forEach(ingredient -> net.add(ingredient.getName(), ingredient.getQuantity(), ingredient.getUnit(), -1));
+
+        return net.amounts().stream()
+            .filter(amount -> Math.abs(amount.amount()) > 1e-9)
+            .toList();
+    }
+
+    /**
+     * The amount expressed in the given unit, or null when the dimensions differ and no
+     * density or piece weight is known for the ingredient
+     */
+    public Double convert(Amount amount, String unit) {
+        Unit target = unitOf(unit);
+        if (target.base().equals(amount.base())) {
+            return amount.amount() / target.factor();
+        }
+        Double grams = toGrams(amount.name(), amount.base(), amount.amount());
+        Double converted = grams == null ? null : fromGrams(amount.name(), target.base(), grams);
+        return converted == null ? null : converted / target.factor();
+    }
+
+    /**
+     * A quantity already in the given unit rounded up the way {@link #toLine} rounds:
+     * g / ml steps that grow with the amount, quarters of larger units, whole pieces
+     * (or packs) for counts
+     */
+    public BigDecimal roundUp(String name, String unit, double quantity) {
+        Unit known = unitOf(unit);
+        double rounded;
+        if ("g".equals(known.base()) || "ml".equals(known.base())) {
+            double step = known.factor() == 1 ? baseStep(quantity) : 0.25;
+            rounded = Math.ceil(quantity / step - 1e-9) * step;
+        } else {
+            rounded = Math.ceil(quantity - 1e-9);
+            Integer pack = "piece".equals(known.base()) ? PACK_SIZE.get(name) : null;
+            if (pack != null) {
+                rounded = Math.ceil(rounded / pack) * pack;
+            }
+        }
+        return BigDecimal.valueOf(rounded).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * A shopping list line for a positive amount, rounded up to package size
+     */
+    public Line toLine(Amount amount) {
+        return toLine(amount.name(), amount.base(), amount.amount());
+    }
+
+    /**
+     * Convert every total that can be converted into the most used unit of the ingredient
+     */
+    private Map<String, Double> fold(String name, Map<String, Double> byUnit, Map<String, Integer> uses) {
+        if (byUnit.size() == 1) {
+            return byUnit;
+        }
+
+        String target = uses.entrySet().stream()
+            .max(Map.Entry.<String, Integer>comparingByValue()
+                .thenComparing(e -> "g".equals(e.getKey())))
+            .map(Map.Entry::getKey)
+            .orElseThrow();
+
+        Map<String, Double> folded = new LinkedHashMap<>();
+        folded.put(target, byUnit.get(target));
+        for (Map.Entry<String, Double> total : byUnit.entrySet()) {
+            if (total.getKey().equals(target)) {
+                continue;
+            }
+            Double grams = toGrams(name, total.getKey(), total.getValue());
+            Double converted = grams == null ? null : fromGrams(name, target, grams);
+            if (converted != null) {
+                folded.merge(target, converted, Double::sum);
+            } else {
+                folded.merge(total.getKey(), total.getValue(), Double::sum);
+            }
+        }
+        return folded;
+    }
+
+    private Double toGrams(String name, String base, double amount) {
+        if ("g".equals(base)) {
+            return amount;
+        }
+        if ("ml".equals(base)) {
+            Double density = DENSITY.get(name);
+            return density != null ? amount * density : null;
+        }
+        Double weight = PIECE_WEIGHT.get(name);
+        return weight != null && !"pinch".equals(base) ? amount * weight : null;
+    }
+
+    private Double fromGrams(String name, String base, double grams) {
+        if ("g".equals(base)) {
+            return grams;
+        }
+        if ("ml".equals(base)) {
+            Double density = DENSITY.get(name);
+            return density != null ? grams / density : null;
+        }
+        Double weight = PIECE_WEIGHT.get(name);
+        return weight != null && !"pinch".equals(base) ? grams / weight : null;
+    }
+
+    /**
+     * Round up to what a store sells: below a kilo or litre in steps of 1 (under 10),
+     * 5 (under 50) or 50 g / ml, quarter kilos or litres above, whole pieces (or packs)
+     * for counts
+     */
+    private Line toLine(String name, String base, double amount) {
+        if ("g".equals(base) || "ml".equals(base)) {
+            boolean large = amount >= 1000;
+            double step = baseStep(amount);
+            double rounded = large ? Math.ceil(amount / 250 - 1e-9) * 0.25 : Math.ceil(amount / step - 1e-9) * step;
+            String unit = large ? ("g".equals(base) ? "kg" : "l") : base;
+            return new Line(name, BigDecimal.valueOf(rounded).setScale(2, RoundingMode.HALF_UP), unit);
+        }
+
+        double rounded = Math.ceil(amount - 1e-9);
+        Integer pack = "piece".equals(base) ? PACK_SIZE.get(name) : null;
+        if (pack != null) {
+            rounded = Math.ceil(rounded / pack) * pack;
+        }
+        return new Line(name, BigDecimal.valueOf(rounded).setScale(2, RoundingMode.HALF_UP), base);
+    }
+
+    /**
+     * Rounding step for an amount in g or ml below a kilo or litre
+     */
+    private static double baseStep(double amount) {
+        if (amount < 10) {
+            return 1;
+        }
+        return amount < 50 ? 5 : 50;
+    }
+
+    private static Unit unitOf(String unit) {
+        if (unit == null || unit.isBlank()) {
+            return UNITS.get("piece");
+        }
+        String key = unit.trim().toLowerCase(Locale.ROOT).replaceAll("\\.$", "");
+        Unit known = UNITS.get(key);
+        return known != null ? known : new Unit(key, 1);
+    }
+
+    /**
+     * Lowercase, drop notes in parentheses or after a comma, preparation and size
+     * descriptors, and the plural of the last word: "2 Large Tomatoes, diced" -> "tomato"
+     */
+    static String normalizeName(String name) {
+        String text = NON_WORD.matcher(NOTES.matcher(name.toLowerCase(Locale.ROOT)).replaceAll(" ")).replaceAll(" ");
+        List<String> words = new ArrayList<>();
+        for (String word : text.trim().split("\\s+")) {
+            if (!word.isEmpty() && !DESCRIPTORS.contains(word)) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return name.trim().toLowerCase(Locale.ROOT);
+        }
+        int last = words.size() - 1;
+        words.set(last, singular(words.get(last)));
+        return String.join(" ", words);
+    }
+
+    private static String singular(String word) {
+        if (word.length() <= 3 || word.endsWith("ss") || word.endsWith("us")) {
+            return word;
+        }
+        if (word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
@@ -1,20 +1,35 @@
 package org.uvhnael.mpbe.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.uvhnael.mpbe.dto.ai.AIShoppingListItem;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.projection.MealPlanWindow;
+import org.uvhnael.mpbe.dto.projection.PlannedIngredient;
+import org.uvhnael.mpbe.dto.request.MergedShoppingListRequest;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+import org.uvhnael.mpbe.exception.BadRequestException;
 import org.uvhnael.mpbe.exception.ResourceNotFoundException;
-import org.uvhnael.mpbe.model.Ingredient;
-import org.uvhnael.mpbe.model.Recipe;
 import org.uvhnael.mpbe.model.ShoppingList;
 import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.MealPlanItemRepository;
+import org.uvhnael.mpbe.repository.MealPlanRepository;
 import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListRepository;
+import org.uvhnael.mpbe.repository.StreamingQueries;
+import org.uvhnael.mpbe.repository.UserRepository;
 
-import java.math.BigDecimal;
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -22,43 +37,81 @@ import java.util.Map;
 public class ShoppingListGeneratorService {
     
     private final ShoppingListItemRepository itemRepository;
+    private final ShoppingListRepository shoppingListRepository;
+    private final MealPlanRepository mealPlanRepository;
+    private final MealPlanItemRepository mealPlanItemRepository;
+    private final StreamingQueries streamingQueries;
+    private final UserRepository userRepository;
     private final GeminiAIService geminiAIService;
+    private final ObjectMapper objectMapper;
+    private final IngredientCategorizer categorizer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShoppingListAggregator aggregator = new ShoppingListAggregator();
+    
+    @Value("${shopping-list.ai-enrichment.enabled:false}")
+    private boolean aiEnrichment;
     
     /**
-     * Generate shopping list items from meal plan recipes using AI
+     * Generate shopping list items for the meal plan the list is linked to. The plan's
+     * ingredients are read with one projection query. Items are aggregated locally; with
+     * shopping-list.ai-enrichment.enabled Gemini is asked first and the local aggregation
+     * is the fallback. Subscribers of the list are told to reload it.
      */
     @Transactional
-    public List<ShoppingListItem> generateFromRecipes(ShoppingList shoppingList, List<Recipe> recipes) {
-        log.info("Generating shopping list items for shopping list {}, {} recipes", 
-                 shoppingList.getId(), recipes.size());
+    public List<ShoppingListItem> generateFromMealPlan(ShoppingList shoppingList) {
+        if (shoppingList.getMealPlan() == null) {
+            throw new BadRequestException("Shopping list is not linked to a meal plan");
+        }
+        List<PlannedIngredient> ingredients = mealPlanItemRepository.findPlannedIngredients(
+            shoppingList.getMealPlan().getId());
+        log.info("Generating shopping list items for shopping list {}, {} ingredient rows",
+                 shoppingList.getId(), ingredients.size());
+        
+        List<ShoppingListItem> items = aiEnrichment ? generateWithAI(shoppingList, ingredients) : List.of();
+        if (items.isEmpty()) {
+            items = generateLocalShoppingList(shoppingList, ingredients);
+        }
         
+        List<ShoppingListItem> saved = itemRepository.saveAll(items);
+        eventPublisher.publishEvent(ShoppingListDelta.resync(shoppingList.getId()));
+        log.info("Generated {} shopping list items", saved.size());
+        return saved;
+    }
+    
+    /**
+     * Ask Gemini to combine and categorize the ingredients; empty if the call or parsing fails
+     */
+    private List<ShoppingListItem> generateWithAI(ShoppingList shoppingList, List<PlannedIngredient> ingredients) {
         try {
-            // Build prompt with all ingredients
+            // Build prompt with all ingredients, one block per planned meal
             StringBuilder ingredientsPrompt = new StringBuilder();
             ingredientsPrompt.append("Optimize the following ingredients for a shopping list:\n\n");
             
-            for (Recipe recipe : recipes) {
-                ingredientsPrompt.append("Recipe: ").append(recipe.getName()).append("\n");
-                if (recipe.getIngredients() != null) {
-                    for (Ingredient ingredient : recipe.getIngredients()) {
-                        ingredientsPrompt.append("- ")
-                            .append(ingredient.getQuantity() != null ? ingredient.getQuantity() : "")
-                            .append(" ")
-                            .append(ingredient.getUnit() != null ? ingredient.getUnit() : "")
-                            .append(" ")
-                            .append(ingredient.getName())
-                            .append("\n");
+            Long currentItem = null;
+            for (PlannedIngredient ingredient : ingredients) {
+                if (!ingredient.itemId().equals(currentItem)) {
+                    if (currentItem != null) {
+                        ingredientsPrompt.append("\n");
                     }
+                    ingredientsPrompt.append("Recipe: ").append(ingredient.recipeName()).append("\n");
+                    currentItem = ingredient.itemId();
                 }
-                ingredientsPrompt.append("\n");
+                ingredientsPrompt.append("- ")
+                    .append(ingredient.quantity() != null ? ingredient.quantity() : "")
+                    .append(" ")
+                    .append(ingredient.unit() != null ? ingredient.unit() : "")
+                    .append(" ")
+                    .append(ingredient.name())
+                    .append("\n");
             }
+            ingredientsPrompt.append("\n");
             
             ingredientsPrompt.append("""
                 
                 Please:
                 1. Combine duplicate ingredients with the same unit
                 2. Convert units to standard measurements where appropriate
-                3. Categorize items (Meat & Seafood, Dairy, Vegetables, Fruits, Grains & Bakery, Condiments & Spices, Other)
+                3. Categorize items (Meat & Seafood, Dairy, Vegetables, Fruits, Grains & Bakery, Nuts & Legumes, Condiments & Spices, Beverages, Other)
                 4. Suggest practical shopping quantities (round up to store packages)
                 
                 Return as JSON array:
@@ -73,73 +126,123 @@ public class ShoppingListGeneratorService {
                 ]
                 """);
             
-            String aiResponse = geminiAIService.callGeminiAPI(ingredientsPrompt.toString());
+            String aiResponse = geminiAIService.generateShoppingList(ingredientsPrompt.toString());
             
-            // Try to parse AI response
             List<ShoppingListItem> items = parseAIShoppingList(shoppingList, aiResponse);
-            
             if (items.isEmpty()) {
-                log.warn("AI parsing failed, falling back to basic aggregation");
-                items = generateBasicShoppingList(shoppingList, recipes);
+                log.warn("AI parsing failed, falling back to local aggregation");
             }
-            
-            List<ShoppingListItem> saved = itemRepository.saveAll(items);
-            log.info("Generated {} shopping list items using AI", saved.size());
-            
-            return saved;
-            
+            return items;
         } catch (Exception e) {
-            log.error("Error generating shopping list with AI, falling back to basic method", e);
-            return generateBasicShoppingList(shoppingList, recipes);
+            log.error("Error generating shopping list with AI, falling back to local aggregation", e);
+            return List.of();
         }
     }
     
     /**
-     * Fallback method - basic ingredient aggregation
+     * Aggregate the ingredients locally: names normalized, units converted and merged,
+     * quantities rounded up to package sizes
      */
-    private List<ShoppingListItem> generateBasicShoppingList(ShoppingList shoppingList, List<Recipe> recipes) {
-        Map<String, IngredientAggregate> aggregated = new HashMap<>();
+    private List<ShoppingListItem> generateLocalShoppingList(ShoppingList shoppingList,
+                                                            List<PlannedIngredient> ingredients) {
+        ShoppingListAggregator.Totals totals = aggregator.totals();
+        ingredients.forEach(ingredient -> totals.add(ingredient.name(), ingredient.quantity(), ingredient.unit()));
+        return toItems(shoppingList, totals.lines());
+    }
+    
+    /**
+     * One shopping list for several meal plans, or for the days of the user's plans within
+     * a date range. Ingredient rows are streamed from the database and folded into running
+     * totals one by one, so memory depends on the number of distinct ingredients, not on
+     * the number of planned meals. The list is linked to the plan (and kept in step with
+     * it on meal swaps) only when it holds one whole plan.
+     */
+    @Transactional
+    public ShoppingList generateMerged(Long userId, MergedShoppingListRequest request) {
+        List<MealPlanWindow> plans = mergedPlans(userId, request);
+        if (plans.isEmpty()) {
+            throw new ResourceNotFoundException("No meal plans found to merge");
+        }
         
-        for (Recipe recipe : recipes) {
-            if (recipe.getIngredients() != null) {
-                for (Ingredient ingredient : recipe.getIngredients()) {
-                    String key = ingredient.getName().toLowerCase();
-                    String unit = ingredient.getUnit() != null && !ingredient.getUnit().isEmpty() 
-                        ? ingredient.getUnit() : "unit";
-                    BigDecimal quantity = ingredient.getQuantity() != null ? ingredient.getQuantity() : BigDecimal.ZERO;
-                    
-                    if (aggregated.containsKey(key)) {
-                        IngredientAggregate agg = aggregated.get(key);
-                        if (agg.unit.equalsIgnoreCase(unit)) {
-                            agg.quantity = agg.quantity.add(quantity);
-                        } else {
-                            key = key + "_" + unit;
-                            aggregated.put(key, new IngredientAggregate(
-                                ingredient.getName(),
-                                quantity,
-                                unit
-                            ));
-                        }
-                    } else {
-                        aggregated.put(key, new IngredientAggregate(
-                            ingredient.getName(),
-                            quantity,
-                            unit
-                        ));
-                    }
-                }
+        ShoppingListAggregator.Totals totals = aggregator.totals();
+        for (MealPlanWindow plan : plans) {
+            int[] days = dayRange(plan, request.getFrom(), request.getTo());
+            try (Stream<IngredientLine> lines = streamingQueries.streamIngredientLines(plan.id(), days[0], days[1])) {
+                lines.forEach(line -> totals.add(line.name(), line.quantity(), line.unit()));
             }
         }
         
-        List<ShoppingListItem> items = new java.util.ArrayList<>();
-        for (IngredientAggregate agg : aggregated.values()) {
+        ShoppingList shoppingList = new ShoppingList();
+        shoppingList.setUser(userRepository.getReferenceById(userId));
+        if (plans.size() == 1 && coversWholePlan(plans.get(0), request.getFrom(), request.getTo())) {
+            shoppingList.setMealPlan(mealPlanRepository.getReferenceById(plans.get(0).id()));
+        }
+        shoppingList = shoppingListRepository.save(shoppingList);
+        shoppingList.setItems(itemRepository.saveAll(toItems(shoppingList, totals.lines())));
+        
+        log.info("Merged {} meal plans into shopping list {} with {} items",
+                 plans.size(), shoppingList.getId(), shoppingList.getItems().size());
+        return shoppingList;
+    }
+    
+    private List<MealPlanWindow> mergedPlans(Long userId, MergedShoppingListRequest request) {
+        boolean byIds = request.getMealPlanIds() != null && !request.getMealPlanIds().isEmpty();
+        boolean byRange = request.getFrom() != null || request.getTo() != null;
+        if (!byIds && !byRange) {
+            throw new BadRequestException("Either meal plan ids or a date range is required");
+        }
+        if (byRange && (request.getFrom() == null || request.getTo() == null)) {
+            throw new BadRequestException("A date range needs both from and to");
+        }
+        if (byRange && request.getFrom().isAfter(request.getTo())) {
+            throw new BadRequestException("The date range ends before it starts");
+        }
+        
+        if (!byIds) {
+            return mealPlanRepository.findWindowsByUserIdOverlapping(userId, request.getFrom(), request.getTo());
+        }
+        List<MealPlanWindow> plans = mealPlanRepository.findWindowsByUserIdAndIdIn(userId, request.getMealPlanIds());
+        if (!byRange) {
+            return plans;
+        }
+        return plans.stream()
+            .filter(plan -> plan.startDate() != null && !plan.startDate().isAfter(request.getTo())
+                && (plan.endDate() == null || !plan.endDate().isBefore(request.getFrom())))
+            .toList();
+    }
+    
+    /**
+     * The plan days (1-based, inclusive) inside the date range; all days without a range
+     */
+    private static int[] dayRange(MealPlanWindow plan, LocalDate from, LocalDate to) {
+        if (from == null || plan.startDate() == null) {
+            return new int[] {1, Integer.MAX_VALUE};
+        }
+        long first = ChronoUnit.DAYS.between(plan.startDate(), from) + 1;
+        long last = ChronoUnit.DAYS.between(plan.startDate(), to) + 1;
+        return new int[] {(int) Math.max(1, first), (int) Math.min(Integer.MAX_VALUE, last)};
+    }
+    
+    /**
+     * Whether the date range, if any, includes every day of the plan
+     */
+    private static boolean coversWholePlan(MealPlanWindow plan, LocalDate from, LocalDate to) {
+        if (from == null || plan.startDate() == null) {
+            return true;
+        }
+        return !from.isAfter(plan.startDate()) && plan.endDate() != null && !to.isBefore(plan.endDate());
+    }
+    
+    private List<ShoppingListItem> toItems(ShoppingList shoppingList, List<ShoppingListAggregator.Line> lines) {
+        List<ShoppingListItem> items = new ArrayList<>();
+        for (ShoppingListAggregator.Line line : lines) {
             ShoppingListItem item = new ShoppingListItem();
             item.setShoppingList(shoppingList);
-            item.setIngredientName(agg.name);
-            item.setQuantity(agg.quantity);
-            item.setUnit(agg.unit);
+            item.setIngredientName(line.name());
+            item.setQuantity(line.quantity());
+            item.setUnit(line.unit());
             item.setIsChecked(false);
-            item.setCategory(categorizeIngredient(agg.name));
+            item.setCategory(categorizer.categorize(line.name()));
             
             items.add(item);
         }
@@ -151,33 +254,30 @@ public class ShoppingListGeneratorService {
      * Parse AI response to create shopping list items
      */
     private List<ShoppingListItem> parseAIShoppingList(ShoppingList shoppingList, String aiResponse) {
-        List<ShoppingListItem> items = new java.util.ArrayList<>();
+        List<ShoppingListItem> items = new ArrayList<>();
         
         try {
-            // Check if response is an error message
-            if (aiResponse.startsWith("Error")) {
-                log.warn("AI returned error: {}", aiResponse);
-                return items; // Return empty list to trigger fallback
-            }
-            
-            // Extract JSON from response
-            String json = extractJSON(aiResponse);
+            // Structured output returns a bare JSON array; otherwise scrape it out of the text
+            String trimmed = aiResponse.strip();
+            String json = trimmed.startsWith("[") ? trimmed : extractJSON(aiResponse);
             
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode root = mapper.readTree(json);
+            List<AIShoppingListItem> aiItems = objectMapper.readValue(json, new TypeReference<>() {});
             
-            if (root.isArray()) {
-                for (com.fasterxml.jackson.databind.JsonNode node : root) {
-                    ShoppingListItem item = new ShoppingListItem();
-                    item.setShoppingList(shoppingList);
-                    item.setIngredientName(node.get("name").asText());
-                    item.setQuantity(new BigDecimal(node.get("quantity").asText()));
-                    item.setUnit(node.get("unit").asText());
-                    item.setCategory(node.has("category") ? node.get("category").asText() : "Other");
-                    item.setIsChecked(false);
-                    
-                    items.add(item);
+            for (AIShoppingListItem aiItem : aiItems) {
+                if (aiItem.getName() == null || aiItem.getQuantity() == null) {
+                    continue;
                 }
+                
+                ShoppingListItem item = new ShoppingListItem();
+                item.setShoppingList(shoppingList);
+                item.setIngredientName(aiItem.getName());
+                item.setQuantity(aiItem.getQuantity());
+                item.setUnit(aiItem.getUnit());
+                item.setCategory(aiItem.getCategory() != null
+                    ? aiItem.getCategory() : categorizer.categorize(aiItem.getName()));
+                item.setIsChecked(false);
+                
+                items.add(item);
             }
         } catch (Exception e) {
             log.warn("Failed to parse AI response, will use fallback method: {}", e.getMessage());
@@ -201,49 +301,12 @@ public class ShoppingListGeneratorService {
     }
     
     /**
-     * Categorize ingredient for better organization
-     */
-    private String categorizeIngredient(String name) {
-        String lowerName = name.toLowerCase();
-        
-        if (lowerName.matches(".*(chicken|beef|pork|fish|meat|lamb).*")) {
-            return "Meat & Seafood";
-        } else if (lowerName.matches(".*(milk|cheese|yogurt|butter|cream).*")) {
-            return "Dairy";
-        } else if (lowerName.matches(".*(carrot|potato|onion|tomato|lettuce|spinach|broccoli).*")) {
-            return "Vegetables";
-        } else if (lowerName.matches(".*(apple|banana|orange|berry|grape|lemon).*")) {
-            return "Fruits";
-        } else if (lowerName.matches(".*(bread|pasta|rice|flour|cereal).*")) {
-            return "Grains & Bakery";
-        } else if (lowerName.matches(".*(salt|pepper|sugar|spice|herb|sauce).*")) {
-            return "Condiments & Spices";
-        } else {
-            return "Other";
-        }
-    }
-    
-    /**
-     * Clear all items from shopping list
+     * Clear all items from shopping list; subscribers of the list are told to reload it
      */
     @Transactional
     public void clearShoppingList(Long shoppingListId) {
         log.info("Clearing shopping list: {}", shoppingListId);
         itemRepository.deleteByShoppingListId(shoppingListId);
-    }
-    
-    /**
-     * Inner class to aggregate ingredients
-     */
-    private static class IngredientAggregate {
-        String name;
-        BigDecimal quantity;
-        String unit;
-        
-        IngredientAggregate(String name, BigDecimal quantity, String unit) {
-            this.name = name;
-            this.quantity = quantity;
-            this.unit = unit;
-        }
+        eventPublisher.publishEvent(ShoppingListDelta.resync(shoppingListId));
     }
 }
@@ -1,22 +1,36 @@
 package org.uvhnael.mpbe.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.uvhnael.mpbe.dto.request.ShoppingListItemBatchRequest;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+import org.uvhnael.mpbe.exception.BadRequestException;
 import org.uvhnael.mpbe.exception.ResourceNotFoundException;
 import org.uvhnael.mpbe.model.ShoppingList;
 import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.ShoppingListItemBulkWriter;
 import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
 import org.uvhnael.mpbe.repository.ShoppingListRepository;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+/**
+ * Item operations on shopping lists. Every change publishes a {@link ShoppingListDelta},
+ * which {@link ShoppingListSyncHub} pushes to the list's subscribers after commit.
+ */
 @Service
 @RequiredArgsConstructor
 public class ShoppingListItemService {
     
     private final ShoppingListItemRepository itemRepository;
     private final ShoppingListRepository shoppingListRepository;
+    private final ShoppingListItemBulkWriter bulkWriter;
+    private final ApplicationEventPublisher eventPublisher;
     
     public List<ShoppingListItem> getItemsByShoppingListId(Long shoppingListId) {
         return itemRepository.findByShoppingListId(shoppingListId);
@@ -36,7 +50,9 @@ public class ShoppingListItemService {
             item.setIsChecked(false);
         }
         
-        return itemRepository.save(item);
+        ShoppingListItem saved = itemRepository.save(item);
+        eventPublisher.publishEvent(ShoppingListDelta.upsert(shoppingListId, List.of(saved)));
+        return saved;
     }
     
     @Transactional
@@ -60,15 +76,18 @@ public class ShoppingListItemService {
             item.setCategory(itemDetails.getCategory());
         }
         
-        return itemRepository.save(item);
+        ShoppingListItem saved = itemRepository.save(item);
+        eventPublisher.publishEvent(ShoppingListDelta.upsert(saved.getShoppingList().getId(), List.of(saved)));
+        return saved;
     }
     
     @Transactional
     public void deleteItem(Long itemId) {
-        if (!itemRepository.existsById(itemId)) {
-            throw new ResourceNotFoundException("Shopping list item not found");
-        }
-        itemRepository.deleteById(itemId);
+        ShoppingListItem item = itemRepository.findById(itemId)
+            .orElseThrow(() -> new ResourceNotFoundException("Shopping list item not found"));
+        
+        itemRepository.delete(item);
+        eventPublisher.publishEvent(ShoppingListDelta.deleted(item.getShoppingList().getId(), List.of(itemId)));
     }
     
     @Transactional
@@ -78,5 +97,71 @@ public class ShoppingListItemService {
         
         item.setIsChecked(!item.getIsChecked());
         itemRepository.save(item);
+        eventPublisher.publishEvent(ShoppingListDelta.checked(item.getShoppingList().getId(), List.of(itemId),
+            item.getIsChecked()));
+    }
+    
+    /**
+     * Apply many item operations to one list in a single transaction: one batched UPDATE
+     * for the field updates and one set-based statement each for checks, unchecks and
+     * deletes. Ids of items belonging to other lists are ignored. Returns the list's items.
+     */
+    @Transactional
+    public List<ShoppingListItem> applyBatch(Long shoppingListId, ShoppingListItemBatchRequest request) {
+        if (!shoppingListRepository.existsById(shoppingListId)) {
+            throw new ResourceNotFoundException("Shopping list not found");
+        }
+        Set<Long> check = idsOf(request.getCheck());
+        Set<Long> uncheck = idsOf(request.getUncheck());
+        // Only ids of the list's own items are deleted, and only those are published
+        Set<Long> delete = idsOf(request.getDelete());
+        if (!delete.isEmpty()) {
+            delete = new HashSet<>(itemRepository.findIdsByShoppingListIdAndIdIn(shoppingListId, delete));
+        }
+        for (Long id : check) {
+            if (uncheck.contains(id)) {
+                throw new BadRequestException("Item " + id + " cannot be both checked and unchecked");
+            }
+        }
+        
+        if (request.getUpdate() != null) {
+            bulkWriter.updateItems(shoppingListId, request.getUpdate());
+        }
+        if (!check.isEmpty()) {
+            itemRepository.updateCheckedByShoppingListIdAndIdIn(shoppingListId, check, true);
+        }
+        if (!uncheck.isEmpty()) {
+            itemRepository.updateCheckedByShoppingListIdAndIdIn(shoppingListId, uncheck, false);
+        }
+        if (!delete.isEmpty()) {
+            itemRepository.deleteByShoppingListIdAndIdIn(shoppingListId, delete);
+        }
+        
+        List<ShoppingListItem> items = itemRepository.findByShoppingListId(shoppingListId);
+        publishBatch(shoppingListId, request, check, uncheck, delete, items);
+        return items;
+    }
+    
+    /**
+     * Deltas for the ids that belong to the list; unknown ids were ignored by the statements
+     */
+    private void publishBatch(Long shoppingListId, ShoppingListItemBatchRequest request,
+                              Set<Long> check, Set<Long> uncheck, Set<Long> delete, List<ShoppingListItem> items) {
+        Set<Long> remaining = items.stream().map(ShoppingListItem::getId).collect(Collectors.toSet());
+        Set<Long> updated = request.getUpdate() == null ? Set.of() : request.getUpdate().stream()
+            .map(ShoppingListItemBatchRequest.ItemUpdate::getId)
+            .collect(Collectors.toSet());
+        
+        List<ShoppingListItem> changed = items.stream().filter(item -> updated.contains(item.getId())).toList();
+        eventPublisher.publishEvent(ShoppingListDelta.upsert(shoppingListId, changed));
+        eventPublisher.publishEvent(ShoppingListDelta.checked(shoppingListId,
+            check.stream().filter(remaining::contains).toList(), true));
+        eventPublisher.publishEvent(ShoppingListDelta.checked(shoppingListId,
+            uncheck.stream().filter(remaining::contains).toList(), false));
+        eventPublisher.publishEvent(ShoppingListDelta.deleted(shoppingListId, delete));
+    }
+    
+    private static Set<Long> idsOf(List<Long> ids) {
+        return ids == null ? Set.of() : new HashSet<>(ids);
     }
 }
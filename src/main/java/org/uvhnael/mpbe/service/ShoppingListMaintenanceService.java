@@ -0,0 +1,253 @@
+package org.uvhnael.mpbe.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.model.ShoppingList;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.IngredientRepository;
+import org.uvhnael.mpbe.repository.MealPlanItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the shopping lists generated from a meal plan in step with the plan. When meals
+ * are swapped, only the ingredients that differ between the removed and the added meals
+ * are touched: each matching item is moved by the change of the plan's rounded total, so
+ * repeated swaps never build on earlier rounding while quantities the user edited keep
+ * their offset and items of other ingredients are left alone. Items that drop to nothing
+ * are removed and new ingredients are appended. Only the plan's ingredient lines and the
+ * items named in the difference are loaded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShoppingListMaintenanceService {
+
+    private final ShoppingListRepository shoppingListRepository;
+    private final ShoppingListItemRepository itemRepository;
+    private final MealPlanItemRepository mealPlanItemRepository;
+    private final IngredientRepository ingredientRepository;
+    private final IngredientCategorizer categorizer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShoppingListAggregator aggregator = new ShoppingListAggregator();
+
+    public boolean hasShoppingLists(Long mealPlanId) {
+        return shoppingListRepository.existsByMealPlanId(mealPlanId);
+    }
+
+    /**
+     * Ingredients of the meals currently planned on the day, once per meal
+     */
+    public List<Ingredient> ingredientsOfDay(Long mealPlanId, Integer dayOfWeek) {
+        List<Long> recipeIds = mealPlanItemRepository.findRecipeIdsByMealPlanIdAndDayOfWeek(mealPlanId, dayOfWeek);
+        if (recipeIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<Ingredient>> byRecipe = ingredientRepository.findWithRecipeByRecipeIdIn(new HashSet<>(recipeIds))
+            .stream()
+            .collect(Collectors.groupingBy(ingredient -> ingredient.getRecipe().getId()));
+
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (Long recipeId : recipeIds) {
+            ingredients.addAll(byRecipe.getOrDefault(recipeId, List.of()));
+        }
+        return ingredients;
+    }
+
+    /**
+     * Ingredients of the given meal plan items, once per item
+     */
+    public static List<Ingredient> ingredientsOf(List<MealPlanItem> items) {
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (MealPlanItem item : items) {
+            Recipe recipe = item.getRecipe();
+            if (recipe != null && recipe.getIngredients() != null) {
+                ingredients.addAll(recipe.getIngredients());
+            }
+        }
+        return ingredients;
+    }
+
+    /**
+     * Bring every shopping list generated from the meal plan in step with the plan after
+     * the removed meals were replaced by the added ones. Must be called once the plan holds
+     * the added meals.
+     */
+    @Transactional
+    public void applyDelta(Long mealPlanId, List<Ingredient> removed, List<Ingredient> added) {
+        List<ShoppingListAggregator.Amount> delta = aggregator.difference(removed, added);
+        if (delta.isEmpty()) {
+            return;
+        }
+        List<ShoppingList> shoppingLists = shoppingListRepository.findByMealPlanId(mealPlanId);
+        if (shoppingLists.isEmpty()) {
+            return;
+        }
+
+        // Stored names are normalized by the aggregator, or the AI's own (possibly plural) wording
+        Set<String> touched = new LinkedHashSet<>();
+        Set<String> names = new HashSet<>();
+        for (ShoppingListAggregator.Amount amount : delta) {
+            touched.add(amount.name());
+            names.add(amount.name());
+            names.add(IngredientCategorizer.plural(amount.name()));
+        }
+        Map<String, List<ShoppingListAggregator.Amount>> planned = plannedAmounts(mealPlanId, touched,
+            Stream.concat(removed.stream(), added.stream()).map(Ingredient::getName).toList());
+        Map<String, List<ShoppingListAggregator.Amount>> changes = delta.stream()
+            .collect(Collectors.groupingBy(ShoppingListAggregator.Amount::name));
+
+        Map<Long, Map<String, List<ShoppingListItem>>> itemsByList = new HashMap<>();
+        for (ShoppingListItem item : itemRepository.findByMealPlanIdAndIngredientNames(mealPlanId, names)) {
+            itemsByList.computeIfAbsent(item.getShoppingList().getId(), id -> new HashMap<>())
+                .computeIfAbsent(ShoppingListAggregator.normalizeName(item.getIngredientName()), name -> new ArrayList<>())
+                .add(item);
+        }
+
+        List<ShoppingListItem> changed = new ArrayList<>();
+        List<ShoppingListItem> emptied = new ArrayList<>();
+        for (ShoppingList shoppingList : shoppingLists) {
+            Map<String, List<ShoppingListItem>> items = itemsByList.getOrDefault(shoppingList.getId(), Map.of());
+            for (String name : touched) {
+                adjust(shoppingList, name, items.getOrDefault(name, List.of()), planned.getOrDefault(name, List.of()),
+                    changes.get(name), changed, emptied);
+            }
+        }
+
+        itemRepository.saveAll(changed);
+        itemRepository.deleteAll(emptied);
+        publish(changed, emptied);
+        log.debug("Adjusted {} ingredients on {} shopping lists of meal plan {}",
+            touched.size(), shoppingLists.size(), mealPlanId);
+    }
+
+    /**
+     * The unrounded amounts of the touched ingredients in the plan as it is now. Only rows
+     * spelled like a touched name or like one of the swapped ingredients are read, so the
+     * cost follows the size of the change rather than of the plan.
+     */
+    private Map<String, List<ShoppingListAggregator.Amount>> plannedAmounts(Long mealPlanId, Set<String> touched,
+                                                                         List<String> swappedNames) {
+        Set<String> spellings = new HashSet<>();
+        for (String name : touched) {
+            spellings.add(name);
+            spellings.add(IngredientCategorizer.plural(name));
+        }
+        for (String name : swappedNames) {
+            if (name != null) {
+                spellings.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        ShoppingListAggregator.Totals totals = aggregator.totals();
+        for (IngredientLine line : mealPlanItemRepository.findIngredientLinesByNames(mealPlanId, spellings)) {
+            if (line.name() != null && touched.contains(ShoppingListAggregator.normalizeName(line.name()))) {
+                totals.add(line.name(), line.quantity(), line.unit());
+            }
+        }
+        return totals.amounts().stream()
+            .collect(Collectors.groupingBy(ShoppingListAggregator.Amount::name));
+    }
+
+    private void publish(List<ShoppingListItem> changed, List<ShoppingListItem> emptied) {
+        changed.stream()
+            .collect(Collectors.groupingBy(item -> item.getShoppingList().getId()))
+            .forEach((listId, items) -> eventPublisher.publishEvent(ShoppingListDelta.upsert(listId, items)));
+        emptied.stream()
+            .collect(Collectors.groupingBy(item -> item.getShoppingList().getId(),
+                Collectors.mapping(ShoppingListItem::getId, Collectors.toList())))
+            .forEach((listId, ids) -> eventPublisher.publishEvent(ShoppingListDelta.deleted(listId, ids)));
+    }
+
+    /**
+     * Move the ingredient's items by the change of the plan's rounded total. Each amount goes
+     * to the first item whose unit it converts to; an item changes by what its planned amount
+     * rounds up to now minus what it rounded up to before the swap, so a quantity the user
+     * raised or lowered keeps that offset. Items left with nothing are removed, changes no
+     * item takes become new items, and existing items keep their checked state.
+     */
+    private void adjust(ShoppingList shoppingList, String name, List<ShoppingListItem> items,
+                        List<ShoppingListAggregator.Amount> planned, List<ShoppingListAggregator.Amount> changes,
+                        List<ShoppingListItem> changed, List<ShoppingListItem> emptied) {
+        double[] now = new double[items.size()];
+        double[] change = new double[items.size()];
+        for (ShoppingListAggregator.Amount amount : planned) {
+            int index = itemFor(items, amount);
+            if (index >= 0) {
+                now[index] += aggregator.convert(amount, items.get(index).getUnit());
+            }
+        }
+        for (ShoppingListAggregator.Amount amount : changes) {
+            int index = itemFor(items, amount);
+            if (index >= 0) {
+                change[index] += aggregator.convert(amount, items.get(index).getUnit());
+            } else if (amount.amount() > 1e-9) {
+                changed.add(newItem(shoppingList, planned.stream()
+                    .filter(total -> total.base().equals(amount.base()) && total.amount() > 1e-9)
+                    .findFirst()
+                    .orElse(amount)));
+            }
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            if (Math.abs(change[i]) <= 1e-9) {
+                continue;
+            }
+            ShoppingListItem item = items.get(i);
+            BigDecimal step = rounded(name, item.getUnit(), now[i])
+                .subtract(rounded(name, item.getUnit(), now[i] - change[i]));
+            BigDecimal quantity = item.getQuantity().add(step);
+            if (quantity.signum() > 0) {
+                item.setQuantity(quantity);
+                changed.add(item);
+            } else {
+                emptied.add(item);
+            }
+        }
+    }
+
+    private int itemFor(List<ShoppingListItem> items, ShoppingListAggregator.Amount amount) {
+        for (int i = 0; i < items.size(); i++) {
+            if (aggregator.convert(amount, items.get(i).getUnit()) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private BigDecimal rounded(String name, String unit, double quantity) {
+        return quantity > 1e-9 ? aggregator.roundUp(name, unit, quantity) : BigDecimal.ZERO;
+    }
+
+    private ShoppingListItem newItem(ShoppingList shoppingList, ShoppingListAggregator.Amount amount) {
+        ShoppingListAggregator.Line line = aggregator.toLine(amount);
+        ShoppingListItem item = new ShoppingListItem();
+        item.setShoppingList(shoppingList);
+        item.setIngredientName(line.name());
+        item.setQuantity(line.quantity());
+        item.setUnit(line.unit());
+        item.setIsChecked(false);
+        item.setCategory(categorizer.categorize(line.name()));
+        return item;
+    }
+}
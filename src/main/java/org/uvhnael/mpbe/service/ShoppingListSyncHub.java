@@ -0,0 +1,218 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process fan-out of shopping list changes to SSE subscribers. Deltas are published by
+ * the item services and delivered here after their transaction commits; each subscriber
+ * gets them through its own bounded buffer, drained on syncTaskExecutor, so a slow client
+ * never blocks the writer or the other subscribers. A subscriber whose buffer overflows
+ * loses its backlog and receives a "resync" event telling it to reload the list.
+ * <p>
+ * Sends are blocking writes that cannot be interrupted, so each subscriber has a send
+ * deadline (shopping-list.sync.send-timeout-ms): a subscriber whose send has not returned
+ * by then is dropped from the fan-out and its backlog discarded, so nothing more is queued
+ * or drained for it. When the stuck write finally returns, its stream is completed and the
+ * client reconnects and reloads the list.
+ */
+@Slf4j
+@Component
+public class ShoppingListSyncHub {
+
+    public static final String RESYNC = ShoppingListDelta.RESYNC;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+    private final LongSupplier clock;
+
+    private final Counter delivered;
+    private final Counter overflows;
+    private final Counter stalls;
+
+    @Autowired
+    public ShoppingListSyncHub(@Qualifier("syncTaskExecutor") Executor syncTaskExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${shopping-list.sync.buffer-size:64}") int bufferSize,
+                               @Value("${shopping-list.sync.timeout-ms:1800000}") long timeoutMs,
+                               @Value("${shopping-list.sync.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this(syncTaskExecutor, meterRegistry, bufferSize, timeoutMs, sendTimeoutMs, System::nanoTime);
+    }
+
+    ShoppingListSyncHub(Executor syncTaskExecutor, MeterRegistry meterRegistry, int bufferSize, long timeoutMs,
+                        long sendTimeoutMs, LongSupplier clock) {
+        this.executor = syncTaskExecutor;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.clock = clock;
+
+        this.delivered = Counter.builder("shopping-list.sync.events").tag("result", "delivered").register(meterRegistry);
+        this.overflows = Counter.builder("shopping-list.sync.events").tag("result", "overflow").register(meterRegistry);
+        this.stalls = Counter.builder("shopping-list.sync.events").tag("result", "stalled").register(meterRegistry);
+        Gauge.builder("shopping-list.sync.subscribers", this, ShoppingListSyncHub::subscriberCount)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Open a stream of the list's changes; it starts with a "subscribed" comment
+     */
+    public SseEmitter subscribe(Long shoppingListId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        register(shoppingListId, emitter);
+        return emitter;
+    }
+
+    void register(Long shoppingListId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(shoppingListId, emitter);
+        subscribers.compute(shoppingListId, (id, listeners) -> {
+            Set<Subscriber> updated = listeners != null ? listeners : ConcurrentHashMap.newKeySet();
+            updated.add(subscriber);
+            return updated;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscriber.offer(SseEmitter.event().comment("subscribed"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDelta(ShoppingListDelta delta) {
+        if (delta.ids().isEmpty() && delta.items().isEmpty() && !RESYNC.equals(delta.type())) {
+            return;
+        }
+        Set<Subscriber> listeners = subscribers.get(delta.shoppingListId());
+        if (listeners == null) {
+            return;
+        }
+        for (Subscriber subscriber : listeners) {
+            subscriber.offer(SseEmitter.event().name(delta.type()).data(delta));
+        }
+    }
+
+    /**
+     * Keep idle connections open through proxies that cut silent streams
+     */
+    @Scheduled(fixedDelayString = "${shopping-list.sync.heartbeat-ms:25000}")
+    public void heartbeat() {
+        subscribers.values().forEach(listeners -> listeners.forEach(subscriber ->
+            subscriber.offer(SseEmitter.event().comment("heartbeat"))));
+    }
+
+    /**
+     * Drop subscribers whose current send has outlived the send deadline
+     */
+    @Scheduled(fixedDelayString = "${shopping-list.sync.send-timeout-ms:10000}")
+    public void dropStalledSubscribers() {
+        long now = clock.getAsLong();
+        subscribers.values().forEach(listeners -> listeners.forEach(subscriber -> {
+            long started = subscriber.sendStarted;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                log.debug("Shopping list {} subscriber stopped reading, dropping it", subscriber.shoppingListId);
+                stalls.increment();
+                subscriber.stalled = true;
+                subscriber.close();
+            }
+        }));
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private final class Subscriber {
+
+        private final Long shoppingListId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean stalled;
+        // clock time at which the send in progress started, 0 when none is
+        private volatile long sendStarted;
+
+        private Subscriber(Long shoppingListId, SseEmitter emitter) {
+            this.shoppingListId = shoppingListId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Too far behind: drop the backlog, the client reloads the list instead
+                buffer.clear();
+                buffer.offer(SseEmitter.event().name(RESYNC).data(ShoppingListDelta.resync(shoppingListId)));
+                overflows.increment();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = buffer.poll()) != null) {
+                    sendStarted = clock.getAsLong();
+                    emitter.send(event);
+                    sendStarted = 0;
+                    delivered.increment();
+                }
+                if (stalled) {
+                    // Dropped while this send was stuck; end the stream so the client reconnects
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                sendStarted = 0;
+                log.debug("Shopping list {} subscriber disconnected: {}", shoppingListId, e.getMessage());
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // An event offered after the last poll but before the flag was reset
+            if (!closed && !buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        void close() {
+            closed = true;
+            buffer.clear();
+            subscribers.computeIfPresent(shoppingListId, (id, listeners) -> {
+                listeners.remove(this);
+                return listeners.isEmpty() ? null : listeners;
+            });
+        }
+    }
+}
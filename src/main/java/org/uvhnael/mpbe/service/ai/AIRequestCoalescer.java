@@ -0,0 +1,63 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical AI requests: while a call for a key is in flight,
+ * concurrent callers with the same key wait for that call and share its result
+ * instead of making their own Gemini round-trip.
+ */
+@Component
+public class AIRequestCoalescer {
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCalls;
+    private final Counter sharedCalls;
+
+    public AIRequestCoalescer(MeterRegistry meterRegistry) {
+        this.leaderCalls = Counter.builder("ai.coalescer.calls").tag("result", "leader").register(meterRegistry);
+        this.sharedCalls = Counter.builder("ai.coalescer.calls").tag("result", "shared").register(meterRegistry);
+        Gauge.builder("ai.coalescer.in-flight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Return the in-flight future for the key, or start the call and share its future
+     * with every caller that arrives before it completes
+     */
+    public CompletableFuture<String> execute(String key, Supplier<CompletableFuture<String>> call) {
+        CompletableFuture<String> leader = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, leader);
+
+        if (existing != null) {
+            sharedCalls.increment();
+            return existing;
+        }
+
+        leaderCalls.increment();
+        CompletableFuture<String> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, leader);
+            if (error != null) {
+                leader.completeExceptionally(error);
+            } else {
+                leader.complete(value);
+            }
+        });
+        return leader;
+    }
+}
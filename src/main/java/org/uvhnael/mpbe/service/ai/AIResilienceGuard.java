@@ -0,0 +1,354 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.exception.AIServiceUnavailableException;
+
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Protects the service from a slow or rate-limiting Gemini API:
+ * <ul>
+ *   <li>circuit breaker - after consecutive failures calls fail fast until a single trial call
+ *       (the probe) succeeds; only the probe's outcome decides whether the circuit closes</li>
+ *   <li>bulkhead - hard cap on in-flight calls plus a bounded wait queue; a queued call fails
+ *       once it has waited gemini.resilience.bulkhead.max-wait-ms for a permit</li>
+ *   <li>adaptive limit - AIMD: grows by 1/limit per fast success, halves on 429s, timeouts and slow calls</li>
+ * </ul>
+ * Calls that cannot be admitted fail immediately with AIServiceUnavailableException.
+ */
+@Slf4j
+@Component
+public class AIResilienceGuard {
+
+    enum CircuitState { CLOSED, HALF_OPEN, OPEN }
+
+    private record PendingCall(Supplier<CompletableFuture<String>> call, CompletableFuture<String> result) {}
+
+    private enum Admission { REJECTED, ADMITTED, PROBE }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    private final double minLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final Deque<PendingCall> waiting = new ArrayDeque<>();
+
+    // Guarded by this
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+    private int inFlight;
+    private double limit;
+
+    private final Counter successCalls;
+    private final Counter failedCalls;
+    private final Counter throttledCalls;
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+    private final Counter queueTimeouts;
+
+    public AIResilienceGuard(MeterRegistry meterRegistry,
+                             @Value("${gemini.resilience.breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${gemini.resilience.breaker.open-ms:30000}") long openMillis,
+                             @Value("${gemini.resilience.bulkhead.max-concurrent:32}") int maxConcurrent,
+                             @Value("${gemini.resilience.bulkhead.max-queued:64}") int maxQueued,
+                             @Value("${gemini.resilience.bulkhead.max-wait-ms:10000}") long maxWaitMillis,
+                             @Value("${gemini.resilience.limit.initial:8}") int initialLimit,
+                             @Value("${gemini.resilience.limit.min:1}") int minLimit,
+                             @Value("${gemini.resilience.limit.latency-threshold-ms:20000}") long latencyThresholdMs,
+                             @Value("${gemini.resilience.limit.backoff-ratio:0.5}") double backoffRatio) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.minLimit = Math.max(1, minLimit);
+        this.latencyThresholdNanos = latencyThresholdMs * 1_000_000;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, maxConcurrent));
+
+        this.successCalls = Counter.builder("ai.resilience.calls").tag("result", "success").register(meterRegistry);
+        this.failedCalls = Counter.builder("ai.resilience.calls").tag("result", "failure").register(meterRegistry);
+        this.throttledCalls = Counter.builder("ai.resilience.calls").tag("result", "throttled").register(meterRegistry);
+        this.circuitRejections = Counter.builder("ai.resilience.rejected").tag("reason", "circuit-open")
+            .register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("ai.resilience.rejected").tag("reason", "bulkhead")
+            .register(meterRegistry);
+        this.queueTimeouts = Counter.builder("ai.resilience.rejected").tag("reason", "queue-timeout")
+            .register(meterRegistry);
+        Gauge.builder("ai.resilience.limit", this, guard -> guard.currentLimit()).register(meterRegistry);
+        Gauge.builder("ai.resilience.in-flight", this, guard -> guard.inFlight()).register(meterRegistry);
+        Gauge.builder("ai.resilience.queued", this, guard -> guard.queued()).register(meterRegistry);
+        Gauge.builder("ai.resilience.circuit.state", this, guard -> guard.circuitState().ordinal())
+            .description("0 = closed, 1 = half-open, 2 = open")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start the call when a permit is free, queue it when the wait queue has room,
+     * otherwise fail fast without touching Gemini
+     */
+    public CompletableFuture<String> execute(Supplier<CompletableFuture<String>> call) {
+        PendingCall pending = new PendingCall(call, new CompletableFuture<>());
+        boolean probe;
+        synchronized (this) {
+            Admission admission = admit();
+            if (admission == Admission.REJECTED) {
+                circuitRejections.increment();
+                return CompletableFuture.failedFuture(circuitOpen());
+            }
+            if (inFlight >= permits() && waiting.size() >= maxQueued) {
+                releaseTrial(admission);
+                bulkheadRejections.increment();
+                return CompletableFuture.failedFuture(
+                    new AIServiceUnavailableException("Too many concurrent AI requests, please retry shortly"));
+            }
+            if (inFlight >= permits()) {
+                // A queued call is never the probe: the queue is flushed while the circuit is not closed
+                releaseTrial(admission);
+                waiting.add(pending);
+                CompletableFuture.delayedExecutor(maxWaitMillis, TimeUnit.MILLISECONDS)
+                    .execute(() -> expire(pending));
+                return pending.result();
+            }
+            inFlight++;
+            probe = admission == Admission.PROBE;
+        }
+        start(pending, probe);
+        return pending.result();
+    }
+
+    /**
+     * Run a blocking call (e.g. a streamed response) under the breaker and bulkhead.
+     * Long-running streams are not queued and do not feed the latency signal.
+     */
+    public void executeBlocking(Runnable call) {
+        boolean probe;
+        synchronized (this) {
+            Admission admission = admit();
+            if (admission == Admission.REJECTED) {
+                circuitRejections.increment();
+                throw circuitOpen();
+            }
+            if (inFlight >= permits()) {
+                releaseTrial(admission);
+                bulkheadRejections.increment();
+                throw new AIServiceUnavailableException("Too many concurrent AI requests, please retry shortly");
+            }
+            inFlight++;
+            probe = admission == Admission.PROBE;
+        }
+
+        Throwable error = null;
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            onComplete(-1, error, probe);
+        }
+    }
+
+    synchronized double currentLimit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return waiting.size();
+    }
+
+    synchronized CircuitState circuitState() {
+        return state;
+    }
+
+    private void start(PendingCall pending, boolean probe) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<String> future;
+        try {
+            future = pending.call().get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            onComplete(System.nanoTime() - startedAt, cause, probe);
+            if (cause != null) {
+                pending.result().completeExceptionally(cause);
+            } else {
+                pending.result().complete(value);
+            }
+        });
+    }
+
+    /**
+     * Fail a call that is still waiting for a permit after max-wait-ms
+     */
+    private void expire(PendingCall pending) {
+        synchronized (this) {
+            if (!waiting.remove(pending)) {
+                return;
+            }
+        }
+        queueTimeouts.increment();
+        pending.result().completeExceptionally(new AIServiceUnavailableException(
+            "Timed out waiting for a free AI request slot, please retry shortly"));
+    }
+
+    /**
+     * Record the outcome and hand freed permits to queued calls
+     */
+    private void onComplete(long latencyNanos, Throwable error, boolean probe) {
+        List<PendingCall> toStart = new ArrayList<>();
+        List<PendingCall> toReject = new ArrayList<>();
+
+        synchronized (this) {
+            inFlight--;
+            recordOutcome(latencyNanos, error, probe);
+
+            if (state != CircuitState.CLOSED) {
+                toReject.addAll(waiting);
+                waiting.clear();
+            }
+            while (!waiting.isEmpty() && inFlight < permits()) {
+                inFlight++;
+                toStart.add(waiting.poll());
+            }
+        }
+
+        toReject.forEach(pending -> pending.result().completeExceptionally(circuitOpen()));
+        toStart.forEach(pending -> start(pending, false));
+    }
+
+    // Called with the lock held
+    private void recordOutcome(long latencyNanos, Throwable error, boolean probe) {
+        boolean throttled = isThrottled(error);
+        boolean failed = error != null && countsAsFailure(error);
+        boolean slow = latencyNanos > latencyThresholdNanos;
+
+        if (throttled || slow) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (error == null && latencyNanos >= 0) {
+            limit = Math.min(maxConcurrent, limit + 1.0 / limit);
+        }
+
+        if (error == null) {
+            successCalls.increment();
+        } else if (throttled) {
+            throttledCalls.increment();
+        } else {
+            failedCalls.increment();
+        }
+
+        if (probe) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                log.info("Gemini circuit breaker closed after successful trial call");
+                state = CircuitState.CLOSED;
+                consecutiveFailures = 0;
+            }
+            return;
+        }
+        if (state != CircuitState.CLOSED) {
+            // Calls started before the circuit opened say nothing about the trial
+            return;
+        }
+
+        if (!failed) {
+            consecutiveFailures = 0;
+        } else if (++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    // Called with the lock held
+    private Admission admit() {
+        if (state == CircuitState.OPEN) {
+            if (System.currentTimeMillis() < openUntil) {
+                return Admission.REJECTED;
+            }
+            state = CircuitState.HALF_OPEN;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (trialInFlight) {
+                return Admission.REJECTED;
+            }
+            trialInFlight = true;
+            return Admission.PROBE;
+        }
+        return Admission.ADMITTED;
+    }
+
+    // A probe that was not started must not block the next one
+    private void releaseTrial(Admission admission) {
+        if (admission == Admission.PROBE) {
+            trialInFlight = false;
+        }
+    }
+
+    private void open() {
+        log.warn("Gemini circuit breaker opened for {}ms after {} consecutive failures",
+            openMillis, consecutiveFailures);
+        state = CircuitState.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+    }
+
+    private int permits() {
+        return Math.min(maxConcurrent, (int) limit);
+    }
+
+    private AIServiceUnavailableException circuitOpen() {
+        return new AIServiceUnavailableException("AI service is temporarily unavailable, please retry shortly");
+    }
+
+    private static boolean isThrottled(Throwable error) {
+        if (error instanceof AIServiceException serviceException && serviceException.getStatusCode() == 429) {
+            return true;
+        }
+        Throwable cause = error != null ? error.getCause() : null;
+        return error instanceof TimeoutException || cause instanceof TimeoutException
+            || cause instanceof HttpTimeoutException;
+    }
+
+    /**
+     * Client errors such as a malformed prompt say nothing about Gemini's health
+     */
+    private static boolean countsAsFailure(Throwable error) {
+        if (error instanceof AIServiceException serviceException) {
+            int status = serviceException.getStatusCode();
+            return status == 0 || status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,232 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.util.Hashing;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed cache of Gemini responses. Keys are hashes of the normalized inputs
+ * that shape a prompt, so users sharing a profile archetype share one response.
+ * An in-memory LRU tier with TTL sits in front of an optional disk tier that survives restarts.
+ */
+@Slf4j
+@Component
+public class AIResponseCache {
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Path diskDir;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public AIResponseCache(MeterRegistry meterRegistry,
+                           @Value("${gemini.cache.enabled:true}") boolean enabled,
+                           @Value("${gemini.cache.ttl-minutes:1440}") long ttlMinutes,
+                           @Value("${gemini.cache.max-entries:1000}") int maxEntries,
+                           @Value("${gemini.cache.disk-dir:}") String diskDir) {
+        this.enabled = enabled;
+        this.ttlMillis = Duration.ofMinutes(ttlMinutes).toMillis();
+        this.maxEntries = maxEntries;
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                boolean evict = size() > AIResponseCache.this.maxEntries;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+
+        this.memoryHits = Counter.builder("ai.cache.requests").tag("result", "hit").tag("tier", "memory")
+            .register(meterRegistry);
+        this.diskHits = Counter.builder("ai.cache.requests").tag("result", "hit").tag("tier", "disk")
+            .register(meterRegistry);
+        this.misses = Counter.builder("ai.cache.requests").tag("result", "miss").tag("tier", "none")
+            .register(meterRegistry);
+        this.evictions = Counter.builder("ai.cache.evictions").register(meterRegistry);
+        Gauge.builder("ai.cache.size", this, AIResponseCache::size).register(meterRegistry);
+
+        if (this.diskDir != null) {
+            try {
+                Files.createDirectories(this.diskDir);
+            } catch (IOException e) {
+                log.warn("Cannot create AI cache directory {}: {}", this.diskDir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Build a cache key from the profile fields that go into profile-based prompts
+     */
+    public static String key(String operation, UserProfile profile, int days) {
+        return key(operation,
+            String.valueOf(days),
+            normalize(profile.getGoal()),
+            normalize(profile.getDietaryPreference()),
+            normalizeAllergies(profile.getAllergies()),
+            normalizeBudget(profile.getBudgetPerMeal()),
+            normalize(profile.getActivityLevel()));
+    }
+
+    /**
+     * Build a cache key from an operation name and its free-form inputs
+     */
+    public static String key(String operation, String... parts) {
+        StringBuilder raw = new StringBuilder(operation);
+        for (String part : parts) {
+            raw.append('\u001f').append(part);
+        }
+        return Hashing.sha256(raw.toString());
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    memoryHits.increment();
+                    return Optional.of(entry.value());
+                }
+                entries.remove(key);
+            }
+        }
+
+        Optional<String> fromDisk = readDisk(key, now);
+        if (fromDisk.isPresent()) {
+            diskHits.increment();
+            synchronized (entries) {
+                entries.put(key, new CacheEntry(fromDisk.get(), now + ttlMillis));
+            }
+            return fromDisk;
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String key, String value) {
+        if (!enabled || value == null) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(value, System.currentTimeMillis() + ttlMillis));
+        }
+        writeDisk(key, value);
+    }
+
+    /**
+     * Drop the entry from both tiers, e.g. when a cached response turns out to be unusable
+     */
+    public void evict(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+        if (diskDir != null) {
+            try {
+                Files.deleteIfExists(diskDir.resolve(key));
+            } catch (IOException e) {
+                log.warn("Failed to delete AI cache entry {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Optional<String> readDisk(String key, long now) {
+        if (diskDir == null) {
+            return Optional.empty();
+        }
+
+        Path file = diskDir.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            if (Files.getLastModifiedTime(file).toMillis() + ttlMillis <= now) {
+                Files.deleteIfExists(file);
+                return Optional.empty();
+            }
+            return Optional.of(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Failed to read AI cache entry {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void writeDisk(String key, String value) {
+        if (diskDir == null) {
+            return;
+        }
+
+        try {
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.writeString(tmp, value, StandardCharsets.UTF_8);
+            Files.move(tmp, diskDir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write AI cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeAllergies(String allergies) {
+        if (allergies == null) {
+            return "";
+        }
+        return Arrays.stream(allergies.toLowerCase(Locale.ROOT).split("[,;]"))
+            .map(String::trim)
+            .filter(a -> !a.isEmpty() && !a.equals("none"))
+            .distinct()
+            .sorted()
+            .collect(Collectors.joining(","));
+    }
+
+    private static String normalizeBudget(BigDecimal budget) {
+        return budget == null ? "" : budget.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private record CacheEntry(String value, long expiresAt) {
+    }
+}
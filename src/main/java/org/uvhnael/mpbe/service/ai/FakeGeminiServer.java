@@ -0,0 +1,275 @@
+package org.uvhnael.mpbe.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Gemini API used for load and latency testing without touching Google.
+ * Serves templated generateContent and streamGenerateContent (SSE) responses on any
+ * models/*:generateContent path, with a log-normal latency distribution, a random
+ * server error rate and periodic bursts of 429s. Each request draws from its own random
+ * source, seeded from the settings seed and the request's sequence number, so a given
+ * settings object replays the same latencies and errors for the n-th request however
+ * requests interleave across threads.
+ */
+@Slf4j
+public class FakeGeminiServer {
+
+    /**
+     * @param latencyMedianMs median response latency; 0 disables the delay
+     * @param latencyP99Ms    99th percentile latency; at or below the median the latency is fixed
+     * @param errorRate       probability (0-1) of answering with HTTP 500
+     * @param throttleEvery   every this many requests a burst of 429s starts; 0 disables throttling
+     * @param throttleLength  number of consecutive requests rejected with 429 in each burst
+     * @param streamChunks    number of SSE events a streamed response is split into
+     */
+    public record Settings(int port, long latencyMedianMs, long latencyP99Ms, double errorRate,
+                           int throttleEvery, int throttleLength, int streamChunks, long seed) {
+
+        public static Settings instant() {
+            return new Settings(0, 0, 0, 0, 0, 0, 4, 42);
+        }
+    }
+
+    private static final Pattern DAYS = Pattern.compile("Create a (\\d+)-day meal plan");
+    private static final Pattern DAY_RANGE = Pattern.compile("produce days (\\d+) to (\\d+)");
+    private static final Pattern SINGLE_DAY = Pattern.compile("replaces day (\\d+)");
+    private static final Pattern SUBSTITUTE_FOR = Pattern.compile("substitutes for the cooking ingredient: (.+)");
+    private static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner"};
+    private static final String[] CUISINES = {"Mediterranean", "Asian", "Mexican", "Italian", "American"};
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FakeGeminiServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", settings.port()), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Fake Gemini server listening on port {}", getPort());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Value for gemini.api.url pointing at this server
+     */
+    public String getApiUrl() {
+        return "http://localhost:" + getPort() + "/v1beta/models/fake-gemini:generateContent";
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long sequence = requests.getAndIncrement();
+            SplittableRandom random = new SplittableRandom(settings.seed() + sequence);
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod())
+                    || !(path.endsWith(":generateContent") || path.endsWith(":streamGenerateContent"))) {
+                respond(exchange, 404, "{\"error\":{\"code\":404,\"message\":\"Not found\"}}");
+                return;
+            }
+
+            sleep(nextLatency(random));
+
+            if (settings.throttleEvery() > 0 && sequence % settings.throttleEvery() < settings.throttleLength()) {
+                respond(exchange, 429, "{\"error\":{\"code\":429,\"status\":\"RESOURCE_EXHAUSTED\"}}");
+                return;
+            }
+            if (random.nextDouble() < settings.errorRate()) {
+                respond(exchange, 500, "{\"error\":{\"code\":500,\"status\":\"INTERNAL\"}}");
+                return;
+            }
+
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String prompt = request.at("/contents/0/parts/0/text").asText("");
+            String text = responseText(prompt);
+
+            if (path.endsWith(":streamGenerateContent")) {
+                stream(exchange, text, random);
+            } else {
+                respond(exchange, 200, objectMapper.writeValueAsString(candidate(text)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Fake Gemini server failed to handle request", e);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String text, SplittableRandom random) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+
+        int chunks = Math.max(1, settings.streamChunks());
+        int chunkSize = Math.max(1, (text.length() + chunks - 1) / chunks);
+        OutputStream body = exchange.getResponseBody();
+        for (int start = 0; start < text.length(); start += chunkSize) {
+            String fragment = text.substring(start, Math.min(text.length(), start + chunkSize));
+            body.write(("data: " + objectMapper.writeValueAsString(candidate(fragment)) + "\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            sleep(nextLatency(random) / chunks);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private Map<String, Object> candidate(String text) {
+        return Map.of("candidates", List.of(
+            Map.of("content", Map.of("parts", List.of(Map.of("text", text))))
+        ));
+    }
+
+    /**
+     * A meal plan shaped like the real answer for meal plan prompts, a shopping list for
+     * shopping list prompts, substitutes for substitution prompts and an empty object otherwise
+     */
+    private String responseText(String prompt) throws IOException {
+        Matcher substitute = SUBSTITUTE_FOR.matcher(prompt);
+        if (substitute.find()) {
+            return objectMapper.writeValueAsString(substitutes(substitute.group(1).strip()));
+        }
+        Matcher days = DAYS.matcher(prompt);
+        if (!days.find()) {
+            return prompt.contains("shopping list") ? objectMapper.writeValueAsString(shoppingList()) : "{}";
+        }
+
+        int firstDay = 1;
+        int lastDay = Integer.parseInt(days.group(1));
+        Matcher range = DAY_RANGE.matcher(prompt);
+        Matcher single = SINGLE_DAY.matcher(prompt);
+        if (range.find()) {
+            firstDay = Integer.parseInt(range.group(1));
+            lastDay = Integer.parseInt(range.group(2));
+        } else if (single.find()) {
+            firstDay = Integer.parseInt(single.group(1));
+            lastDay = firstDay;
+        }
+
+        List<Map<String, Object>> planDays = new ArrayList<>();
+        for (int day = firstDay; day <= lastDay; day++) {
+            List<Map<String, Object>> meals = new ArrayList<>();
+            for (String type : MEAL_TYPES) {
+                meals.add(meal(day, type));
+            }
+            Map<String, Object> planDay = new LinkedHashMap<>();
+            planDay.put("day", day);
+            planDay.put("meals", meals);
+            planDays.add(planDay);
+        }
+        return objectMapper.writeValueAsString(Map.of("days", planDays));
+    }
+
+    private Map<String, Object> meal(int day, String type) {
+        String cuisine = CUISINES[(day - 1) % CUISINES.length];
+        Map<String, Object> meal = new LinkedHashMap<>();
+        meal.put("type", type);
+        meal.put("name", cuisine + " " + type + " day " + day);
+        meal.put("description", "Generated by the fake Gemini server");
+        meal.put("cuisineType", cuisine);
+        meal.put("prepTime", 10);
+        meal.put("cookTime", 20);
+        meal.put("servings", 1);
+        meal.put("difficulty", "easy");
+        meal.put("imageUrl", "https://via.placeholder.com/400x300");
+        meal.put("ingredients", List.of(
+            ingredient("rice", 150, "g", 195),
+            ingredient("chicken breast", 120, "g", 198),
+            ingredient("olive oil", 1, "tbsp", 119)
+        ));
+        meal.put("instructions", "1. Prepare ingredients\n2. Cook\n3. Serve");
+        meal.put("nutrition", Map.of("calories", "512", "protein", "38", "carbs", "45", "fat", "18"));
+        return meal;
+    }
+
+    private Map<String, Object> ingredient(String name, int quantity, String unit, int calories) {
+        return Map.of("name", name, "quantity", quantity, "unit", unit,
+            "calories", calories, "protein", 10, "carbs", 10, "fat", 5);
+    }
+
+    private List<Map<String, Object>> shoppingList() {
+        return List.of(
+            Map.of("name", "rice", "quantity", 1, "unit", "kg", "category", "Grains & Bakery"),
+            Map.of("name", "chicken breast", "quantity", 0.8, "unit", "kg", "category", "Meat & Seafood")
+        );
+    }
+
+    private List<Map<String, Object>> substitutes(String ingredient) {
+        return List.of(
+            Map.of("name", "plant-based " + ingredient, "ratio", "1:1",
+                "reason", "Generated by the fake Gemini server", "tags", List.of("vegan", "dairy-free", "egg-free")),
+            Map.of("name", "light " + ingredient, "ratio", "1:1",
+                "reason", "Generated by the fake Gemini server", "tags", List.of("low-fat"))
+        );
+    }
+
+    private long nextLatency(SplittableRandom random) {
+        if (settings.latencyMedianMs() <= 0) {
+            return 0;
+        }
+        if (settings.latencyP99Ms() <= settings.latencyMedianMs()) {
+            return settings.latencyMedianMs();
+        }
+        double mu = Math.log(settings.latencyMedianMs());
+        double sigma = (Math.log(settings.latencyP99Ms()) - mu) / Z_99;
+        return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
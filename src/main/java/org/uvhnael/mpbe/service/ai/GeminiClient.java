@@ -0,0 +1,255 @@
+package org.uvhnael.mpbe.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uvhnael.mpbe.dto.ai.GeminiResponse;
+import org.uvhnael.mpbe.exception.AIServiceException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking Gemini client on top of the JDK HttpClient, which keeps pooled keep-alive
+ * connections, negotiates HTTP/2 and enforces connect and per-request deadlines.
+ */
+@Slf4j
+@Component
+public class GeminiClient {
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String apiKey;
+    private final String apiUrl;
+
+    public GeminiClient(ObjectMapper objectMapper,
+                        @Value("${gemini.api.key}") String apiKey,
+                        @Value("${gemini.api.url}") String apiUrl,
+                        @Value("${gemini.http.connect-timeout-ms:5000}") long connectTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    /**
+     * Call generateContent. The future completes with the generated text or fails with
+     * AIServiceException, including when the deadline passes.
+     */
+    public CompletableFuture<String> generateContent(String prompt, Duration deadline) {
+        return generateContent(prompt, deadline, null);
+    }
+
+    /**
+     * Call generateContent in JSON mode: with a response schema Gemini returns bare JSON
+     * matching it, with no markdown fences or prose around it
+     */
+    public CompletableFuture<String> generateContent(String prompt, Duration deadline,
+                                                     Map<String, Object> responseSchema) {
+        HttpRequest request = buildRequest(apiUrl + "?key=" + apiKey, prompt, deadline, responseSchema);
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS)
+            .handle((response, error) -> {
+                if (error != null) {
+                    throw toServiceException(error);
+                }
+                checkStatus(response.statusCode(), response.body());
+
+                String text = parse(response.body()).firstText();
+                if (text == null) {
+                    throw new AIServiceException("No response from Gemini API");
+                }
+                return text;
+            });
+    }
+
+    /**
+     * Call streamGenerateContent over SSE, passing every text fragment to the consumer on the
+     * calling thread. Blocks until the stream ends or the deadline passes; the deadline holds
+     * even when the upstream stalls mid-stream, in which case the exchange is cancelled. The
+     * response schema is optional, as for generateContent.
+     */
+    public void streamGenerateContent(String prompt, Duration deadline, Map<String, Object> responseSchema,
+                                      Consumer<String> onText) {
+        String url = apiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse&key=" + apiKey;
+        HttpRequest request = buildRequest(url, prompt, deadline, responseSchema);
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+
+        LineQueue lines = new LineQueue();
+        AtomicInteger statusCode = new AtomicInteger();
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient
+            .sendAsync(request, info -> {
+                statusCode.set(info.statusCode());
+                return HttpResponse.BodySubscribers.fromLineSubscriber(lines);
+            })
+            .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        // Failures before the body starts (connect, headers timeout) never reach the line subscriber
+        exchange.whenComplete((response, error) -> {
+            if (error != null) {
+                lines.onError(error);
+            }
+        });
+
+        try {
+            List<String> errorBody = new ArrayList<>();
+            String line;
+            while ((line = lines.next(deadlineAt, deadline)) != null) {
+                if (statusCode.get() / 100 != 2) {
+                    errorBody.add(line);
+                } else if (line.startsWith("data:")) {
+                    String text = parse(line.substring(5).trim()).firstText();
+                    if (text != null) {
+                        onText.accept(text);
+                    }
+                }
+            }
+            checkStatus(statusCode.get(), String.join("\n", errorBody));
+        } finally {
+            // Closes the body stream on every early exit, including a stalled upstream
+            lines.cancel();
+            exchange.cancel(true);
+        }
+    }
+
+    /**
+     * Lines of a streamed body, handed from the client's threads to the caller. next() waits
+     * for at most the time left before the deadline, however long the upstream is silent.
+     */
+    private final class LineQueue implements Flow.Subscriber<String> {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            queue.add(line);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            queue.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(END);
+        }
+
+        /**
+         * The next line, or null at the end of the body
+         */
+        String next(long deadlineAt, Duration deadline) {
+            Object item;
+            try {
+                item = queue.poll(deadlineAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AIServiceException("Gemini stream interrupted", e);
+            }
+            if (item == null) {
+                throw new AIServiceException("Gemini stream exceeded deadline of " + deadline.toMillis() + "ms");
+            }
+            if (item instanceof Throwable error) {
+                throw toServiceException(error);
+            }
+            return item == END ? null : (String) item;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private HttpRequest buildRequest(String url, String prompt, Duration deadline, Map<String, Object> responseSchema) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("contents", List.of(
+            Map.of("parts", List.of(
+                Map.of("text", prompt)
+            ))
+        ));
+        if (responseSchema != null) {
+            body.put("generationConfig", Map.of(
+                "responseMimeType", "application/json",
+                "responseSchema", responseSchema
+            ));
+        }
+
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                .timeout(deadline)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+        } catch (JsonProcessingException e) {
+            throw new AIServiceException("Failed to serialize Gemini request", e);
+        }
+    }
+
+    private GeminiResponse parse(String body) {
+        try {
+            return objectMapper.readValue(body, GeminiResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new AIServiceException("Invalid response from Gemini API: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private void checkStatus(int statusCode, String body) {
+        if (statusCode / 100 != 2) {
+            log.warn("Gemini API returned HTTP {}: {}", statusCode, body);
+            throw new AIServiceException("Gemini API returned HTTP " + statusCode, statusCode);
+        }
+    }
+
+    private AIServiceException toServiceException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+            ? error.getCause() : error;
+        if (cause instanceof AIServiceException serviceException) {
+            return serviceException;
+        }
+        if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            return new AIServiceException("Gemini API timed out", cause);
+        }
+        return new AIServiceException("Gemini API request failed: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,74 @@
+package org.uvhnael.mpbe.service.ai;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives Gemini responseSchema objects (the OpenAPI subset accepted by generationConfig)
+ * from the DTO classes the responses are mapped to, so the schema cannot drift from the DTOs.
+ */
+public final class GeminiSchemas {
+
+    private static final Map<Type, Map<String, Object>> CACHE = new ConcurrentHashMap<>();
+
+    private GeminiSchemas() {
+    }
+
+    /**
+     * Schema for a JSON object shaped like the given class
+     */
+    public static Map<String, Object> objectOf(Class<?> type) {
+        return CACHE.computeIfAbsent(type, GeminiSchemas::schemaFor);
+    }
+
+    /**
+     * Schema for a JSON array of objects shaped like the given class
+     */
+    public static Map<String, Object> arrayOf(Class<?> type) {
+        return Map.of("type", "ARRAY", "items", objectOf(type));
+    }
+
+    private static Map<String, Object> schemaFor(Type type) {
+        if (type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() instanceof Class<?> raw
+                && Collection.class.isAssignableFrom(raw)) {
+            return Map.of("type", "ARRAY", "items", schemaFor(parameterized.getActualTypeArguments()[0]));
+        }
+
+        Class<?> clazz = (Class<?>) type;
+        if (clazz == String.class) {
+            return Map.of("type", "STRING");
+        }
+        if (clazz == Integer.class || clazz == int.class || clazz == Long.class || clazz == long.class) {
+            return Map.of("type", "INTEGER");
+        }
+        if (clazz == BigDecimal.class || clazz == Double.class || clazz == double.class) {
+            return Map.of("type", "NUMBER");
+        }
+        if (clazz == Boolean.class || clazz == boolean.class) {
+            return Map.of("type", "BOOLEAN");
+        }
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            properties.put(field.getName(), schemaFor(field.getGenericType()));
+        }
+        return Map.of(
+            "type", "OBJECT",
+            "properties", properties,
+            // Gemini otherwise generates properties alphabetically; keep the DTO's field order
+            "propertyOrdering", new ArrayList<>(properties.keySet())
+        );
+    }
+}
@@ -0,0 +1,27 @@
+package org.uvhnael.mpbe.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashes used for cache keys and content fingerprints
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Lowercase hex SHA-256 of the UTF-8 bytes of the value
+     */
+    public static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
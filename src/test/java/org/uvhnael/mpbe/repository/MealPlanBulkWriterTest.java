@@ -0,0 +1,96 @@
+package org.uvhnael.mpbe.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(MealPlanBulkWriter.class)
+class MealPlanBulkWriterTest {
+    
+    @Autowired
+    private MealPlanBulkWriter bulkWriter;
+    
+    @Autowired
+    private MealPlanRepository mealPlanRepository;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private MealPlanItemRepository mealPlanItemRepository;
+    
+    private Recipe recipe(String name, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setServings(1);
+        recipe.setContentHash(name + "-hash");
+        
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (String ingredientName : ingredientNames) {
+            Ingredient ingredient = new Ingredient();
+            ingredient.setRecipe(recipe);
+            ingredient.setName(ingredientName);
+            ingredient.setQuantity(new BigDecimal("2.5"));
+            ingredient.setUnit("g");
+            ingredients.add(ingredient);
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+    
+    @Test
+    void insertRecipes_AssignsGeneratedIdsToRecipesAndIngredients() {
+        List<Recipe> recipes = List.of(recipe("Oats", "oats", "milk"), recipe("Salad", "lettuce"));
+        
+        bulkWriter.insertRecipes(recipes);
+        
+        assertNotNull(recipes.get(0).getId());
+        assertNotEquals(recipes.get(0).getId(), recipes.get(1).getId());
+        recipes.stream().flatMap(recipe -> recipe.getIngredients().stream())
+            .forEach(ingredient -> assertNotNull(ingredient.getId()));
+        
+        Recipe saved = recipeRepository.findWithIngredientsByIdIn(List.of(recipes.get(0).getId())).get(0);
+        assertEquals(recipes.get(0).getId(), saved.getId());
+        assertEquals(2, saved.getIngredients().size());
+    }
+    
+    @Test
+    void insertMealPlanItems_LinksItemsToPlanAndRecipes() {
+        MealPlan mealPlan = new MealPlan();
+        mealPlan.setName("Test plan");
+        mealPlan = mealPlanRepository.save(mealPlan);
+        Recipe recipe = recipe("Curry", "rice");
+        bulkWriter.insertRecipes(List.of(recipe));
+        
+        List<MealPlanItem> items = new ArrayList<>();
+        for (int day = 1; day <= 3; day++) {
+            MealPlanItem item = new MealPlanItem();
+            item.setMealPlan(mealPlan);
+            item.setRecipe(recipe);
+            item.setDayOfWeek(day);
+            item.setMealType("dinner");
+            items.add(item);
+        }
+        
+        bulkWriter.insertMealPlanItems(items);
+        
+        items.forEach(item -> assertNotNull(item.getId()));
+        assertEquals(3, mealPlanItemRepository.findAll().stream()
+            .filter(item -> item.getRecipe().getId().equals(recipe.getId()))
+            .count());
+    }
+}
@@ -0,0 +1,180 @@
+package org.uvhnael.mpbe.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.projection.MealPlanWindow;
+import org.uvhnael.mpbe.dto.projection.PlannedIngredient;
+import org.uvhnael.mpbe.dto.projection.PlannedMeal;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.model.User;
+import org.uvhnael.mpbe.service.MealPlanService;
+import org.uvhnael.mpbe.service.ShoppingListMaintenanceService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({MealPlanBulkWriter.class, StreamingQueries.class})
+class MealPlanItemRepositoryTest {
+    
+    @Autowired
+    private MealPlanBulkWriter bulkWriter;
+    
+    @Autowired
+    private MealPlanRepository mealPlanRepository;
+    
+    @Autowired
+    private MealPlanItemRepository mealPlanItemRepository;
+    
+    @Autowired
+    private StreamingQueries streamingQueries;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    private User user() {
+        User user = new User();
+        user.setEmail("planner@example.com");
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+    
+    private MealPlan plan(User user, LocalDate start, int days) {
+        MealPlan mealPlan = new MealPlan();
+        mealPlan.setName("Plan from " + start);
+        mealPlan.setUser(user);
+        mealPlan.setStartDate(start);
+        mealPlan.setEndDate(start.plusDays(days - 1));
+        mealPlan = mealPlanRepository.save(mealPlan);
+        
+        List<MealPlanItem> items = new ArrayList<>();
+        for (int day = 1; day <= days; day++) {
+            Recipe recipe = new Recipe();
+            recipe.setName(start + " day " + day);
+            recipe.setServings(1);
+            recipe.setContentHash(start + "-" + day);
+            Ingredient ingredient = new Ingredient();
+            ingredient.setRecipe(recipe);
+            ingredient.setName("rice");
+            ingredient.setQuantity(BigDecimal.valueOf(day));
+            ingredient.setUnit("g");
+            recipe.setIngredients(List.of(ingredient));
+            bulkWriter.insertRecipes(List.of(recipe));
+            
+            MealPlanItem item = new MealPlanItem();
+            item.setMealPlan(mealPlan);
+            item.setRecipe(recipe);
+            item.setDayOfWeek(day);
+            item.setMealType("lunch");
+            items.add(item);
+        }
+        bulkWriter.insertMealPlanItems(items);
+        return mealPlan;
+    }
+    
+    @Test
+    void streamIngredientLines_ReturnsOnlyTheRequestedDays() {
+        MealPlan mealPlan = plan(user(), LocalDate.of(2026, 3, 2), 7);
+        
+        List<IngredientLine> lines;
+        try (Stream<IngredientLine> stream = streamingQueries.streamIngredientLines(mealPlan.getId(), 3, 5)) {
+            lines = stream.toList();
+        }
+        
+        assertEquals(3, lines.size());
+        assertEquals(12, lines.stream().mapToInt(line -> line.quantity().intValue()).sum());
+        assertTrue(lines.stream().allMatch(line -> "rice".equals(line.name()) && "g".equals(line.unit())));
+    }
+    
+    @Test
+    void findPlannedIngredients_ReturnsEveryRowOfThePlanInDayOrder() {
+        User user = user();
+        MealPlan mealPlan = plan(user, LocalDate.of(2026, 3, 2), 3);
+        plan(user, LocalDate.of(2026, 3, 9), 2);
+        
+        List<PlannedIngredient> rows = mealPlanItemRepository.findPlannedIngredients(mealPlan.getId());
+        
+        assertEquals(List.of("2026-03-02 day 1", "2026-03-02 day 2", "2026-03-02 day 3"),
+            rows.stream().map(PlannedIngredient::recipeName).toList());
+        assertEquals(3, rows.stream().map(PlannedIngredient::itemId).distinct().count());
+    }
+    
+    @Test
+    void findWindowsByUserIdOverlapping_FindsPlansTouchingTheRange() {
+        User user = user();
+        MealPlan first = plan(user, LocalDate.of(2026, 3, 2), 7);
+        MealPlan second = plan(user, LocalDate.of(2026, 3, 9), 7);
+        plan(user, LocalDate.of(2026, 3, 23), 7);
+        
+        List<MealPlanWindow> windows = mealPlanRepository.findWindowsByUserIdOverlapping(user.getId(),
+            LocalDate.of(2026, 3, 8), LocalDate.of(2026, 3, 10));
+        
+        assertEquals(List.of(first.getId(), second.getId()),
+            windows.stream().map(MealPlanWindow::id).sorted().toList());
+    }
+    
+    @Test
+    void findPlannedMealsExcludingDay_SkipsTheDayAndKeepsDayOrder() {
+        User user = user();
+        MealPlan mealPlan = plan(user, LocalDate.of(2026, 3, 2), 3);
+        plan(user, LocalDate.of(2026, 3, 9), 3);
+        
+        List<PlannedMeal> meals = mealPlanItemRepository.findPlannedMealsExcludingDay(mealPlan.getId(), 2);
+        
+        assertEquals(List.of(
+                new PlannedMeal(1, "lunch", "2026-03-02 day 1"),
+                new PlannedMeal(3, "lunch", "2026-03-02 day 3")),
+            meals);
+    }
+    
+    @Test
+    void replaceDayMeals_SwapsOnlyTheItemsOfThatDay() {
+        MealPlan mealPlan = plan(user(), LocalDate.of(2026, 3, 2), 3);
+        ShoppingListMaintenanceService maintenance = mock(ShoppingListMaintenanceService.class);
+        MealPlanService mealPlanService = new MealPlanService(mealPlanRepository, mealPlanItemRepository,
+            bulkWriter, maintenance);
+        
+        List<MealPlanItem> newItems = new ArrayList<>();
+        for (String name : List.of("Pancakes", "Soup")) {
+            Recipe recipe = new Recipe();
+            recipe.setName(name);
+            recipe.setServings(1);
+            recipe.setIngredients(List.of());
+            bulkWriter.insertRecipes(List.of(recipe));
+            MealPlanItem item = new MealPlanItem();
+            item.setRecipe(recipe);
+            item.setMealType(name.equals("Soup") ? "dinner" : "breakfast");
+            newItems.add(item);
+        }
+        entityManager.clear();
+        
+        mealPlanService.replaceDayMeals(mealPlan.getId(), 2, newItems);
+        entityManager.flush();
+        entityManager.clear();
+        
+        newItems.forEach(item -> assertNotNull(item.getId()));
+        assertEquals(List.of("Pancakes", "Soup"), mealPlanItemRepository
+            .findByMealPlanIdAndDayOfWeek(mealPlan.getId(), 2).stream()
+            .map(item -> item.getRecipe().getName()).sorted().toList());
+        assertEquals(List.of("2026-03-02 day 1", "2026-03-02 day 3"), mealPlanItemRepository
+            .findPlannedMealsExcludingDay(mealPlan.getId(), 2).stream().map(PlannedMeal::recipeName).toList());
+    }
+}
@@ -0,0 +1,52 @@
+package org.uvhnael.mpbe.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.model.User;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class RecipeRepositoryTest {
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    private User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+    
+    private Recipe recipe(User owner, String contentHash) {
+        Recipe recipe = new Recipe();
+        recipe.setName("Oats");
+        recipe.setServings(1);
+        recipe.setCreatedBy(owner);
+        recipe.setContentHash(contentHash);
+        return recipeRepository.save(recipe);
+    }
+    
+    @Test
+    void findWithIngredientsByCreatedByIdAndContentHashIn_NeverReturnsAnotherUsersRecipe() {
+        User alice = user("alice@example.com");
+        User bob = user("bob@example.com");
+        Recipe alicesOats = recipe(alice, "oats-hash");
+        
+        assertEquals(List.of(alicesOats.getId()), recipeRepository
+            .findWithIngredientsByCreatedByIdAndContentHashIn(alice.getId(), List.of("oats-hash"))
+            .stream().map(Recipe::getId).toList());
+        assertTrue(recipeRepository
+            .findWithIngredientsByCreatedByIdAndContentHashIn(bob.getId(), List.of("oats-hash")).isEmpty());
+    }
+}
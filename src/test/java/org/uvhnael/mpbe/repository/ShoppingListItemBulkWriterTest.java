@@ -0,0 +1,101 @@
+package org.uvhnael.mpbe.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.uvhnael.mpbe.dto.request.ShoppingListItemBatchRequest;
+import org.uvhnael.mpbe.model.ShoppingList;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ShoppingListItemBulkWriter.class)
+class ShoppingListItemBulkWriterTest {
+    
+    @Autowired
+    private ShoppingListItemBulkWriter bulkWriter;
+    
+    @Autowired
+    private ShoppingListRepository shoppingListRepository;
+    
+    @Autowired
+    private ShoppingListItemRepository itemRepository;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    private ShoppingListItem item(ShoppingList shoppingList, String name) {
+        ShoppingListItem item = new ShoppingListItem();
+        item.setShoppingList(shoppingList);
+        item.setIngredientName(name);
+        item.setQuantity(BigDecimal.ONE);
+        item.setUnit("piece");
+        item.setIsChecked(false);
+        return itemRepository.save(item);
+    }
+    
+    private static ShoppingListItemBatchRequest.ItemUpdate update(Long id, String quantity, String unit) {
+        ShoppingListItemBatchRequest.ItemUpdate update = new ShoppingListItemBatchRequest.ItemUpdate();
+        update.setId(id);
+        update.setQuantity(quantity != null ? new BigDecimal(quantity) : null);
+        update.setUnit(unit);
+        return update;
+    }
+    
+    @Test
+    void updateItems_ChangesOnlyTheGivenFieldsOfItemsInTheList() {
+        ShoppingList list = shoppingListRepository.save(new ShoppingList());
+        ShoppingList other = shoppingListRepository.save(new ShoppingList());
+        ShoppingListItem apple = item(list, "apple");
+        ShoppingListItem milk = item(list, "milk");
+        ShoppingListItem foreign = item(other, "bread");
+        entityManager.flush();
+        
+        int updated = bulkWriter.updateItems(list.getId(), List.of(
+            update(apple.getId(), "4", null),
+            update(milk.getId(), null, "l"),
+            update(foreign.getId(), "9", null)));
+        
+        assertEquals(2, updated);
+        entityManager.clear();
+        Map<String, ShoppingListItem> items = itemRepository.findAll().stream()
+            .collect(Collectors.toMap(ShoppingListItem::getIngredientName, Function.identity()));
+        assertEquals(0, new BigDecimal("4").compareTo(items.get("apple").getQuantity()));
+        assertEquals("piece", items.get("apple").getUnit());
+        assertEquals(0, BigDecimal.ONE.compareTo(items.get("milk").getQuantity()));
+        assertEquals("l", items.get("milk").getUnit());
+        assertEquals(0, BigDecimal.ONE.compareTo(items.get("bread").getQuantity()));
+    }
+    
+    @Test
+    void setBasedStatements_CheckAndDeleteOnlyItemsOfTheList() {
+        ShoppingList list = shoppingListRepository.save(new ShoppingList());
+        ShoppingList other = shoppingListRepository.save(new ShoppingList());
+        ShoppingListItem apple = item(list, "apple");
+        ShoppingListItem milk = item(list, "milk");
+        ShoppingListItem foreign = item(other, "bread");
+        
+        int checked = itemRepository.updateCheckedByShoppingListIdAndIdIn(list.getId(),
+            List.of(apple.getId(), foreign.getId()), true);
+        int deleted = itemRepository.deleteByShoppingListIdAndIdIn(list.getId(),
+            List.of(milk.getId(), foreign.getId()));
+        
+        assertEquals(1, checked);
+        assertEquals(1, deleted);
+        List<ShoppingListItem> remaining = itemRepository.findByShoppingListId(list.getId());
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.get(0).getIsChecked());
+        assertFalse(itemRepository.findById(foreign.getId()).orElseThrow().getIsChecked());
+    }
+}
@@ -0,0 +1,101 @@
+package org.uvhnael.mpbe.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitInterceptorTest {
+    
+    static class Endpoints {
+        @RateLimited(cost = 5)
+        public void generate() {
+        }
+    }
+    
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private SimpleMeterRegistry registry;
+    private RateLimitInterceptor interceptor;
+    private HandlerMethod generate;
+    
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        registry = new SimpleMeterRegistry();
+        // 5 tokens, one token every 6 seconds: one generate call per 30 seconds
+        interceptor = new RateLimitInterceptor(new TokenBucketRateLimiter(5, 10, now::get), new ObjectMapper(), registry);
+        generate = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("generate"));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    private void signIn(String email) {
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(email, null, List.of()));
+    }
+    
+    private MockHttpServletResponse call(String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/meal-plans/generate");
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request, response, generate);
+        // Rejected calls must not reach the controller
+        assertEquals(admitted, response.getStatus() != 429);
+        return response;
+    }
+    
+    @Test
+    void preHandle_RejectsWith429AndRetryAfterOnceTheBucketIsEmpty() throws Exception {
+        signIn("alice@example.com");
+        
+        assertEquals(200, call("10.0.0.1").getStatus());
+        MockHttpServletResponse rejected = call("10.0.0.1");
+        
+        assertEquals(429, rejected.getStatus());
+        assertEquals("30", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("retry after 30 seconds"));
+        assertEquals(1.0, registry.get("rate-limit.requests").tag("result", "rejected").counter().count());
+    }
+    
+    @Test
+    void preHandle_MetersAuthenticatedCallersPerUserRatherThanPerAddress() throws Exception {
+        signIn("alice@example.com");
+        assertEquals(200, call("10.0.0.1").getStatus());
+        
+        // Same user from another address shares the bucket
+        assertEquals(429, call("10.0.0.2").getStatus());
+        
+        // Another user behind the same address has a bucket of their own
+        signIn("bob@example.com");
+        assertEquals(200, call("10.0.0.1").getStatus());
+    }
+    
+    @Test
+    void preHandle_DoesNotChargeAsyncRedispatches() throws Exception {
+        signIn("alice@example.com");
+        assertEquals(200, call("10.0.0.1").getStatus());
+        
+        MockHttpServletRequest redispatch = new MockHttpServletRequest("POST", "/api/meal-plans/generate");
+        redispatch.setDispatcherType(DispatcherType.ASYNC);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        assertTrue(interceptor.preHandle(redispatch, response, generate));
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Retry-After"));
+    }
+}
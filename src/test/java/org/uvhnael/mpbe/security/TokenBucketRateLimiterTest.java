@@ -0,0 +1,85 @@
+package org.uvhnael.mpbe.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+    
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    
+    // 10 tokens, one token every 6 seconds
+    private final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10, now::get);
+    
+    @Test
+    void tryAcquire_AllowsBurstUpToCapacityAndThenRejects() {
+        assertTrue(limiter.tryAcquire("user:a", 5).allowed());
+        assertTrue(limiter.tryAcquire("user:a", 5).allowed());
+        
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("user:a", 1);
+        
+        assertFalse(rejected.allowed());
+        assertEquals(TimeUnit.SECONDS.toNanos(6), rejected.retryAfterNanos());
+    }
+    
+    @Test
+    void tryAcquire_RefillsOverTime() {
+        assertTrue(limiter.tryAcquire("user:a", 10).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 2).allowed());
+        
+        now.addAndGet(TimeUnit.SECONDS.toNanos(12));
+        
+        assertTrue(limiter.tryAcquire("user:a", 2).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 1).allowed());
+    }
+    
+    @Test
+    void tryAcquire_KeepsBucketsPerCaller() {
+        assertTrue(limiter.tryAcquire("user:a", 10).allowed());
+        
+        assertTrue(limiter.tryAcquire("user:b", 10).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 1).allowed());
+    }
+    
+    @Test
+    void tryAcquire_NeverGrantsMoreThanCapacityUnderContention() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (limiter.tryAcquire("user:a", 1).allowed()) {
+                    granted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        
+        assertEquals(10, granted.get());
+    }
+    
+    @Test
+    void sweep_DropsFullBuckets() {
+        limiter.tryAcquire("user:a", 1);
+        limiter.tryAcquire("user:b", 10);
+        
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        limiter.sweep();
+        
+        assertEquals(1, limiter.trackedBuckets());
+    }
+}
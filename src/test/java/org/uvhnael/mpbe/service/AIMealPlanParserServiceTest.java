@@ -0,0 +1,81 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.MealPlanItem;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.model.User;
+import org.uvhnael.mpbe.repository.MealPlanBulkWriter;
+import org.uvhnael.mpbe.repository.MealPlanRepository;
+import org.uvhnael.mpbe.repository.RecipeRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AIMealPlanParserServiceTest {
+    
+    private RecipeRepository recipeRepository;
+    private MealPlanBulkWriter bulkWriter;
+    private AIMealPlanParserService parserService;
+    private MealPlan mealPlan;
+    
+    @BeforeEach
+    void setUp() {
+        recipeRepository = mock(RecipeRepository.class);
+        MealPlanRepository mealPlanRepository = mock(MealPlanRepository.class);
+        bulkWriter = mock(MealPlanBulkWriter.class);
+        parserService = new AIMealPlanParserService(new ObjectMapper(), recipeRepository, mealPlanRepository,
+            bulkWriter, mock(MealPlanService.class), mock(EntityManager.class), mock(ApplicationEventPublisher.class));
+        
+        User owner = new User();
+        owner.setId(7L);
+        mealPlan = new MealPlan();
+        mealPlan.setUser(owner);
+        when(mealPlanRepository.save(any(MealPlan.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+    
+    @Test
+    void parseAndSaveMealPlan_ReusesOnlyTheOwnersRecipesWithTheSameContent() {
+        AIMealPlanResponse plan = parserService.parseResponse("""
+            {"days": [
+              {"day": 1, "meals": [{"name": "Oats"}, {"name": "Salad"}]},
+              {"day": 2, "meals": [{"name": "Salad"}]}
+            ]}
+            """);
+        Recipe ownOats = new Recipe();
+        ownOats.setId(100L);
+        ownOats.setContentHash(RecipeContentHasher.hash(plan.getDays().get(0).getMeals().get(0)));
+        when(recipeRepository.findWithIngredientsByCreatedByIdAndContentHashIn(eq(7L), anyCollection()))
+            .thenReturn(List.of(ownOats));
+        
+        MealPlan saved = parserService.parseAndSaveMealPlan(plan, mealPlan);
+        
+        List<Recipe> recipes = saved.getMealPlanItems().stream().map(MealPlanItem::getRecipe).toList();
+        assertSame(ownOats, recipes.get(0));
+        // The repeated meal becomes one new recipe, owned by the plan's user
+        assertSame(recipes.get(1), recipes.get(2));
+        assertSame(mealPlan.getUser(), recipes.get(1).getCreatedBy());
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Recipe>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).insertRecipes(inserted.capture());
+        assertEquals(List.of(recipes.get(1)), inserted.getValue());
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> hashes = ArgumentCaptor.forClass(Collection.class);
+        verify(recipeRepository).findWithIngredientsByCreatedByIdAndContentHashIn(eq(7L), hashes.capture());
+        assertEquals(2, hashes.getValue().size());
+    }
+}
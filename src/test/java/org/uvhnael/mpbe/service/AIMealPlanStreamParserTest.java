@@ -0,0 +1,139 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIMealPlanStreamParserTest {
+    
+    private final AIMealPlanStreamParser parser = new AIMealPlanStreamParser(new ObjectMapper());
+    
+    @Test
+    void parse_EmitsMealsInOrderWithDayNumbers() throws IOException {
+        String response = """
+            Here is your plan:
+            ```json
+            {"days": [
+              {"day": 1, "meals": [{"type": "breakfast", "name": "Oats"}, {"type": "lunch", "name": "Salad"}]},
+              {"day": 2, "meals": [{"type": "dinner", "name": "Curry", "nutrition": {"calories": "~500 kcal"}}]}
+            ]}
+            ```
+            Enjoy!
+            """;
+        List<String> meals = new ArrayList<>();
+        
+        int count = parser.parse(response, (day, meal) -> meals.add(day + ":" + meal.getName()));
+        
+        assertEquals(3, count);
+        assertEquals(List.of("1:Oats", "1:Salad", "2:Curry"), meals);
+    }
+    
+    @Test
+    void parse_PrefersTheFencedJsonOverBracesInTheProseBeforeIt() throws IOException {
+        String response = """
+            The plan below fills in {days} with one entry per day.
+            ```json
+            {"days": [{"day": 1, "meals": [{"name": "Oats"}]}]}
+            ```
+            """;
+        List<String> meals = new ArrayList<>();
+        
+        int count = parser.parse(response, (day, meal) -> meals.add(day + ":" + meal.getName()));
+        
+        assertEquals(1, count);
+        assertEquals(List.of("1:Oats"), meals);
+    }
+    
+    @Test
+    void parse_EmitsOnlyMealsOfTheRootDaysArray() throws IOException {
+        String response = "{\"summary\": {\"day\": 7, \"meals\": [{\"name\": \"Summary\"}]}, "
+            + "\"days\": [{\"day\": 1, \"extras\": {\"meals\": [{\"name\": \"Extra\"}]}, "
+            + "\"meals\": [{\"name\": \"Oats\", \"sides\": [{\"name\": \"Side\"}]}]}], "
+            + "\"notes\": [{\"days\": [{\"meals\": [{\"name\": \"Note\"}]}]}]}";
+        List<String> meals = new ArrayList<>();
+        
+        int count = parser.parse(response, (day, meal) -> meals.add(day + ":" + meal.getName()));
+        
+        assertEquals(1, count);
+        assertEquals(List.of("1:Oats"), meals);
+    }
+    
+    @Test
+    void parse_AcceptsRawControlCharactersInStrings() throws IOException {
+        String response = "{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Toast\", "
+            + "\"instructions\": \"1. Toast bread\n2. Serve\"}]}]}";
+        List<AIMealPlanResponse.AIMeal> meals = new ArrayList<>();
+        
+        parser.parse(response, (day, meal) -> meals.add(meal));
+        
+        assertEquals("1. Toast bread\n2. Serve", meals.get(0).getInstructions());
+    }
+    
+    @Test
+    void parse_UsesPositionWhenDayNumberComesAfterMeals() throws IOException {
+        String response = "{\"days\": [{\"meals\": [{\"name\": \"A\"}], \"note\": {\"x\": [1]}},"
+            + " {\"meals\": [{\"name\": \"B\"}], \"day\": 2}]}";
+        List<Integer> days = new ArrayList<>();
+        
+        parser.parse(response, (day, meal) -> days.add(day));
+        
+        assertEquals(List.of(1, 2), days);
+    }
+    
+    @Test
+    void open_EmitsEachMealAsSoonAsItsChunkArrives() throws IOException {
+        List<String> events = new ArrayList<>();
+        AIMealPlanStreamParser.Session session = parser.open(new AIMealPlanStreamParser.MealHandler() {
+            @Override
+            public void onMeal(int day, AIMealPlanResponse.AIMeal meal) {
+                events.add(day + ":" + meal.getName());
+            }
+            
+            @Override
+            public void onDayComplete(int day) {
+                events.add("end " + day);
+            }
+        });
+        
+        session.feed("```json\n{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Oats\"}");
+        assertEquals(List.of("1:Oats"), events);
+        session.feed(", {\"name\": \"Salad\"}]}, {\"day\": 2, \"meals\": []}");
+        assertEquals(List.of("1:Oats", "1:Salad", "end 1", "end 2"), events);
+        session.feed("]}\n```");
+        
+        assertEquals(2, session.finish());
+    }
+    
+    @Test
+    void open_ReadsResponsesSplitAnywhereIncludingInsideCharacters() throws IOException {
+        String response = "Plan {draft}:\n```json\n{\"days\": [{\"day\": 1, \"meals\": "
+            + "[{\"name\": \"Phở bò 🍜\", \"instructions\": \"Simmer\\n{slowly}\"}]}]}\n```";
+        List<String> names = new ArrayList<>();
+        AIMealPlanStreamParser.Session session = parser.open((day, meal) -> names.add(meal.getName()));
+        
+        for (int i = 0; i < response.length(); i++) {
+            session.feed(response.substring(i, i + 1));
+        }
+        
+        assertEquals(1, session.finish());
+        assertEquals(List.of("Phở bò 🍜"), names);
+    }
+    
+    @Test
+    void parse_RejectsResponseCutOffBeforeTheRootCloses() {
+        String response = "{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Oats\"}";
+        
+        assertThrows(IOException.class, () -> parser.parse(response, (day, meal) -> { }));
+    }
+    
+    @Test
+    void parse_RejectsResponseWithoutJson() {
+        assertThrows(IOException.class, () -> parser.parse("Sorry, I cannot help with that.", (day, meal) -> { }));
+    }
+}
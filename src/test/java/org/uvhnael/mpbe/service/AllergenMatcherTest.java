@@ -0,0 +1,52 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllergenMatcherTest {
+
+    private static AllergenMatcher matcher(String allergies) {
+        return AllergenMatcher.forAllergies(allergies).orElseThrow();
+    }
+
+    @Test
+    void matches_CatchesCategoryMembersTheAllergyNameNeverMentions() {
+        assertTrue(matcher("Dairy").matches("Grated cheddar cheese"));
+        assertTrue(matcher("dairy").matches("unsalted butter"));
+        assertTrue(matcher("shellfish").matches("Garlic Shrimps"));
+        assertTrue(matcher("shellfish").matches("king prawns"));
+        assertTrue(matcher("tree nuts").matches("toasted almonds"));
+        assertTrue(matcher("tree nuts").matches("Walnut brownie"));
+    }
+
+    @Test
+    void matches_IgnoresPlantBasedVariantsAndPartialWords() {
+        AllergenMatcher dairy = matcher("dairy");
+        assertFalse(dairy.matches("peanut butter"));
+        assertFalse(dairy.matches("Oat milk"));
+        assertFalse(dairy.matches("dairy-free cheese"));
+        assertFalse(matcher("egg").matches("grilled eggplant"));
+        assertFalse(matcher("gluten").matches("gluten-free pasta"));
+        // A peanut allergy still catches peanut butter
+        assertTrue(matcher("peanuts").matches("peanut butter"));
+    }
+
+    @Test
+    void matches_ChecksEveryListedAllergy() {
+        AllergenMatcher matcher = matcher("fish; Sesame, none");
+
+        assertTrue(matcher.matches("salmon fillet"));
+        assertTrue(matcher.matches("tahini"));
+        assertFalse(matcher.matches("chicken breast"));
+    }
+
+    @Test
+    void forAllergies_IsEmptyForAllergiesOutsideTheTaxonomy() {
+        assertTrue(AllergenMatcher.forAllergies("dairy, kiwi").isEmpty());
+        assertFalse(matcher("none").matches("cheese"));
+        assertEquals(List.of("tree nuts", "shellfish"), AllergenMatcher.parse(" Tree  Nuts ;shellfish, NONE"));
+    }
+}
@@ -0,0 +1,86 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.service.ai.AIRequestCoalescer;
+import org.uvhnael.mpbe.service.ai.AIResilienceGuard;
+import org.uvhnael.mpbe.service.ai.AIResponseCache;
+import org.uvhnael.mpbe.service.ai.GeminiClient;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class GeminiAIServiceTest {
+
+    private static final String PLAN = "{\"days\": [{\"day\": 1, \"meals\": [{\"type\": \"lunch\", \"name\": \"Salad\"}]}]}";
+    private static final String TRUNCATED = "{\"days\": [{\"day\": 1, \"meals\": [{\"type\": \"lunch\", \"name\": \"Salad\"}";
+
+    @TempDir
+    Path tempDir;
+
+    private GeminiClient geminiClient;
+    private AIResponseCache responseCache;
+    private GeminiAIService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        geminiClient = mock(GeminiClient.class);
+        responseCache = new AIResponseCache(registry, true, 60, 100, tempDir.toString());
+        AIResilienceGuard resilienceGuard = mock(AIResilienceGuard.class);
+        when(resilienceGuard.execute(any())).thenAnswer(invocation ->
+            ((Supplier<CompletableFuture<String>>) invocation.getArgument(0)).get());
+        AIMealPlanParserService parserService =
+            new AIMealPlanParserService(new ObjectMapper(), null, null, null, null, null, null);
+
+        service = new GeminiAIService(geminiClient, responseCache, new AIRequestCoalescer(registry),
+            resilienceGuard, parserService);
+    }
+
+    @Test
+    void generateMealPlan_DoesNotCacheAnAnswerThatDoesNotParse() {
+        when(geminiClient.generateContent(anyString(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(TRUNCATED))
+            .thenReturn(CompletableFuture.completedFuture(PLAN));
+
+        assertEquals(TRUNCATED, service.generateMealPlan(profile(), 1));
+        assertEquals(PLAN, service.generateMealPlan(profile(), 1));
+        assertEquals(PLAN, service.generateMealPlan(profile(), 1));
+
+        verify(geminiClient, times(2)).generateContent(anyString(), any(), any());
+    }
+
+    @Test
+    void generateMealPlan_EvictsAnUnusableCachedAnswer() {
+        String key = AIResponseCache.key("meal-plan", profile(), 1);
+        responseCache.put(key, "Sorry, something went wrong");
+        when(geminiClient.generateContent(anyString(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(PLAN));
+
+        assertEquals(PLAN, service.generateMealPlan(profile(), 1));
+        assertEquals(PLAN, responseCache.get(key).orElseThrow());
+        assertTrue(tempDir.resolve(key).toFile().exists());
+    }
+
+    private static UserProfile profile() {
+        UserProfile profile = new UserProfile();
+        profile.setGoal("maintain");
+        profile.setDietaryPreference("none");
+        profile.setAllergies("none");
+        profile.setBudgetPerMeal(new BigDecimal("10"));
+        profile.setActivityLevel("moderate");
+        return profile;
+    }
+}
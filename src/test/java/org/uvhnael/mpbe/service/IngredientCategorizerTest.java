@@ -0,0 +1,89 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngredientCategorizerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private IngredientCategorizer categorizer(String location) {
+        IngredientCategorizer categorizer =
+            new IngredientCategorizer(new ObjectMapper(), new DefaultResourceLoader(), location);
+        categorizer.reload();
+        return categorizer;
+    }
+    
+    @Test
+    void categorize_UsesBundledTaxonomy() {
+        IngredientCategorizer categorizer = categorizer("classpath:data/ingredient-taxonomy.json");
+        
+        assertEquals("Meat & Seafood", categorizer.categorize("Boneless Chicken Breasts"));
+        assertEquals("Vegetables", categorizer.categorize("cherry tomatoes"));
+        assertEquals("Fruits", categorizer.categorize("fresh blueberries"));
+        assertEquals("Dairy", categorizer.categorize("Greek yogurt, plain"));
+        assertEquals("Other", categorizer.categorize("unobtainium"));
+    }
+    
+    @Test
+    void categorize_PrefersTheHeadNounAndWholeWords() {
+        IngredientCategorizer categorizer = categorizer("classpath:data/ingredient-taxonomy.json");
+        
+        assertEquals("Condiments & Spices", categorizer.categorize("tomato sauce"));
+        assertEquals("Nuts & Legumes", categorizer.categorize("crunchy peanut butter"));
+        assertEquals("Vegetables", categorizer.categorize("butternut squash"));
+        assertEquals("Nuts & Legumes", categorizer.categorize("coconut milk"));
+        assertEquals("Condiments & Spices", categorizer.categorize("Extra-virgin olive oil"));
+    }
+    
+    @Test
+    void reloadIfModified_PicksUpTaxonomyFileChanges() throws Exception {
+        Path file = tempDir.resolve("taxonomy.json");
+        Files.writeString(file, "{\"Pantry\": [\"quinoa\"]}");
+        IngredientCategorizer categorizer = categorizer(file.toUri().toString());
+        assertEquals("Pantry", categorizer.categorize("quinoa"));
+        
+        Files.writeString(file, "{\"Grains\": [\"quinoa\"]}");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+        categorizer.reloadIfModified();
+        
+        assertEquals("Grains", categorizer.categorize("Quinoa"));
+    }
+    
+    @Test
+    void automaton_ClassifiesRepeatedNamesConsistently() {
+        KeywordAutomaton<String> automaton = KeywordAutomaton.compile(Map.of("rice", "Grains", "salt", "Spices"));
+        String[] names = {"brown rice", "sea salt flakes", "licorice", "basmati rice (rinsed)"};
+        
+        int matched = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (automaton.match(names[i % names.length]) != null) {
+                matched++;
+            }
+        }
+        
+        // licorice contains "rice" but not as a word
+        assertEquals(75_000, matched);
+        assertNull(automaton.match("licorice"));
+        assertEquals("Spices", automaton.match("sea salt flakes"));
+    }
+    
+    @Test
+    void plural_FollowsEnglishSpelling() {
+        assertEquals("berries", IngredientCategorizer.plural("berry"));
+        assertEquals("tomatoes", IngredientCategorizer.plural("tomato"));
+        assertEquals("bay leaves", IngredientCategorizer.plural("bay leaf"));
+        assertEquals("green beans", IngredientCategorizer.plural("green bean"));
+    }
+}
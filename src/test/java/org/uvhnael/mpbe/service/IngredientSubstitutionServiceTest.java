@@ -0,0 +1,157 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
+import org.uvhnael.mpbe.exception.BadRequestException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IngredientSubstitutionServiceTest {
+    
+    private static final String AI_ANSWER = """
+        ```json
+        [{"name": "quark", "ratio": "1:1", "reason": "Similar tang", "tags": ["high-protein"]}]
+        ```""";
+    
+    @TempDir
+    Path tempDir;
+    
+    private GeminiAIService geminiAIService;
+    private Path harvestFile;
+    private IngredientSubstitutionService service;
+    
+    @BeforeEach
+    void setUp() {
+        geminiAIService = mock(GeminiAIService.class);
+        harvestFile = tempDir.resolve("harvested.json");
+        service = newService();
+    }
+    
+    @Test
+    void getSubstitutes_ServesBundledEntriesWithoutCallingAI() {
+        List<AISubstitute> substitutes = service.getSubstitutes("Eggs", null);
+        
+        assertFalse(substitutes.isEmpty());
+        assertEquals("flax egg", substitutes.get(0).getName());
+        verifyNoInteractions(geminiAIService);
+    }
+    
+    @Test
+    void getSubstitutes_RanksEntriesMatchingTheReasonFirst() {
+        List<AISubstitute> substitutes = service.getSubstitutes("butter", "I want it low fat");
+        
+        assertTrue(substitutes.get(0).getTags().contains("low-fat"));
+        verifyNoInteractions(geminiAIService);
+    }
+    
+    @Test
+    void getSubstitutes_HarvestsAnswerOnMissAndPersistsIt() throws Exception {
+        when(geminiAIService.suggestSubstitutes(eq("skyr"), anyString())).thenReturn(AI_ANSWER);
+        
+        assertEquals("quark", service.getSubstitutes("skyr", null).get(0).getName());
+        assertEquals("quark", service.getSubstitutes("skyr", null).get(0).getName());
+        verify(geminiAIService, times(1)).suggestSubstitutes(anyString(), anyString());
+        
+        assertTrue(Files.readString(harvestFile).contains("quark"));
+        IngredientSubstitutionService restarted = newService();
+        assertEquals("quark", restarted.getSubstitutes("skyr", null).get(0).getName());
+        verify(geminiAIService, times(1)).suggestSubstitutes(anyString(), anyString());
+    }
+    
+    @Test
+    void getSubstitutes_FallsBackToKnownEntriesWhenAIFails() {
+        when(geminiAIService.suggestSubstitutes(anyString(), anyString()))
+            .thenThrow(new RuntimeException("Gemini unavailable"));
+        
+        // No bundled rice substitute is low-fat, so this is a miss; the tag only ranks
+        List<AISubstitute> substitutes = service.getSubstitutes("rice", "low fat");
+        
+        assertEquals(2, substitutes.size());
+    }
+    
+    @Test
+    void getSubstitutes_NeverFallsBackToSubstitutesMissingARestriction() {
+        when(geminiAIService.suggestSubstitutes(anyString(), anyString()))
+            .thenThrow(new RuntimeException("Gemini unavailable"));
+        
+        // No bundled rice substitute is nut-free
+        assertThrows(RuntimeException.class, () -> service.getSubstitutes("rice", "nut allergy"));
+    }
+    
+    @Test
+    void getSubstitutes_FiltersOutSubstitutesMissingARestriction() {
+        List<AISubstitute> substitutes = service.getSubstitutes("butter", "dairy free please");
+        
+        assertFalse(substitutes.isEmpty());
+        assertTrue(substitutes.stream().allMatch(substitute -> substitute.getTags().contains("dairy-free")));
+        verifyNoInteractions(geminiAIService);
+    }
+    
+    @Test
+    void getSubstitutes_FiltersOnRestrictionsNoSubstituteCarriesYet() {
+        when(geminiAIService.suggestSubstitutes(eq("tahini"), anyString())).thenReturn("""
+            [{"name": "peanut butter", "ratio": "1:1", "reason": "Same texture", "tags": ["vegan"]},
+             {"name": "sunflower seed butter", "ratio": "1:1", "reason": "Nutty", "tags": ["vegan", "sesame-free"]}]""");
+        
+        List<AISubstitute> substitutes = service.getSubstitutes("tahini", "sesame-free");
+        
+        assertEquals(List.of("sunflower seed butter"), substitutes.stream().map(AISubstitute::getName).toList());
+        verify(geminiAIService).suggestSubstitutes(eq("tahini"), contains("sesame-free"));
+    }
+    
+    @Test
+    void getSubstitutes_DoesNotAskAgainForALookupGeminiCouldNotSatisfy() {
+        when(geminiAIService.suggestSubstitutes(anyString(), anyString())).thenReturn(AI_ANSWER);
+        
+        // "nut allergy" asks for nut-free, which no rice substitute carries
+        assertTrue(service.getSubstitutes("rice", "nut allergy").isEmpty());
+        assertTrue(service.getSubstitutes("rice", "severe nut allergy").isEmpty());
+        
+        verify(geminiAIService, times(1)).suggestSubstitutes(anyString(), anyString());
+    }
+    
+    @Test
+    void getSubstitutes_RejectsIngredientsThatAreNotPlainNames() {
+        assertThrows(BadRequestException.class, () -> service.getSubstitutes("x".repeat(65), null));
+        assertThrows(BadRequestException.class, () -> service.getSubstitutes("rice\"}; drop", null));
+        verifyNoInteractions(geminiAIService);
+    }
+    
+    @Test
+    void getSubstitutes_StopsLearningNewIngredientsOnceTheHarvestIsFull() throws Exception {
+        service = newService(1);
+        when(geminiAIService.suggestSubstitutes(anyString(), anyString())).thenReturn(AI_ANSWER);
+        
+        service.getSubstitutes("skyr", null);
+        assertEquals("quark", service.getSubstitutes("labneh", null).get(0).getName());
+        service.getSubstitutes("labneh", null);
+        
+        // skyr was learned, labneh was answered but not kept
+        verify(geminiAIService, times(1)).suggestSubstitutes(eq("skyr"), anyString());
+        verify(geminiAIService, times(2)).suggestSubstitutes(eq("labneh"), anyString());
+        assertFalse(Files.readString(harvestFile).contains("labneh"));
+    }
+    
+    private IngredientSubstitutionService newService() {
+        return newService(1000);
+    }
+    
+    private IngredientSubstitutionService newService(int maxHarvested) {
+        IngredientSubstitutionService created = new IngredientSubstitutionService(
+            geminiAIService, new ObjectMapper(), new SimpleMeterRegistry(), harvestFile.toString(), maxHarvested);
+        created.load();
+        return created;
+    }
+}
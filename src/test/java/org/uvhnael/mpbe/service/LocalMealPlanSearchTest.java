@@ -0,0 +1,77 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMealPlanSearchTest {
+
+    private static final List<String> MEAL_TYPES = List.of("breakfast", "lunch", "dinner");
+
+    private final LocalMealPlanSearch search = new LocalMealPlanSearch(MEAL_TYPES, 32, 6, 0.15);
+
+    @Test
+    void search_KeepsEveryDayWithinTheCalorieTolerance() {
+        Map<String, List<LocalMealPlanSearch.Candidate>> candidates = corpus(10);
+
+        Optional<LocalMealPlanSearch.Result> result = search.search(candidates, 7, 2000, 1L);
+
+        assertTrue(result.isPresent());
+        assertEquals(21, result.get().slots().size());
+        Map<Integer, Integer> caloriesByDay = new HashMap<>();
+        for (LocalMealPlanSearch.Slot slot : result.get().slots()) {
+            caloriesByDay.merge(slot.day(), slot.recipe().calories(), Integer::sum);
+        }
+        caloriesByDay.values().forEach(calories -> assertTrue(Math.abs(calories - 2000) <= 300));
+    }
+
+    @Test
+    void search_DoesNotRepeatARecipeOnConsecutiveDays() {
+        Optional<LocalMealPlanSearch.Result> result = search.search(corpus(10), 7, 2000, 7L);
+
+        assertTrue(result.isPresent());
+        List<LocalMealPlanSearch.Slot> slots = result.get().slots();
+        for (int index = MEAL_TYPES.size(); index < slots.size(); index++) {
+            LocalMealPlanSearch.Slot previousDay = slots.get(index - MEAL_TYPES.size());
+            assertNotEquals(previousDay.recipe().recipeId(), slots.get(index).recipe().recipeId());
+        }
+    }
+
+    @Test
+    void search_ReturnsEmptyWhenAMealTypeHasNoCandidates() {
+        Map<String, List<LocalMealPlanSearch.Candidate>> candidates = corpus(10);
+        candidates.put("dinner", List.of());
+
+        assertTrue(search.search(candidates, 3, 2000, 1L).isEmpty());
+    }
+
+    @Test
+    void search_ReturnsEmptyWhenTheCalorieTargetCannotBeMet() {
+        assertTrue(search.search(corpus(10), 3, 6000, 1L).isEmpty());
+    }
+
+    /**
+     * Recipes per meal type with calories spread around a 2000 kcal day
+     */
+    private Map<String, List<LocalMealPlanSearch.Candidate>> corpus(int perMealType) {
+        Map<String, List<LocalMealPlanSearch.Candidate>> candidates = new HashMap<>();
+        int[] baseCalories = {500, 700, 800};
+        String[] cuisines = {"Italian", "Asian", "Mexican"};
+        long id = 1;
+        for (int type = 0; type < MEAL_TYPES.size(); type++) {
+            List<LocalMealPlanSearch.Candidate> recipes = new ArrayList<>();
+            for (int i = 0; i < perMealType; i++) {
+                recipes.add(new LocalMealPlanSearch.Candidate(id++, cuisines[i % cuisines.length],
+                    baseCalories[type] - 100 + i * 20));
+            }
+            candidates.put(MEAL_TYPES.get(type), recipes);
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,80 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.projection.RecipeIngredientRow;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.repository.IngredientRepository;
+import org.uvhnael.mpbe.repository.MealPlanBulkWriter;
+import org.uvhnael.mpbe.repository.MealPlanRepository;
+import org.uvhnael.mpbe.repository.RecipeRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class LocalMealPlanServiceTest {
+
+    private static final List<String> MEAL_TYPES = List.of("breakfast", "lunch", "dinner");
+
+    private IngredientRepository ingredientRepository;
+    private LocalMealPlanService localMealPlanService;
+    private UserProfile profile;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository = mock(IngredientRepository.class);
+        localMealPlanService = new LocalMealPlanService(ingredientRepository, mock(RecipeRepository.class),
+            mock(MealPlanRepository.class), mock(MealPlanBulkWriter.class), null, new SimpleMeterRegistry(),
+            32, 6, 0.15, 300, 2000);
+
+        profile = new UserProfile();
+        profile.setAllergies("none");
+        profile.setDietaryPreference("none");
+    }
+
+    @Test
+    void plan_UsesOnlyTheUsersOwnRecipesAndThoseNobodyOwns() {
+        List<RecipeIngredientRow> rows = new ArrayList<>();
+        rows.addAll(recipes(1, null));
+        rows.addAll(recipes(11, 5L));
+        rows.addAll(recipes(21, 6L));
+        when(ingredientRepository.findRecipeIngredientRows(anyCollection())).thenReturn(rows);
+
+        Optional<LocalMealPlanSearch.Result> result = localMealPlanService.plan(5L, profile, 3);
+
+        assertTrue(result.isPresent());
+        Set<Long> used = result.get().slots().stream()
+            .map(slot -> slot.recipe().recipeId())
+            .collect(Collectors.toSet());
+        assertTrue(used.stream().noneMatch(id -> id >= 21), "another user's recipe was planned: " + used);
+    }
+
+    @Test
+    void plan_FallsBackWhenOnlyOtherUsersHaveMatchingRecipes() {
+        when(ingredientRepository.findRecipeIngredientRows(anyCollection())).thenReturn(recipes(21, 6L));
+
+        assertTrue(localMealPlanService.plan(5L, profile, 1).isEmpty());
+    }
+
+    /**
+     * One 650 kcal recipe per meal type, numbered from firstId
+     */
+    private static List<RecipeIngredientRow> recipes(long firstId, Long ownerId) {
+        List<RecipeIngredientRow> rows = new ArrayList<>();
+        for (int index = 0; index < MEAL_TYPES.size(); index++) {
+            String mealType = MEAL_TYPES.get(index);
+            rows.add(new RecipeIngredientRow(firstId + index, ownerId, mealType + " " + firstId, mealType,
+                "Italian", 1, "rice", new BigDecimal("650"), new BigDecimal("40")));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,165 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.User;
+import org.uvhnael.mpbe.model.UserProfile;
+import org.uvhnael.mpbe.repository.UserRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MealPlanGenerationServiceTest {
+
+    private GeminiAIService geminiAIService;
+    private AIMealPlanParserService parserService;
+    private MealPlanService mealPlanService;
+    private MealPlanGenerationService generationService;
+    private UserProfile profile;
+
+    @BeforeEach
+    void setUp() {
+        geminiAIService = mock(GeminiAIService.class);
+        parserService = mock(AIMealPlanParserService.class);
+        UserProfileService userProfileService = mock(UserProfileService.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        mealPlanService = mock(MealPlanService.class);
+        // Streams run on the calling thread
+        AsyncTaskExecutor aiTaskExecutor = mock(AsyncTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(aiTaskExecutor).execute(any(Runnable.class));
+        generationService = new MealPlanGenerationService(geminiAIService, parserService,
+            mealPlanService, mock(MealPlanPoolService.class), mock(LocalMealPlanService.class),
+            userProfileService, userRepository, aiTaskExecutor);
+        ReflectionTestUtils.setField(generationService, "chunkDays", 1);
+
+        profile = new UserProfile();
+        profile.setGoal("maintain");
+        profile.setDietaryPreference("none");
+        profile.setAllergies("none");
+        profile.setBudgetPerMeal(new BigDecimal("10"));
+        User user = new User();
+        user.setId(1L);
+        when(userProfileService.getProfileByUserId(1L)).thenReturn(Optional.of(profile));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        AIMealPlanParserService realParser = new AIMealPlanParserService(new ObjectMapper(), null, null, null, null, null, null);
+        when(parserService.parseResponse(anyString()))
+            .thenAnswer(invocation -> realParser.parseResponse(invocation.getArgument(0)));
+        when(parserService.parseAndSaveMealPlan(any(AIMealPlanResponse.class), any(MealPlan.class)))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    void generateMealPlan_ParallelModeSharesTheVarietyTableAndRenumbersChunkDays() {
+        // Every chunk answers as "day 1", as a model asked for a single day often does
+        when(geminiAIService.generateMealPlanChunkAsync(eq(profile), anyInt(), eq(1), eq(3), anyString()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                "{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Meal " + invocation.getArgument(1) + "\"}]}]}"));
+
+        generationService.generateMealPlan(1L, 3, MealPlanGenerationService.MODE_PARALLEL);
+
+        ArgumentCaptor<String> constraints = ArgumentCaptor.forClass(String.class);
+        verify(geminiAIService, times(3))
+            .generateMealPlanChunkAsync(eq(profile), anyInt(), eq(1), eq(3), constraints.capture());
+        assertEquals(1, constraints.getAllValues().stream().distinct().count());
+        assertTrue(constraints.getValue().contains("- Day 3:"));
+
+        ArgumentCaptor<AIMealPlanResponse> saved = ArgumentCaptor.forClass(AIMealPlanResponse.class);
+        verify(parserService).parseAndSaveMealPlan(saved.capture(), any(MealPlan.class));
+        List<AIMealPlanResponse.AIDayPlan> days = saved.getValue().getDays();
+        assertEquals(List.of(1, 2, 3), days.stream().map(AIMealPlanResponse.AIDayPlan::getDay).toList());
+        assertEquals(List.of("Meal 1", "Meal 2", "Meal 3"),
+            days.stream().map(day -> day.getMeals().get(0).getName()).toList());
+    }
+
+    @Test
+    void generateMealPlan_ParallelModeSavesNothingWhenAChunkFails() {
+        when(geminiAIService.generateMealPlanChunkAsync(eq(profile), anyInt(), anyInt(), anyInt(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture("{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Soup\"}]}]}"));
+        when(geminiAIService.generateMealPlanChunkAsync(eq(profile), eq(2), anyInt(), anyInt(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new AIServiceException("Gemini API timed out")));
+
+        AIServiceException error = assertThrows(AIServiceException.class,
+            () -> generationService.generateMealPlan(1L, 3, MealPlanGenerationService.MODE_PARALLEL));
+
+        assertEquals("Gemini API timed out", error.getMessage());
+        verify(parserService, never()).parseAndSaveMealPlan(any(AIMealPlanResponse.class), any(MealPlan.class));
+    }
+
+    @Test
+    void streamMealPlan_SavesEachDayOfTheRootDaysArrayAsItCompletes() {
+        MealPlan draft = streamDraft();
+        List<String> chunks = List.of(
+            "Here is a {draft} plan:\n``", "`json\n{\"summary\": {\"day\": 9, \"meals\": [{\"name\": \"No",
+            "t a meal\"}]}, \"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Oats\"}, {\"na",
+            "me\": \"Soup\"}]}, {\"day\": 2, \"meals\": [{\"name\": \"Curry\", \"nutrition\": {\"calories\": \"500\"}}]}",
+            "]}\n```");
+        streamChunks(chunks);
+
+        generationService.streamMealPlan(1L, 2, () -> { });
+
+        ArgumentCaptor<AIMealPlanResponse.AIDayPlan> days = ArgumentCaptor.forClass(AIMealPlanResponse.AIDayPlan.class);
+        verify(parserService, times(2)).saveDay(eq(draft), days.capture());
+        assertEquals(List.of(1, 2), days.getAllValues().stream().map(AIMealPlanResponse.AIDayPlan::getDay).toList());
+        assertEquals(List.of(List.of("Oats", "Soup"), List.of("Curry")), days.getAllValues().stream()
+            .map(day -> day.getMeals().stream().map(AIMealPlanResponse.AIMeal::getName).toList())
+            .toList());
+        verify(parserService).completeMealPlan(eq(draft.getId()), anyInt());
+        verify(mealPlanService, never()).deleteMealPlan(any());
+    }
+
+    @Test
+    void streamMealPlan_DeletesTheDraftWhenTheResponseIsCutOff() {
+        MealPlan draft = streamDraft();
+        streamChunks(List.of("{\"days\": [{\"day\": 1, \"meals\": [{\"name\": \"Oats\"}]}, {\"day\": 2"));
+
+        generationService.streamMealPlan(1L, 2, () -> { });
+
+        verify(parserService, never()).completeMealPlan(any(), anyInt());
+        verify(mealPlanService).deleteMealPlan(draft.getId());
+    }
+
+    private MealPlan streamDraft() {
+        MealPlan draft = new MealPlan();
+        draft.setId(9L);
+        when(mealPlanService.createMealPlan(any(MealPlan.class))).thenReturn(draft);
+        when(parserService.completeMealPlan(eq(9L), anyInt())).thenReturn(draft);
+        AIMealPlanParserService realParser = new AIMealPlanParserService(new ObjectMapper(), null, null, null, null, null, null);
+        try {
+            when(parserService.openStream(any()))
+                .thenAnswer(invocation -> realParser.openStream(invocation.getArgument(0)));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return draft;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamChunks(List<String> chunks) {
+        doAnswer(invocation -> {
+            chunks.forEach(invocation.<Consumer<String>>getArgument(2));
+            return null;
+        }).when(geminiAIService).streamMealPlan(eq(profile), anyInt(), any(Consumer.class));
+    }
+}
@@ -0,0 +1,71 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.response.MealPlanJob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MealPlanJobServiceTest {
+
+    private MealPlanGenerationService generationService;
+    private final List<Runnable> streamFinishers = new ArrayList<>();
+    private MealPlanJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        generationService = mock(MealPlanGenerationService.class);
+        // Tasks are never run: every submitted job stays in flight
+        AsyncTaskExecutor executor = mock(AsyncTaskExecutor.class);
+        jobService = new MealPlanJobService(generationService, executor);
+        ReflectionTestUtils.setField(jobService, "maxActiveJobs", 2);
+
+        when(generationService.streamMealPlan(anyLong(), anyInt(), any(Runnable.class))).thenAnswer(invocation -> {
+            streamFinishers.add(invocation.getArgument(2));
+            return new SseEmitter();
+        });
+    }
+
+    @Test
+    void getJob_OnlyReturnsJobsToThePrincipalThatSubmittedThem() {
+        MealPlanJob job = jobService.submit(1L, 7, null, "alice@example.com");
+
+        assertTrue(jobService.getJob(job.getId(), "alice@example.com").isPresent());
+        assertTrue(jobService.getJob(job.getId(), "mallory@example.com").isEmpty());
+    }
+
+    @Test
+    void stream_SharesTheAdmissionLimitWithBackgroundJobs() {
+        jobService.submit(1L, 7, null, "alice@example.com");
+        jobService.stream(2L, 7);
+
+        assertThrows(TaskRejectedException.class, () -> jobService.stream(3L, 7));
+        assertThrows(TaskRejectedException.class, () -> jobService.submit(3L, 7, null, "carol@example.com"));
+
+        // A finished stream frees its slot
+        streamFinishers.get(0).run();
+        assertNotNull(jobService.stream(3L, 7));
+    }
+
+    @Test
+    void stream_ReleasesTheSlotWhenItCannotStart() {
+        ReflectionTestUtils.setField(jobService, "maxActiveJobs", 1);
+        when(generationService.streamMealPlan(eq(1L), anyInt(), any(Runnable.class)))
+            .thenThrow(new RuntimeException("Profile not found"));
+
+        assertThrows(RuntimeException.class, () -> jobService.stream(1L, 7));
+        assertNotNull(jobService.stream(2L, 7));
+    }
+}
@@ -0,0 +1,101 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.model.UserProfile;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MealPlanPoolServiceTest {
+
+    private GeminiAIService geminiAIService;
+    private AIMealPlanParserService parserService;
+    private SimpleMeterRegistry registry;
+    private MealPlanPoolService pool;
+
+    @BeforeEach
+    void setUp() {
+        geminiAIService = mock(GeminiAIService.class);
+        parserService = mock(AIMealPlanParserService.class);
+        registry = new SimpleMeterRegistry();
+        pool = new MealPlanPoolService(geminiAIService, parserService, registry,
+            true, 2, 50, 10, 72, List.of(new BigDecimal("5"), new BigDecimal("10")));
+
+        when(geminiAIService.generateMealPlan(any(UserProfile.class), anyInt(), eq(false))).thenReturn("{}");
+        when(parserService.parseResponse(anyString()))
+            .thenAnswer(invocation -> plan("Peanut noodles", "peanut butter"));
+    }
+
+    @Test
+    void take_MissesUntilRefillAndThenServesPooledPlans() {
+        UserProfile profile = profile("lose weight", "none", new BigDecimal("7"));
+
+        assertTrue(pool.take(profile, 7).isEmpty());
+        pool.refill();
+
+        verify(geminiAIService, times(2)).generateMealPlan(any(UserProfile.class), eq(7), eq(false));
+        assertTrue(pool.take(profile, 7).isPresent());
+        assertTrue(pool.take(profile, 7).isPresent());
+        assertTrue(pool.take(profile, 7).isEmpty());
+        assertEquals(2.0, registry.get("meal-plan.pool.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void take_NeverServesProfilesWithAllergies() {
+        when(parserService.parseResponse(anyString()))
+            .thenAnswer(invocation -> plan("Mac and cheese", "cheddar cheese"));
+        pool.take(profile("lose weight", "none", new BigDecimal("7")), 7);
+        pool.refill();
+
+        // Same archetype (budget 8 is in the same band); "dairy" appears nowhere in the plan's text
+        UserProfile dairy = profile("Lose Weight", "dairy", new BigDecimal("8"));
+        UserProfile peanuts = profile("lose weight", "peanuts; Peanut", new BigDecimal("7"));
+
+        assertTrue(pool.take(dairy, 7).isEmpty());
+        assertTrue(pool.take(peanuts, 7).isEmpty());
+        assertEquals(2.0, registry.get("meal-plan.pool.size").gauge().value());
+        assertTrue(pool.take(profile("lose weight", "None", new BigDecimal("7")), 7).isPresent());
+    }
+
+    @Test
+    void take_DoesNotShareAcrossBudgetBands() {
+        pool.take(profile("lose weight", "none", new BigDecimal("7")), 7);
+        pool.refill();
+
+        assertTrue(pool.take(profile("lose weight", "none", new BigDecimal("25")), 7).isEmpty());
+    }
+
+    private UserProfile profile(String goal, String allergies, BigDecimal budget) {
+        UserProfile profile = new UserProfile();
+        profile.setGoal(goal);
+        profile.setDietaryPreference("balanced");
+        profile.setActivityLevel("moderate");
+        profile.setAllergies(allergies);
+        profile.setBudgetPerMeal(budget);
+        return profile;
+    }
+
+    private AIMealPlanResponse plan(String mealName, String ingredientName) {
+        AIMealPlanResponse.AIIngredient ingredient = new AIMealPlanResponse.AIIngredient();
+        ingredient.setName(ingredientName);
+        AIMealPlanResponse.AIMeal meal = new AIMealPlanResponse.AIMeal();
+        meal.setName(mealName);
+        meal.setIngredients(List.of(ingredient));
+        AIMealPlanResponse.AIDayPlan day = new AIMealPlanResponse.AIDayPlan();
+        day.setDay(1);
+        day.setMeals(List.of(meal));
+        AIMealPlanResponse response = new AIMealPlanResponse();
+        response.setDays(List.of(day));
+        return response;
+    }
+}
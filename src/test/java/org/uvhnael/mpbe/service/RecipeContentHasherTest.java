@@ -0,0 +1,49 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeContentHasherTest {
+    
+    private static AIMealPlanResponse.AIMeal meal(String name, String... ingredients) {
+        AIMealPlanResponse.AIMeal meal = new AIMealPlanResponse.AIMeal();
+        meal.setName(name);
+        List<AIMealPlanResponse.AIIngredient> list = new ArrayList<>();
+        for (String spec : ingredients) {
+            String[] parts = spec.split("\\|");
+            AIMealPlanResponse.AIIngredient ingredient = new AIMealPlanResponse.AIIngredient();
+            ingredient.setName(parts[0]);
+            ingredient.setQuantity(new BigDecimal(parts[1]));
+            ingredient.setUnit(parts[2]);
+            list.add(ingredient);
+        }
+        meal.setIngredients(list);
+        return meal;
+    }
+    
+    @Test
+    void hash_IgnoresCaseWhitespaceTrailingZerosAndIngredientOrder() {
+        AIMealPlanResponse.AIMeal original = meal("Oat Porridge", "oats|50|g", "milk|200|ml");
+        AIMealPlanResponse.AIMeal variant = meal("  oat   porridge ", "Milk|200.00|ML", "OATS|50.0|g");
+        variant.setDescription("A different description");
+        variant.setInstructions("Different steps");
+        
+        assertEquals(RecipeContentHasher.hash(original), RecipeContentHasher.hash(variant));
+        assertEquals(64, RecipeContentHasher.hash(original).length());
+    }
+    
+    @Test
+    void hash_DiffersWhenAQuantityOrUnitChanges() {
+        String original = RecipeContentHasher.hash(meal("Oat Porridge", "oats|50|g"));
+        
+        assertNotEquals(original, RecipeContentHasher.hash(meal("Oat Porridge", "oats|60|g")));
+        assertNotEquals(original, RecipeContentHasher.hash(meal("Oat Porridge", "oats|50|cup")));
+        assertNotEquals(original, RecipeContentHasher.hash(meal("Oat Porridge")));
+    }
+}
@@ -0,0 +1,92 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeSearchIndexTest {
+
+    private final RecipeSearchIndex index = new RecipeSearchIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.index(recipe(1L, "Tomato Soup", "A warm soup for cold days", "Italian", "tomatoes", "onion", "basil"));
+        index.index(recipe(2L, "Grilled Chicken Salad", "Chicken with fresh greens", "American", "chicken breast", "lettuce", "tomato"));
+        index.index(recipe(3L, "Phở Bò", "Vietnamese beef noodle soup", "Vietnamese", "rice noodles", "beef", "star anise"));
+        index.index(recipe(4L, "Baked Salmon", "Salmon baking in the oven with lemon", "French", "salmon", "lemons"));
+        index.index(recipe(5L, "Fried Rice", "Quick rice with eggs", "Chinese", "rice", "eggs", "peas"));
+    }
+
+    @Test
+    void search_RanksNameMatchesAboveIngredientMatches() {
+        RecipeSearchIndex.Hits hits = index.search("tomato", 0, 10);
+
+        assertEquals(List.of(1L, 2L), hits.ids());
+        assertEquals(2, hits.total());
+    }
+
+    @Test
+    void search_MatchesWordFormsThroughStemming() {
+        assertEquals(List.of(4L), index.search("bake salmons", 0, 10).ids());
+        assertEquals(List.of(5L), index.search("egg", 0, 10).ids());
+    }
+
+    @Test
+    void search_ToleratesOneTypo() {
+        assertEquals(List.of(4L), index.search("slamon", 0, 10).ids());
+        assertEquals(List.of(2L), index.search("chiken", 0, 10).ids());
+    }
+
+    @Test
+    void search_ExpandsTheLastWordAsPrefix() {
+        assertEquals(List.of(2L), index.search("grilled chick", 0, 10).ids());
+    }
+
+    @Test
+    void search_IgnoresAccentsAndCase() {
+        assertEquals(List.of(3L), index.search("PHO bo", 0, 10).ids());
+    }
+
+    @Test
+    void search_FallsBackToPartialMatchesWhenNoRecipeHasEveryWord() {
+        RecipeSearchIndex.Hits hits = index.search("beef lemon", 0, 10);
+
+        assertEquals(2, hits.total());
+        assertTrue(hits.ids().containsAll(List.of(3L, 4L)));
+    }
+
+    @Test
+    void search_PagesThroughRankedHits() {
+        RecipeSearchIndex.Hits page = index.search("soup", 1, 1);
+
+        assertEquals(2, page.total());
+        assertEquals(1, page.ids().size());
+        assertNotEquals(index.search("soup", 0, 1).ids(), page.ids());
+    }
+
+    @Test
+    void index_ReplacesAndRemovesDocuments() {
+        index.index(recipe(1L, "Pumpkin Soup", null, "Italian", "pumpkin"));
+        index.remove(3L);
+
+        assertTrue(index.search("tomato", 0, 10).ids().stream().noneMatch(id -> id == 1L));
+        assertEquals(List.of(1L), index.search("pumpkin", 0, 10).ids());
+        assertTrue(index.search("noodles", 0, 10).ids().isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void withinOneEdit_CountsTranspositionsAsOneEdit() {
+        assertTrue(RecipeSearchIndex.withinOneEdit("salmon", "slamon"));
+        assertTrue(RecipeSearchIndex.withinOneEdit("chicken", "chiken"));
+        assertFalse(RecipeSearchIndex.withinOneEdit("salmon", "lemon"));
+    }
+
+    private static RecipeSearchIndex.Document recipe(Long id, String name, String description, String cuisine,
+                                                     String... ingredients) {
+        return new RecipeSearchIndex.Document(id, name, description, cuisine, List.of(ingredients));
+    }
+}
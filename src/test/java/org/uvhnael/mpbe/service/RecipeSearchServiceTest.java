@@ -0,0 +1,128 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.uvhnael.mpbe.dto.projection.RecipeSearchRow;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.Recipe;
+import org.uvhnael.mpbe.repository.RecipeRepository;
+import org.uvhnael.mpbe.repository.StreamingQueries;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecipeSearchServiceTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Mock
+    private StreamingQueries streamingQueries;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private RecipeSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new RecipeSearchService(recipeRepository, streamingQueries, transactionManager,
+            new SimpleMeterRegistry(), tasks::add, true);
+        when(recipeRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<Recipe> recipes = new ArrayList<>();
+            ids.forEach(id -> recipes.add(recipe(id, "recipe " + id)));
+            return recipes;
+        });
+    }
+
+    @Test
+    void buildOnStartup_BuildsOnTheIndexExecutor() {
+        stubScan(row(1L, "Tomato Soup", "Italian", null));
+
+        searchService.buildOnStartup();
+
+        verifyNoInteractions(streamingQueries);
+        tasks.remove().run();
+        assertEquals(List.of(1L), search("tomato"));
+    }
+
+    @Test
+    void rebuild_CollectsTheIngredientRowsOfEachRecipe() {
+        stubScan(
+            row(1L, "Tomato Soup", "Italian", "basil"),
+            row(2L, "Green Salad", "American", null),
+            row(4L, "Baked Salmon", "French", "lemon"),
+            row(4L, "Baked Salmon", "French", "dill"));
+
+        searchService.rebuild();
+
+        assertEquals(List.of(1L), search("basil"));
+        assertEquals(List.of(4L), search("lemon"));
+        assertEquals(List.of(4L), search("dill"));
+        assertEquals(List.of(2L), search("salad"));
+        assertEquals(List.of(4L), search("salmon"));
+    }
+
+    @Test
+    void rebuild_AppliesChangesCommittedWhileItWasReading() {
+        when(streamingQueries.streamSearchRows()).thenAnswer(invocation -> Stream.of(
+                row(1L, "Tomato Soup", "Italian", "tomato"),
+                row(2L, "Plain Pasta", "Italian", "pasta"))
+            // Recipe 1 is deleted and recipe 2 edited after the scan read them
+            .onClose(() -> searchService.onRecipesChanged(new RecipeSearchService.RecipesChanged(List.of(1L, 2L)))));
+        when(recipeRepository.findWithIngredientsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.contains(2L) ? List.of(recipe(2L, "Pesto Pasta", "basil", "pasta")) : List.of();
+        });
+
+        searchService.rebuild();
+
+        assertEquals(List.of(2L), search("pesto"));
+        assertEquals(List.of(), search("soup"));
+    }
+
+    private void stubScan(RecipeSearchRow... rows) {
+        when(streamingQueries.streamSearchRows()).thenReturn(Stream.of(rows));
+    }
+
+    private static RecipeSearchRow row(Long id, String name, String cuisine, String ingredientName) {
+        return new RecipeSearchRow(id, name, null, cuisine, ingredientName);
+    }
+
+    private List<Long> search(String query) {
+        return searchService.search(query, PageRequest.of(0, 10)).getContent().stream()
+            .map(Recipe::getId)
+            .toList();
+    }
+
+    private static Recipe recipe(Long id, String name, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        recipe.setIngredients(Stream.of(ingredientNames).map(ingredientName -> {
+            Ingredient ingredient = new Ingredient();
+            ingredient.setName(ingredientName);
+            ingredient.setRecipe(recipe);
+            return ingredient;
+        }).toList());
+        return recipe;
+    }
+}
@@ -0,0 +1,112 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.model.Ingredient;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShoppingListAggregatorTest {
+    
+    private final ShoppingListAggregator aggregator = new ShoppingListAggregator();
+    
+    @Test
+    void aggregate_MergesMassesAcrossUnits() {
+        List<ShoppingListAggregator.Line> lines = aggregator.aggregate(List.of(
+            ingredient("Chicken Breast", "500", "g"),
+            ingredient("chicken breasts, diced", "1", "kg")));
+        
+        assertEquals(1, lines.size());
+        assertLine(lines.get(0), "chicken breast", "1.50", "kg");
+    }
+    
+    @Test
+    void totals_FoldsRowsOneAtATimeLikeAggregate() {
+        ShoppingListAggregator.Totals totals = aggregator.totals();
+        for (int day = 0; day < 30; day++) {
+            totals.add("Rice", new BigDecimal("100"), "g").add("eggs", new BigDecimal("2"), "large");
+        }
+        
+        List<ShoppingListAggregator.Line> lines = totals.lines();
+        
+        assertEquals(2, lines.size());
+        assertLine(lines.get(0), "rice", "3.00", "kg");
+        assertLine(lines.get(1), "egg", "60.00", "piece");
+    }
+    
+    @Test
+    void aggregate_FoldsVolumesIntoMassWithDensity() {
+        List<ShoppingListAggregator.Line> lines = aggregator.aggregate(List.of(
+            ingredient("flour", "200", "g"),
+            ingredient("flour (sifted)", "100", "grams"),
+            ingredient("Flour", "1", "cup")));
+        
+        // 300 g + 236.6 ml * 0.53 g/ml = 425.4 g, rounded up to 450 g
+        assertEquals(1, lines.size());
+        assertLine(lines.get(0), "flour", "450.00", "g");
+    }
+    
+    @Test
+    void aggregate_KeepsUnconvertibleUnitsAsSeparateLines() {
+        List<ShoppingListAggregator.Line> lines = aggregator.aggregate(List.of(
+            ingredient("basil", "1", "bunch"),
+            ingredient("basil", "20", "g")));
+        
+        assertEquals(2, lines.size());
+        assertLine(lines.get(0), "basil", "20.00", "g");
+        assertLine(lines.get(1), "basil", "1.00", "bunch");
+    }
+    
+    @Test
+    void aggregate_RoundsSmallAmountsInSmallSteps() {
+        List<ShoppingListAggregator.Line> lines = aggregator.aggregate(List.of(
+            ingredient("vanilla extract", "1", "tsp"),
+            ingredient("salt", "2", "g"),
+            ingredient("paprika", "2", "tsp"),
+            ingredient("olive oil", "3", "tbsp")));
+        
+        // 4.9 ml, 2 g, 9.9 ml and 44.4 ml
+        assertLine(lines.get(0), "vanilla extract", "5.00", "ml");
+        assertLine(lines.get(1), "salt", "2.00", "g");
+        assertLine(lines.get(2), "paprika", "10.00", "ml");
+        assertLine(lines.get(3), "olive oil", "45.00", "ml");
+        assertEquals(new BigDecimal("5.00"), aggregator.roundUp("vanilla extract", "ml", 4.93));
+        assertEquals(new BigDecimal("100.00"), aggregator.roundUp("rice", "g", 60));
+    }
+    
+    @Test
+    void aggregate_RoundsCountsUpToPacks() {
+        List<ShoppingListAggregator.Line> lines = aggregator.aggregate(List.of(
+            ingredient("Large Eggs", "2", "pieces"),
+            ingredient("egg", "3", null),
+            ingredient("tomatoes (ripe)", "1.5", "whole")));
+        
+        assertEquals(2, lines.size());
+        assertLine(lines.get(0), "egg", "6.00", "piece");
+        assertLine(lines.get(1), "tomato", "2.00", "piece");
+    }
+    
+    @Test
+    void normalizeName_StripsDescriptorsNotesAndPlurals() {
+        assertEquals("tomato", ShoppingListAggregator.normalizeName("2 Large Tomatoes, diced"));
+        assertEquals("blueberry", ShoppingListAggregator.normalizeName("fresh blueberries"));
+        assertEquals("olive oil", ShoppingListAggregator.normalizeName("Extra Virgin Olive Oil (for frying)"));
+        assertEquals("hummus", ShoppingListAggregator.normalizeName("hummus"));
+    }
+    
+    private void assertLine(ShoppingListAggregator.Line line, String name, String quantity, String unit) {
+        assertEquals(name, line.name());
+        assertEquals(new BigDecimal(quantity), line.quantity());
+        assertEquals(unit, line.unit());
+    }
+    
+    private Ingredient ingredient(String name, String quantity, String unit) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setName(name);
+        ingredient.setQuantity(new BigDecimal(quantity));
+        ingredient.setUnit(unit);
+        return ingredient;
+    }
+}
@@ -0,0 +1,131 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.projection.MealPlanWindow;
+import org.uvhnael.mpbe.dto.request.MergedShoppingListRequest;
+import org.uvhnael.mpbe.model.MealPlan;
+import org.uvhnael.mpbe.model.ShoppingList;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.MealPlanItemRepository;
+import org.uvhnael.mpbe.repository.MealPlanRepository;
+import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListRepository;
+import org.uvhnael.mpbe.repository.StreamingQueries;
+import org.uvhnael.mpbe.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingListGeneratorServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 5);
+
+    @Mock
+    private ShoppingListItemRepository itemRepository;
+
+    @Mock
+    private ShoppingListRepository shoppingListRepository;
+
+    @Mock
+    private MealPlanRepository mealPlanRepository;
+
+    @Mock
+    private MealPlanItemRepository mealPlanItemRepository;
+
+    @Mock
+    private StreamingQueries streamingQueries;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private IngredientCategorizer categorizer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ShoppingListGeneratorService generatorService;
+
+    @BeforeEach
+    void setUp() {
+        when(shoppingListRepository.save(any(ShoppingList.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void generateMerged_LinksASinglePlanWhenTheWholePlanIsMerged() {
+        MealPlanWindow week = new MealPlanWindow(4L, MONDAY, MONDAY.plusDays(6));
+        when(mealPlanRepository.findWindowsByUserIdAndIdIn(USER_ID, List.of(4L))).thenReturn(List.of(week));
+        when(streamingQueries.streamIngredientLines(4L, 1, Integer.MAX_VALUE))
+            .thenReturn(Stream.of(line("rice", "100"), line("rice", "80")));
+        MealPlan plan = new MealPlan();
+        when(mealPlanRepository.getReferenceById(4L)).thenReturn(plan);
+
+        ShoppingList merged = generatorService.generateMerged(USER_ID, request(List.of(4L), null, null));
+
+        assertSame(plan, merged.getMealPlan());
+        assertEquals(List.of("rice"), names(merged));
+    }
+
+    @Test
+    void generateMerged_DoesNotLinkAPlanWhenOnlySomeOfItsDaysAreMerged() {
+        MealPlanWindow week = new MealPlanWindow(4L, MONDAY, MONDAY.plusDays(6));
+        when(mealPlanRepository.findWindowsByUserIdAndIdIn(USER_ID, List.of(4L))).thenReturn(List.of(week));
+        when(streamingQueries.streamIngredientLines(4L, 2, 3)).thenReturn(Stream.of(line("rice", "100")));
+
+        ShoppingList merged = generatorService.generateMerged(USER_ID,
+            request(List.of(4L), MONDAY.plusDays(1), MONDAY.plusDays(2)));
+
+        assertNull(merged.getMealPlan());
+        assertEquals(List.of("rice"), names(merged));
+        verify(mealPlanRepository, never()).getReferenceById(any());
+    }
+
+    @Test
+    void generateMerged_LinksNoPlanWhenSeveralAreMerged() {
+        LocalDate to = MONDAY.plusDays(13);
+        when(mealPlanRepository.findWindowsByUserIdOverlapping(USER_ID, MONDAY, to)).thenReturn(List.of(
+            new MealPlanWindow(4L, MONDAY, MONDAY.plusDays(6)),
+            new MealPlanWindow(5L, MONDAY.plusDays(7), to)));
+        when(streamingQueries.streamIngredientLines(4L, 1, 14)).thenReturn(Stream.of(line("rice", "100")));
+        when(streamingQueries.streamIngredientLines(5L, 1, 7)).thenReturn(Stream.of(line("oats", "40")));
+
+        ShoppingList merged = generatorService.generateMerged(USER_ID, request(List.of(), MONDAY, to));
+
+        assertNull(merged.getMealPlan());
+        assertEquals(List.of("rice", "oat"), names(merged));
+    }
+
+    private static MergedShoppingListRequest request(List<Long> ids, LocalDate from, LocalDate to) {
+        MergedShoppingListRequest request = new MergedShoppingListRequest();
+        request.setMealPlanIds(ids);
+        request.setFrom(from);
+        request.setTo(to);
+        return request;
+    }
+
+    private static IngredientLine line(String name, String grams) {
+        return new IngredientLine(name, new BigDecimal(grams), "g");
+    }
+
+    private static List<String> names(ShoppingList shoppingList) {
+        return shoppingList.getItems().stream().map(ShoppingListItem::getIngredientName).toList();
+    }
+}
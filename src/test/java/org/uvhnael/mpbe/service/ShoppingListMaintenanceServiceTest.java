@@ -0,0 +1,224 @@
+package org.uvhnael.mpbe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.uvhnael.mpbe.dto.projection.IngredientLine;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+import org.uvhnael.mpbe.model.Ingredient;
+import org.uvhnael.mpbe.model.ShoppingList;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.IngredientRepository;
+import org.uvhnael.mpbe.repository.MealPlanItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingListMaintenanceServiceTest {
+
+    private static final Long MEAL_PLAN_ID = 7L;
+
+    @Mock
+    private ShoppingListRepository shoppingListRepository;
+
+    @Mock
+    private ShoppingListItemRepository itemRepository;
+
+    @Mock
+    private MealPlanItemRepository mealPlanItemRepository;
+
+    @Mock
+    private IngredientRepository ingredientRepository;
+
+    @Mock
+    private IngredientCategorizer categorizer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ShoppingListMaintenanceService maintenanceService;
+
+    private ShoppingList shoppingList;
+    private long nextItemId = 1;
+
+    @BeforeEach
+    void setUp() {
+        shoppingList = new ShoppingList();
+        shoppingList.setId(3L);
+    }
+
+    @Test
+    void applyDelta_AdjustsExistingItemsInPlaceAndKeepsTheirCheckedState() {
+        ShoppingListItem tomatoes = item("Tomatoes", "5", "piece", true);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(tomatoes));
+        when(categorizer.categorize("chicken breast")).thenReturn("Meat & Seafood");
+        planHolds(line("tomato", "2", "piece"), line("Tomatoes, diced", "1", "pieces"),
+            line("chicken breast", "180", "g"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID,
+            List.of(ingredient("tomato", "3", "piece")),
+            List.of(ingredient("Tomatoes, diced", "1", "pieces"), ingredient("chicken breast", "180", "g")));
+
+        List<ShoppingListItem> saved = captureSaved();
+        assertEquals(2, saved.size());
+        assertSame(tomatoes, saved.get(0));
+        assertEquals(0, new BigDecimal("3").compareTo(tomatoes.getQuantity()));
+        assertTrue(tomatoes.getIsChecked());
+
+        ShoppingListItem chicken = saved.get(1);
+        assertEquals("chicken breast", chicken.getIngredientName());
+        assertEquals(0, new BigDecimal("200").compareTo(chicken.getQuantity()));
+        assertEquals("g", chicken.getUnit());
+        assertEquals("Meat & Seafood", chicken.getCategory());
+        assertFalse(chicken.getIsChecked());
+    }
+
+    @Test
+    void applyDelta_ConvertsIntoTheUnitOfTheExistingItem() {
+        ShoppingListItem milk = item("milk", "1.25", "l", false);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(milk));
+        planHolds(line("milk", "1.25", "l"), line("milk", "1", "cup"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID, List.of(), List.of(ingredient("milk", "1", "cup")));
+
+        assertEquals(0, new BigDecimal("1.50").compareTo(milk.getQuantity()));
+        assertEquals("l", milk.getUnit());
+    }
+
+    @Test
+    void applyDelta_RemovesItemsThatAreNoLongerNeeded() {
+        ShoppingListItem eggs = item("egg", "6", "piece", false);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(eggs));
+        planHolds(line("bread", "2", "slice"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID, List.of(ingredient("eggs", "6", "large")), List.of());
+
+        verify(itemRepository).deleteAll(List.of(eggs));
+        assertTrue(captureSaved().isEmpty());
+        verify(eventPublisher).publishEvent(ShoppingListDelta.deleted(shoppingList.getId(), List.of(eggs.getId())));
+    }
+
+    @Test
+    void applyDelta_RecomputesFromThePlanInsteadOfTheRoundedQuantity() {
+        // Two meals of 130 g were rounded up to 300 g; one of them is swapped out
+        ShoppingListItem flour = item("flour", "300", "g", true);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(flour));
+        planHolds(line("flour", "130", "g"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID, List.of(ingredient("flour", "130", "g")), List.of());
+
+        assertEquals(0, new BigDecimal("150").compareTo(flour.getQuantity()));
+        assertTrue(flour.getIsChecked());
+
+        // Swapping the other one out as well leaves nothing, not a rounding remainder
+        planHolds();
+        maintenanceService.applyDelta(MEAL_PLAN_ID, List.of(ingredient("flour", "130", "g")), List.of());
+
+        verify(itemRepository).deleteAll(List.of(flour));
+    }
+
+    @Test
+    void applyDelta_KeepsWhatTheUserAddedToAnItem() {
+        // The plan's 260 g were rounded up to 300 g and the user raised the item to 500 g
+        ShoppingListItem flour = item("flour", "500", "g", false);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(flour));
+        planHolds(line("flour", "130", "g"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID, List.of(ingredient("flour", "130", "g")), List.of());
+
+        assertEquals(0, new BigDecimal("350").compareTo(flour.getQuantity()));
+        verify(itemRepository).deleteAll(List.of());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void applyDelta_ReadsOnlyThePlanRowsOfTheTouchedIngredients() {
+        ShoppingListItem rice = item("rice", "200", "g", false);
+        when(shoppingListRepository.findByMealPlanId(MEAL_PLAN_ID)).thenReturn(List.of(shoppingList));
+        when(itemRepository.findByMealPlanIdAndIngredientNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(rice));
+        planHolds(line("rice", "150", "g"));
+
+        maintenanceService.applyDelta(MEAL_PLAN_ID,
+            List.of(ingredient("Basmati Rice", "0", "g"), ingredient("Tomatoes", "1", "piece")),
+            List.of(ingredient("rice", "50", "g"), ingredient("tomatoes", "1", "piece")));
+
+        ArgumentCaptor<Collection<String>> names = ArgumentCaptor.forClass(Collection.class);
+        verify(mealPlanItemRepository).findIngredientLinesByNames(eq(MEAL_PLAN_ID), names.capture());
+        assertTrue(names.getValue().containsAll(List.of("rice", "basmati rice", "tomatoes")));
+        assertFalse(names.getValue().contains("flour"));
+        verifyNoMoreInteractions(mealPlanItemRepository);
+        // 100 g rounded to 100 g before, 150 g to 150 g now
+        assertEquals(0, new BigDecimal("250").compareTo(rice.getQuantity()));
+    }
+
+    @Test
+    void applyDelta_DoesNothingWhenTheMealsUseTheSameIngredients() {
+        maintenanceService.applyDelta(MEAL_PLAN_ID,
+            List.of(ingredient("rice", "100", "g")),
+            List.of(ingredient("Rice", "0.1", "kg")));
+
+        verifyNoInteractions(shoppingListRepository, itemRepository);
+    }
+
+    private void planHolds(IngredientLine... lines) {
+        when(mealPlanItemRepository.findIngredientLinesByNames(eq(MEAL_PLAN_ID), anyCollection()))
+            .thenReturn(List.of(lines));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ShoppingListItem> captureSaved() {
+        ArgumentCaptor<List<ShoppingListItem>> captor = ArgumentCaptor.forClass(List.class);
+        verify(itemRepository).saveAll(captor.capture());
+        return new ArrayList<>(captor.getValue());
+    }
+
+    private ShoppingListItem item(String name, String quantity, String unit, boolean checked) {
+        ShoppingListItem item = new ShoppingListItem();
+        item.setId(nextItemId++);
+        item.setShoppingList(shoppingList);
+        item.setIngredientName(name);
+        item.setQuantity(new BigDecimal(quantity));
+        item.setUnit(unit);
+        item.setIsChecked(checked);
+        return item;
+    }
+
+    private static IngredientLine line(String name, String quantity, String unit) {
+        return new IngredientLine(name, new BigDecimal(quantity), unit);
+    }
+
+    private static Ingredient ingredient(String name, String quantity, String unit) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setName(name);
+        ingredient.setQuantity(new BigDecimal(quantity));
+        ingredient.setUnit(unit);
+        return ingredient;
+    }
+}
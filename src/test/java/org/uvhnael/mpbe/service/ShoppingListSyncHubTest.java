@@ -0,0 +1,147 @@
+package org.uvhnael.mpbe.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShoppingListSyncHubTest {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private long now = 1;
+    private final ShoppingListSyncHub hub = new ShoppingListSyncHub(tasks::add, new SimpleMeterRegistry(), 4, 60000, 10000, () -> now);
+
+    /**
+     * Records the data of every event instead of writing to a response
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private boolean broken;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            events.add(text.toString());
+        }
+    }
+
+    /**
+     * Blocks in send until released, like a write to a client that stopped reading
+     */
+    private static class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static ShoppingListDelta check(long listId, long itemId) {
+        return ShoppingListDelta.checked(listId, List.of(itemId), true);
+    }
+
+    @Test
+    void onDelta_FansOutToSubscribersOfTheListOnly() {
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        RecordingEmitter otherList = new RecordingEmitter();
+        hub.register(1L, first);
+        hub.register(1L, second);
+        hub.register(2L, otherList);
+        runTasks();
+
+        hub.onDelta(check(1L, 10L));
+        runTasks();
+
+        assertEquals(2, first.events.size());
+        assertTrue(first.events.get(1).contains("event:check"));
+        assertEquals(first.events, second.events);
+        assertEquals(1, otherList.events.size());
+    }
+
+    @Test
+    void onDelta_ReplacesTheBacklogOfASlowSubscriberWithResync() {
+        RecordingEmitter slow = new RecordingEmitter();
+        hub.register(1L, slow);
+
+        for (long itemId = 1; itemId <= 10; itemId++) {
+            hub.onDelta(check(1L, itemId));
+        }
+        runTasks();
+
+        assertTrue(slow.events.stream().anyMatch(event -> event.contains("event:" + ShoppingListSyncHub.RESYNC)));
+        assertTrue(slow.events.size() <= 4);
+    }
+
+    @Test
+    void onDelta_DropsSubscribersThatFailToReceive() {
+        RecordingEmitter broken = new RecordingEmitter();
+        hub.register(1L, broken);
+        runTasks();
+        broken.broken = true;
+
+        hub.onDelta(check(1L, 10L));
+        runTasks();
+
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    @Test
+    void dropStalledSubscribers_DropsASubscriberStuckPastTheSendDeadline() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        hub.register(1L, stalled);
+        Thread drain = new Thread(this::runTasks);
+        drain.start();
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        hub.dropStalledSubscribers();
+        assertEquals(1, hub.subscriberCount());
+
+        now += TimeUnit.SECONDS.toNanos(6);
+        hub.dropStalledSubscribers();
+        assertEquals(0, hub.subscriberCount());
+        hub.onDelta(check(1L, 10L));
+        assertTrue(tasks.isEmpty());
+
+        stalled.release.countDown();
+        drain.join(5000);
+        assertTrue(stalled.completed);
+    }
+}
@@ -0,0 +1,174 @@
+package org.uvhnael.mpbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.uvhnael.mpbe.dto.request.ShoppingListItemBatchRequest;
+import org.uvhnael.mpbe.dto.response.ShoppingListDelta;
+import org.uvhnael.mpbe.model.ShoppingList;
+import org.uvhnael.mpbe.model.ShoppingListItem;
+import org.uvhnael.mpbe.repository.ShoppingListItemBulkWriter;
+import org.uvhnael.mpbe.repository.ShoppingListItemRepository;
+import org.uvhnael.mpbe.repository.ShoppingListRepository;
+import org.uvhnael.mpbe.repository.StreamingQueries;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deltas published by the item services reach subscribers through the real hub, only once
+ * the transaction commits
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ShoppingListItemService.class, ShoppingListGeneratorService.class, ShoppingListItemBulkWriter.class,
+    ShoppingListSyncHub.class, StreamingQueries.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShoppingListSyncIntegrationTest {
+
+    @TestConfiguration
+    static class SyncConfig {
+
+        // Drain on the publishing thread, so events are visible when the call returns
+        @Bean(name = "syncTaskExecutor")
+        Executor syncTaskExecutor() {
+            return Runnable::run;
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @MockBean
+    private GeminiAIService geminiAIService;
+
+    @MockBean
+    private IngredientCategorizer categorizer;
+
+    @Autowired
+    private ShoppingListItemService itemService;
+
+    @Autowired
+    private ShoppingListGeneratorService generatorService;
+
+    @Autowired
+    private ShoppingListSyncHub hub;
+
+    @Autowired
+    private ShoppingListRepository shoppingListRepository;
+
+    @Autowired
+    private ShoppingListItemRepository itemRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Records the deltas it is sent instead of writing to a response
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<ShoppingListDelta> deltas = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().forEach(part -> {
+                if (part.getData() instanceof ShoppingListDelta delta) {
+                    deltas.add(delta);
+                }
+            });
+        }
+    }
+
+    private ShoppingListItem item(ShoppingList shoppingList, String name) {
+        ShoppingListItem item = new ShoppingListItem();
+        item.setShoppingList(shoppingList);
+        item.setIngredientName(name);
+        item.setQuantity(BigDecimal.ONE);
+        item.setUnit("piece");
+        item.setIsChecked(false);
+        return itemRepository.save(item);
+    }
+
+    private static ShoppingListItemBatchRequest batch(List<Long> check, List<Long> delete) {
+        ShoppingListItemBatchRequest request = new ShoppingListItemBatchRequest();
+        request.setCheck(check);
+        request.setDelete(delete);
+        return request;
+    }
+
+    private RecordingEmitter subscribe(ShoppingList shoppingList) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.register(shoppingList.getId(), emitter);
+        return emitter;
+    }
+
+    @Test
+    void applyBatch_PublishesOnlyTheListsOwnChangesAfterCommit() {
+        ShoppingList list = shoppingListRepository.save(new ShoppingList());
+        ShoppingList other = shoppingListRepository.save(new ShoppingList());
+        ShoppingListItem apple = item(list, "apple");
+        ShoppingListItem pear = item(list, "pear");
+        ShoppingListItem foreign = item(other, "plum");
+        RecordingEmitter emitter = subscribe(list);
+
+        itemService.applyBatch(list.getId(), batch(List.of(apple.getId()), List.of(pear.getId(), foreign.getId())));
+
+        assertEquals(List.of(
+                ShoppingListDelta.checked(list.getId(), List.of(apple.getId()), true),
+                ShoppingListDelta.deleted(list.getId(), List.of(pear.getId()))),
+            emitter.deltas);
+        assertTrue(itemRepository.existsById(foreign.getId()));
+    }
+
+    @Test
+    void applyBatch_PublishesNothingWhenTheTransactionRollsBack() {
+        ShoppingList list = shoppingListRepository.save(new ShoppingList());
+        ShoppingListItem apple = item(list, "apple");
+        RecordingEmitter emitter = subscribe(list);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            itemService.applyBatch(list.getId(), batch(List.of(apple.getId()), List.of()));
+            status.setRollbackOnly();
+        });
+
+        assertTrue(emitter.deltas.isEmpty());
+        assertFalse(itemRepository.findById(apple.getId()).orElseThrow().getIsChecked());
+    }
+
+    @Test
+    void clearShoppingList_TellsSubscribersToReload() {
+        ShoppingList list = shoppingListRepository.save(new ShoppingList());
+        item(list, "apple");
+        RecordingEmitter emitter = subscribe(list);
+
+        generatorService.clearShoppingList(list.getId());
+
+        assertEquals(List.of(ShoppingListDelta.resync(list.getId())), emitter.deltas);
+        assertTrue(itemRepository.findByShoppingListId(list.getId()).isEmpty());
+    }
+}
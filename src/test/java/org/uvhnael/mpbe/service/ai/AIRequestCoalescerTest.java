@@ -0,0 +1,123 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIRequestCoalescerTest {
+
+    private SimpleMeterRegistry registry;
+    private AIRequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescer = new AIRequestCoalescer(registry);
+    }
+
+    @Test
+    void execute_SharesOneCallBetweenConcurrentCallersWithTheSameKey() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<CompletableFuture<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    awaitQuietly(start);
+                    return coalescer.execute("key", () -> {
+                        calls.incrementAndGet();
+                        return upstream;
+                    });
+                }, callers));
+            }
+            start.countDown();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (CompletableFuture<CompletableFuture<String>> result : results) {
+                futures.add(result.get(5, TimeUnit.SECONDS));
+            }
+
+            upstream.complete("answer");
+
+            assertEquals(1, calls.get());
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("answer", future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(7.0, registry.get("ai.coalescer.calls").tag("result", "shared").counter().count());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_StartsANewCallOnceThePreviousOneCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("1", coalescer.execute("key", () ->
+            CompletableFuture.completedFuture(String.valueOf(calls.incrementAndGet()))).join());
+        assertEquals("2", coalescer.execute("key", () ->
+            CompletableFuture.completedFuture(String.valueOf(calls.incrementAndGet()))).join());
+        assertEquals(0.0, registry.get("ai.coalescer.in-flight").gauge().value());
+    }
+
+    @Test
+    void execute_SharesFailuresAndThenForgetsTheKey() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> leader = coalescer.execute("key", () -> upstream);
+        CompletableFuture<String> follower = coalescer.execute("key", () -> CompletableFuture.completedFuture("unused"));
+
+        upstream.completeExceptionally(new IllegalStateException("Gemini down"));
+
+        assertThrows(CompletionException.class, leader::join);
+        CompletionException shared = assertThrows(CompletionException.class, follower::join);
+        assertInstanceOf(IllegalStateException.class, shared.getCause());
+        assertEquals("retry", coalescer.execute("key", () -> CompletableFuture.completedFuture("retry")).join());
+    }
+
+    @Test
+    void execute_TurnsASupplierThatThrowsIntoAFailedFuture() {
+        CompletableFuture<String> result = coalescer.execute("key", () -> {
+            throw new IllegalArgumentException("bad prompt");
+        });
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals("ok", coalescer.execute("key", () -> CompletableFuture.completedFuture("ok")).join());
+    }
+
+    @Test
+    void execute_NeverSharesCallsAcrossKeys() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+
+        CompletableFuture<String> a = coalescer.execute("a", () -> first);
+        CompletableFuture<String> b = coalescer.execute("b", () -> second);
+        first.complete("for a");
+        second.complete("for b");
+
+        assertNotSame(a, b);
+        assertEquals("for a", a.join());
+        assertEquals("for b", b.join());
+        assertEquals(2.0, registry.get("ai.coalescer.calls").tag("result", "leader").counter().count());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.exception.AIServiceUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIResilienceGuardTest {
+    
+    private AIResilienceGuard guard(SimpleMeterRegistry registry, int failureThreshold, int maxConcurrent,
+                                    int maxQueued, int initialLimit) {
+        return guard(registry, failureThreshold, 60_000, maxConcurrent, maxQueued, 10_000, initialLimit);
+    }
+    
+    private AIResilienceGuard guard(SimpleMeterRegistry registry, int failureThreshold, long openMillis,
+                                    int maxConcurrent, int maxQueued, long maxWaitMillis, int initialLimit) {
+        return new AIResilienceGuard(registry, failureThreshold, openMillis, maxConcurrent, maxQueued,
+            maxWaitMillis, initialLimit, 1, 20_000, 0.5);
+    }
+    
+    @Test
+    void execute_OpensCircuitAfterConsecutiveFailures() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIResilienceGuard guard = guard(registry, 2, 4, 0, 4);
+        AtomicInteger calls = new AtomicInteger();
+        
+        for (int i = 0; i < 2; i++) {
+            guard.execute(() -> {
+                calls.incrementAndGet();
+                return CompletableFuture.failedFuture(new AIServiceException("Gemini API returned HTTP 503", 503));
+            });
+        }
+        CompletableFuture<String> rejected = guard.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+        
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(AIServiceUnavailableException.class, error.getCause());
+        assertEquals(2, calls.get());
+        assertEquals(AIResilienceGuard.CircuitState.OPEN, guard.circuitState());
+        assertEquals(2.0, registry.get("ai.resilience.circuit.state").gauge().value());
+    }
+    
+    @Test
+    void execute_ClientErrorsDoNotOpenCircuit() {
+        AIResilienceGuard guard = guard(new SimpleMeterRegistry(), 1, 4, 0, 4);
+        
+        guard.execute(() -> CompletableFuture.failedFuture(new AIServiceException("Gemini API returned HTTP 400", 400)));
+        
+        assertEquals(AIResilienceGuard.CircuitState.CLOSED, guard.circuitState());
+    }
+    
+    @Test
+    void execute_QueuesBeyondLimitAndRejectsWhenQueueFull() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIResilienceGuard guard = guard(registry, 5, 1, 1, 1);
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        
+        CompletableFuture<String> first = guard.execute(() -> upstream);
+        CompletableFuture<String> queued = guard.execute(() -> CompletableFuture.completedFuture("second"));
+        CompletableFuture<String> rejected = guard.execute(() -> CompletableFuture.completedFuture("third"));
+        
+        assertEquals(1, guard.queued());
+        assertInstanceOf(AIServiceUnavailableException.class,
+            assertThrows(CompletionException.class, rejected::join).getCause());
+        
+        upstream.complete("first");
+        
+        assertEquals("first", first.join());
+        assertEquals("second", queued.join());
+        assertEquals(0, guard.inFlight());
+        assertEquals(1.0, registry.get("ai.resilience.rejected").tag("reason", "bulkhead").counter().count());
+    }
+    
+    @Test
+    void execute_LimitGrowsOnSuccessAndHalvesOnThrottling() {
+        AIResilienceGuard guard = guard(new SimpleMeterRegistry(), 10, 32, 0, 8);
+        
+        guard.execute(() -> CompletableFuture.completedFuture("ok"));
+        assertEquals(8.125, guard.currentLimit(), 1e-9);
+        
+        guard.execute(() -> CompletableFuture.failedFuture(new AIServiceException("Gemini API returned HTTP 429", 429)));
+        assertEquals(4.0625, guard.currentLimit(), 1e-9);
+    }
+    
+    @Test
+    void execute_QueuedCallFailsAfterMaxWait() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIResilienceGuard guard = guard(registry, 5, 60_000, 1, 1, 50, 1);
+        AtomicInteger calls = new AtomicInteger();
+        
+        guard.execute(CompletableFuture::new);
+        CompletableFuture<String> queued = guard.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("late");
+        });
+        
+        CompletionException error = assertThrows(CompletionException.class, queued::join);
+        assertInstanceOf(AIServiceUnavailableException.class, error.getCause());
+        assertEquals(0, guard.queued());
+        assertEquals(0, calls.get());
+        assertEquals(1.0, registry.get("ai.resilience.rejected").tag("reason", "queue-timeout").counter().count());
+    }
+    
+    @Test
+    void execute_OnlyTheProbeDecidesTheHalfOpenCircuit() throws InterruptedException {
+        AIResilienceGuard guard = guard(new SimpleMeterRegistry(), 1, 20, 4, 0, 10_000, 4);
+        CompletableFuture<String> stale = new CompletableFuture<>();
+        CompletableFuture<String> probe = new CompletableFuture<>();
+        
+        guard.execute(() -> stale);
+        guard.execute(() -> CompletableFuture.failedFuture(new AIServiceException("Gemini API returned HTTP 503", 503)));
+        assertEquals(AIResilienceGuard.CircuitState.OPEN, guard.circuitState());
+        
+        Thread.sleep(50);
+        guard.execute(() -> probe);
+        assertEquals(AIResilienceGuard.CircuitState.HALF_OPEN, guard.circuitState());
+        
+        // Started before the circuit opened, so its success says nothing about recovery
+        stale.complete("ok");
+        assertEquals(AIResilienceGuard.CircuitState.HALF_OPEN, guard.circuitState());
+        
+        probe.completeExceptionally(new AIServiceException("Gemini API returned HTTP 503", 503));
+        assertEquals(AIResilienceGuard.CircuitState.OPEN, guard.circuitState());
+    }
+}
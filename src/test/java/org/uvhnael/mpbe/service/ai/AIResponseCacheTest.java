@@ -0,0 +1,82 @@
+package org.uvhnael.mpbe.service.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.uvhnael.mpbe.model.UserProfile;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIResponseCacheTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private UserProfile profile(String goal, String allergies, String budget) {
+        UserProfile profile = new UserProfile();
+        profile.setGoal(goal);
+        profile.setDietaryPreference("Vegetarian");
+        profile.setAllergies(allergies);
+        profile.setBudgetPerMeal(new BigDecimal(budget));
+        profile.setActivityLevel("moderate");
+        return profile;
+    }
+    
+    @Test
+    void key_NormalizesEquivalentProfiles() {
+        String first = AIResponseCache.key("meal-plan", profile("Weight_Loss", "peanuts, Shellfish", "10"), 7);
+        String second = AIResponseCache.key("meal-plan", profile(" weight_loss ", "shellfish;peanuts", "10.00"), 7);
+        
+        assertEquals(first, second);
+        assertNotEquals(first, AIResponseCache.key("meal-plan", profile("weight_loss", "peanuts", "10"), 7));
+        assertNotEquals(first, AIResponseCache.key("meal-plan", profile("Weight_Loss", "peanuts, Shellfish", "10"), 3));
+    }
+    
+    @Test
+    void get_EvictsLeastRecentlyUsedEntry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIResponseCache cache = new AIResponseCache(registry, true, 60, 2, "");
+        
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+        
+        assertTrue(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isEmpty());
+        assertEquals(1.0, registry.get("ai.cache.evictions").counter().count());
+        assertEquals(2.0, registry.get("ai.cache.requests").tag("result", "hit").counter().count());
+    }
+    
+    @Test
+    void get_ExpiredEntryIsMiss() {
+        AIResponseCache cache = new AIResponseCache(new SimpleMeterRegistry(), true, 0, 10, "");
+        
+        cache.put("a", "A");
+        
+        assertTrue(cache.get("a").isEmpty());
+    }
+    
+    @Test
+    void get_DiskTierSurvivesRestart() {
+        new AIResponseCache(new SimpleMeterRegistry(), true, 60, 10, tempDir.toString()).put("key", "{\"days\":[]}");
+        
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIResponseCache restarted = new AIResponseCache(registry, true, 60, 10, tempDir.toString());
+        
+        assertEquals("{\"days\":[]}", restarted.get("key").orElseThrow());
+        assertEquals(1.0, registry.get("ai.cache.requests").tag("tier", "disk").counter().count());
+    }
+    
+    @Test
+    void get_DisabledCacheNeverHits() {
+        AIResponseCache cache = new AIResponseCache(new SimpleMeterRegistry(), false, 60, 10, "");
+        
+        cache.put("a", "A");
+        
+        assertTrue(cache.get("a").isEmpty());
+    }
+}
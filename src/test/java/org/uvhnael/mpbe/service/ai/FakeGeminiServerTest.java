@@ -0,0 +1,113 @@
+package org.uvhnael.mpbe.service.ai;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
+import org.uvhnael.mpbe.exception.AIServiceException;
+import org.uvhnael.mpbe.service.AIMealPlanStreamParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeGeminiServerTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private FakeGeminiServer server;
+    
+    private GeminiClient start(FakeGeminiServer.Settings settings) throws IOException {
+        server = new FakeGeminiServer(settings);
+        server.start();
+        return new GeminiClient(objectMapper, "fake-key", server.getApiUrl(), 1000);
+    }
+    
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+    
+    @Test
+    void generateContent_ReturnsParseableMealPlanForRequestedDays() throws IOException {
+        GeminiClient client = start(FakeGeminiServer.Settings.instant());
+        
+        String text = client.generateContent("Create a 3-day meal plan for:", Duration.ofSeconds(5)).join();
+        
+        List<Integer> days = new ArrayList<>();
+        int meals = new AIMealPlanStreamParser(objectMapper).parse(text, (day, meal) -> days.add(day));
+        assertEquals(9, meals);
+        assertEquals(List.of(1, 1, 1, 2, 2, 2, 3, 3, 3), days);
+    }
+    
+    @Test
+    void streamGenerateContent_SplitsResponseIntoFragments() throws IOException {
+        GeminiClient client = start(FakeGeminiServer.Settings.instant());
+        List<String> fragments = new ArrayList<>();
+        
+        client.streamGenerateContent("Create a 2-day meal plan for:\nThis replaces day 5 of an existing plan",
+            Duration.ofSeconds(5), null, fragments::add);
+        
+        assertEquals(4, fragments.size());
+        List<Integer> days = new ArrayList<>();
+        new AIMealPlanStreamParser(objectMapper).parse(String.join("", fragments), (day, meal) -> days.add(day));
+        assertEquals(List.of(5, 5, 5), days);
+    }
+    
+    @Test
+    void generateContent_ReturnsSubstitutesForSubstitutionPrompts() throws IOException {
+        GeminiClient client = start(FakeGeminiServer.Settings.instant());
+        
+        String text = client.generateContent("Suggest up to 5 substitutes for the cooking ingredient: butter\n"
+            + "Reason for substituting: vegan", Duration.ofSeconds(5)).join();
+        
+        List<AISubstitute> substitutes = objectMapper.readValue(text, new TypeReference<>() {});
+        assertEquals("plant-based butter", substitutes.get(0).getName());
+        assertTrue(substitutes.get(0).getTags().contains("vegan"));
+    }
+    
+    @Test
+    void generateContent_ReplaysTheSameErrorsForTheSameSeed() throws IOException {
+        FakeGeminiServer.Settings settings = new FakeGeminiServer.Settings(0, 0, 0, 0.5, 0, 0, 1, 7);
+        List<Boolean> first = outcomes(start(settings), 20);
+        server.stop();
+        List<Boolean> second = outcomes(start(settings), 20);
+        
+        assertEquals(first, second);
+        assertTrue(first.contains(true) && first.contains(false));
+    }
+    
+    private static List<Boolean> outcomes(GeminiClient client, int requests) {
+        List<Boolean> failed = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            try {
+                client.generateContent("Create a 1-day meal plan", Duration.ofSeconds(5)).join();
+                failed.add(false);
+            } catch (CompletionException e) {
+                failed.add(true);
+            }
+        }
+        return failed;
+    }
+    
+    @Test
+    void generateContent_ThrottlesInBursts() throws IOException {
+        GeminiClient client = start(new FakeGeminiServer.Settings(0, 0, 0, 0, 3, 1, 1, 42));
+        
+        CompletionException throttled = assertThrows(CompletionException.class,
+            () -> client.generateContent("Create a 1-day meal plan", Duration.ofSeconds(5)).join());
+        
+        assertEquals(429, ((AIServiceException) throttled.getCause()).getStatusCode());
+        assertDoesNotThrow(() -> client.generateContent("Create a 1-day meal plan", Duration.ofSeconds(5)).join());
+        assertDoesNotThrow(() -> client.generateContent("Create a 1-day meal plan", Duration.ofSeconds(5)).join());
+        assertThrows(CompletionException.class,
+            () -> client.generateContent("Create a 1-day meal plan", Duration.ofSeconds(5)).join());
+        assertEquals(4, server.getRequestCount());
+    }
+}
@@ -0,0 +1,71 @@
+package org.uvhnael.mpbe.service.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.exception.AIServiceException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiClientTest {
+
+    private static final String FRAGMENT = "data: {\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"{\\\"days\\\": [\"}]}}]}\n\n";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private GeminiClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // Sends one fragment and then goes silent without closing the stream
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(FRAGMENT.getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException | IOException ignored) {
+                // Client went away
+            }
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta/models/fake:generateContent";
+        client = new GeminiClient(new ObjectMapper(), "key", url, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void streamGenerateContent_GivesUpAtTheDeadlineWhenTheUpstreamStalls() {
+        List<String> fragments = new ArrayList<>();
+
+        // Without an independent deadline the call would block until the server lets go (30 s)
+        AIServiceException error = assertTimeoutPreemptively(Duration.ofSeconds(15), () ->
+            assertThrows(AIServiceException.class, () ->
+                client.streamGenerateContent("prompt", Duration.ofMillis(500), null, fragments::add)));
+
+        assertEquals(List.of("{\"days\": ["), fragments);
+        // Either the read deadline or the exchange timeout, whichever fires first
+        assertTrue(error.getMessage().matches(".*(deadline|timed out).*"), error.getMessage());
+    }
+}
@@ -0,0 +1,61 @@
+package org.uvhnael.mpbe.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.uvhnael.mpbe.dto.ai.AIMealPlanResponse;
+import org.uvhnael.mpbe.dto.ai.AISubstitute;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiSchemasTest {
+
+    @Test
+    void objectOf_MapsNestedDtosListsAndScalarTypes() {
+        Map<String, Object> schema = GeminiSchemas.objectOf(AIMealPlanResponse.class);
+
+        assertEquals("OBJECT", schema.get("type"));
+        Map<String, Object> days = property(schema, "days");
+        assertEquals("ARRAY", days.get("type"));
+
+        Map<String, Object> day = items(days);
+        assertEquals(Map.of("type", "INTEGER"), property(day, "day"));
+
+        Map<String, Object> meal = items(property(day, "meals"));
+        assertEquals(Map.of("type", "STRING"), property(meal, "name"));
+        assertEquals(Map.of("type", "INTEGER"), property(meal, "prepTime"));
+        assertEquals("OBJECT", property(meal, "nutrition").get("type"));
+
+        Map<String, Object> ingredient = items(property(meal, "ingredients"));
+        assertEquals(Map.of("type", "NUMBER"), property(ingredient, "quantity"));
+    }
+
+    @Test
+    void objectOf_KeepsTheDtoFieldOrder() {
+        Map<String, Object> schema = GeminiSchemas.objectOf(AISubstitute.class);
+
+        assertEquals(List.of("name", "ratio", "reason", "tags"), schema.get("propertyOrdering"));
+        assertEquals(Map.of("type", "ARRAY", "items", Map.of("type", "STRING")), property(schema, "tags"));
+    }
+
+    @Test
+    void arrayOf_WrapsTheCachedObjectSchema() {
+        Map<String, Object> schema = GeminiSchemas.arrayOf(AISubstitute.class);
+
+        assertEquals("ARRAY", schema.get("type"));
+        assertSame(GeminiSchemas.objectOf(AISubstitute.class), schema.get("items"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> property(Map<String, Object> schema, String name) {
+        Map<String, Object> properties = (Map<String, Object>) schema.get("properties");
+        assertNotNull(properties.get(name), "missing property " + name);
+        return (Map<String, Object>) properties.get(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> items(Map<String, Object> arraySchema) {
+        return (Map<String, Object>) arraySchema.get("items");
+    }
+}